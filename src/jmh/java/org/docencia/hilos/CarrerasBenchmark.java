@@ -0,0 +1,98 @@
+package org.docencia.hilos;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Carreras de {@link CarreraSaiyan} sobre un ejecutor compartido, sin pausas
+ * ni mensajes, como en {@link ComparativaCarreras}: cada invocación lanza
+ * {@link #CARRERAS} carreras a la vez y espera a todas. El relevo entre hilos
+ * bloqueantes se mide en {@link RelevosBenchmark}.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CarrerasBenchmark {
+
+    static final int CARRERAS = 1_000;
+
+    @State(Scope.Benchmark)
+    public static class Pista {
+        @Param({"ROUND_ROBIN", "CONTENDIDO"})
+        String turnos;
+
+        @Param({"1", "4"})
+        int hilos;
+
+        @Param({"4"})
+        int corredores;
+
+        CarreraSaiyan.Turnos disciplina;
+        List<String> nombres;
+        ForkJoinPool pool;
+
+        @Setup(Level.Trial)
+        public void abrir() {
+            disciplina = CarreraSaiyan.Turnos.valueOf(turnos);
+            String[] n = new String[corredores];
+            for (int i = 0; i < corredores; i++) {
+                n[i] = "Saiyan-" + (i + 1);
+            }
+            nombres = List.of(n);
+            pool = new ForkJoinPool(hilos, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        }
+
+        @TearDown(Level.Trial)
+        public void cerrar() {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Fuente de semillas de cada hilo de JMH: {@link SplittableRandom} no es
+     * seguro entre hilos, así que con {@code -t} cada uno parte de la suya,
+     * derivada de su índice para que las ejecuciones sean repetibles.
+     */
+    @State(Scope.Thread)
+    public static class Semillas {
+        SplittableRandom aleatorio;
+
+        @Setup(Level.Trial)
+        public void sembrar(ThreadParams hilo) {
+            aleatorio = new SplittableRandom(42 + hilo.getThreadIndex());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CARRERAS)
+    public Object carreras(Pista pista, Semillas semillas) throws Exception {
+        CompletableFuture<?>[] resultados = new CompletableFuture<?>[CARRERAS];
+        for (int i = 0; i < CARRERAS; i++) {
+            SplittableRandom aleatorio = semillas.aleatorio.split();
+            resultados[i] = new CarreraSaiyan(pista.nombres, pista.disciplina, CarreraSaiyan.META,
+                    () -> aleatorio.nextInt(1, 11), () -> 0, null).iniciar(pista.pool);
+        }
+        return CompletableFuture.allOf(resultados).get();
+    }
+}
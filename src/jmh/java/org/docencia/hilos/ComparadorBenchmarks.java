@@ -0,0 +1,312 @@
+package org.docencia.hilos;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compara dos resultados de JMH guardados con {@code -rf json} y termina con
+ * código 1 si alguna prueba empeora más que el umbral o ha dejado de medirse,
+ * para poder usarlo como paso obligatorio antes de integrar un cambio:
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar -rf json -rff base.json       (en la rama principal)
+ * java -jar target/benchmarks.jar -rf json -rff actual.json     (con el cambio)
+ * java -cp target/benchmarks.jar org.docencia.hilos.ComparadorBenchmarks base.json actual.json [umbral%] [--permitir-faltas]
+ * </pre>
+ *
+ * <p>Cada prueba se identifica por nombre, modo, hilos y parámetros. En modo
+ * {@code thrpt} empeorar es bajar; en los modos de tiempo, subir. Solo cuenta
+ * como regresión si la diferencia supera el umbral (10 % por defecto) y
+ * además los intervalos de error de las dos medidas no se solapan. Se compara
+ * la métrica principal; las secundarias (como {@code pasos}) no.
+ *
+ * <p>Una prueba de la base que no aparece en el resultado nuevo se marca como
+ * {@code FALTA} y cuenta como fallo: si se ha borrado o renombrado hay que
+ * regenerar la base. Con {@code --permitir-faltas} solo se avisa, para cuando
+ * se ha lanzado a propósito un subconjunto de las pruebas.
+ *
+ * <p>Códigos de salida: 0 sin fallos, 1 con alguna regresión o falta, 2 por
+ * un error de uso o de lectura.
+ */
+public class ComparadorBenchmarks {
+
+    /** Métrica principal de una prueba. */
+    static final class Medida {
+        final String clave;
+        final boolean mayorEsMejor;
+        final double puntuacion;
+        final double error;
+        final String unidad;
+
+        Medida(String clave, boolean mayorEsMejor, double puntuacion, double error, String unidad) {
+            this.clave = clave;
+            this.mayorEsMejor = mayorEsMejor;
+            this.puntuacion = puntuacion;
+            this.error = error;
+            this.unidad = unidad;
+        }
+    }
+
+    public static void main(String[] args) {
+        List<String> posicionales = new ArrayList<>();
+        boolean permitirFaltas = false;
+        for (String arg : args) {
+            if ("--permitir-faltas".equals(arg)) {
+                permitirFaltas = true;
+            } else {
+                posicionales.add(arg);
+            }
+        }
+        if (posicionales.size() < 2) {
+            System.err.println("Uso: ComparadorBenchmarks base.json actual.json [umbral%] [--permitir-faltas]");
+            System.exit(2);
+        }
+        int fallos;
+        try {
+            double umbral = posicionales.size() > 2 ? Double.parseDouble(posicionales.get(2)) / 100 : 0.10;
+            fallos = comparar(leer(Path.of(posicionales.get(0))), leer(Path.of(posicionales.get(1))), umbral,
+                    permitirFaltas);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("No se pudo comparar: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        System.exit(fallos > 0 ? 1 : 0);
+    }
+
+    /**
+     * Imprime la comparación prueba a prueba.
+     *
+     * @param permitirFaltas si las pruebas de la base que faltan en
+     *                       {@code actual} solo se avisan en vez de contar
+     * @return número de regresiones más, salvo que se permitan, las pruebas
+     *         que faltan
+     */
+    static int comparar(Map<String, Medida> base, Map<String, Medida> actual, double umbral,
+            boolean permitirFaltas) {
+        int regresiones = 0;
+        for (Medida nueva : actual.values()) {
+            Medida vieja = base.get(nueva.clave);
+            if (vieja == null) {
+                System.out.printf("NUEVA      %s: %.3f %s%n", nueva.clave, nueva.puntuacion, nueva.unidad);
+                continue;
+            }
+            double cambio = (nueva.puntuacion - vieja.puntuacion) / vieja.puntuacion;
+            double empeora = vieja.mayorEsMejor ? -cambio : cambio;
+            boolean solapan = Math.abs(nueva.puntuacion - vieja.puntuacion) <= vieja.error + nueva.error;
+            String estado;
+            if (empeora > umbral && !solapan) {
+                estado = "REGRESIÓN";
+                regresiones++;
+            } else if (-empeora > umbral && !solapan) {
+                estado = "MEJORA";
+            } else {
+                estado = "igual";
+            }
+            System.out.printf("%-10s %s: %.3f -> %.3f %s (%+.1f %%)%n", estado, nueva.clave, vieja.puntuacion,
+                    nueva.puntuacion, nueva.unidad, cambio * 100);
+        }
+        int faltas = 0;
+        for (String clave : base.keySet()) {
+            if (!actual.containsKey(clave)) {
+                System.out.println("FALTA      " + clave);
+                faltas++;
+            }
+        }
+        System.out.println(regresiones + " regresión(es) con umbral " + Math.round(umbral * 100) + " %");
+        if (faltas > 0) {
+            System.out.println(faltas + " prueba(s) de la base sin medir"
+                    + (permitirFaltas ? " (permitido con --permitir-faltas)" : ""));
+        }
+        return permitirFaltas ? regresiones : regresiones + faltas;
+    }
+
+    static Map<String, Medida> leer(Path fichero) throws IOException {
+        Object raiz = new LectorJson(Files.readString(fichero, StandardCharsets.UTF_8)).leer();
+        Map<String, Medida> medidas = new LinkedHashMap<>();
+        for (Object elemento : (List<?>) raiz) {
+            Map<?, ?> prueba = (Map<?, ?>) elemento;
+            String modo = (String) prueba.get("mode");
+            StringBuilder clave = new StringBuilder().append(prueba.get("benchmark")).append(" [").append(modo)
+                    .append(", t=").append(numero(prueba.get("threads")).intValue());
+            Object parametros = prueba.get("params");
+            if (parametros != null) {
+                new TreeMap<>((Map<?, ?>) parametros).forEach((k, v) -> clave.append(", ").append(k).append('=')
+                        .append(v));
+            }
+            clave.append(']');
+            Map<?, ?> principal = (Map<?, ?>) prueba.get("primaryMetric");
+            double error = numero(principal.get("scoreError"));
+            Medida medida = new Medida(clave.toString(), "thrpt".equals(modo), numero(principal.get("score")),
+                    Double.isNaN(error) ? 0 : error, (String) principal.get("scoreUnit"));
+            medidas.put(medida.clave, medida);
+        }
+        return medidas;
+    }
+
+    /** JMH escribe {@code "NaN"} como cadena cuando no hay bastantes muestras. */
+    private static Double numero(Object valor) {
+        return valor instanceof Double d ? d : Double.valueOf(String.valueOf(valor));
+    }
+
+    /**
+     * Lector JSON mínimo para el formato de JMH: objetos como {@link Map},
+     * arrays como {@link List}, números como {@link Double}.
+     */
+    static final class LectorJson {
+        private final String texto;
+        private int pos;
+
+        LectorJson(String texto) {
+            this.texto = texto;
+        }
+
+        Object leer() {
+            Object valor = valor();
+            espacios();
+            if (pos != texto.length()) {
+                throw error("contenido sobrante");
+            }
+            return valor;
+        }
+
+        private Object valor() {
+            espacios();
+            if (pos >= texto.length()) {
+                throw error("fin inesperado");
+            }
+            char c = texto.charAt(pos);
+            switch (c) {
+                case '{':
+                    return objeto();
+                case '[':
+                    return array();
+                case '"':
+                    return cadena();
+                case 't':
+                    return literal("true", Boolean.TRUE);
+                case 'f':
+                    return literal("false", Boolean.FALSE);
+                case 'n':
+                    return literal("null", null);
+                default:
+                    return numero();
+            }
+        }
+
+        private Map<String, Object> objeto() {
+            Map<String, Object> mapa = new LinkedHashMap<>();
+            pos++;
+            espacios();
+            if (consumir('}')) {
+                return mapa;
+            }
+            do {
+                espacios();
+                String clave = cadena();
+                espacios();
+                esperar(':');
+                mapa.put(clave, valor());
+                espacios();
+            } while (consumir(','));
+            esperar('}');
+            return mapa;
+        }
+
+        private List<Object> array() {
+            List<Object> lista = new ArrayList<>();
+            pos++;
+            espacios();
+            if (consumir(']')) {
+                return lista;
+            }
+            do {
+                lista.add(valor());
+                espacios();
+            } while (consumir(','));
+            esperar(']');
+            return lista;
+        }
+
+        private String cadena() {
+            esperar('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (pos >= texto.length()) {
+                    throw error("cadena sin cerrar");
+                }
+                char c = texto.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char escape = texto.charAt(pos++);
+                switch (escape) {
+                    case 'n' -> sb.append('\n');
+                    case 't' -> sb.append('\t');
+                    case 'r' -> sb.append('\r');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        sb.append((char) Integer.parseInt(texto.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    }
+                    default -> sb.append(escape);
+                }
+            }
+        }
+
+        private Double numero() {
+            int inicio = pos;
+            while (pos < texto.length() && "+-0123456789.eE".indexOf(texto.charAt(pos)) >= 0) {
+                pos++;
+            }
+            if (inicio == pos) {
+                throw error("valor no válido");
+            }
+            return Double.valueOf(texto.substring(inicio, pos));
+        }
+
+        private Object literal(String palabra, Object valor) {
+            if (!texto.startsWith(palabra, pos)) {
+                throw error("se esperaba " + palabra);
+            }
+            pos += palabra.length();
+            return valor;
+        }
+
+        private void espacios() {
+            while (pos < texto.length() && Character.isWhitespace(texto.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private boolean consumir(char c) {
+            if (pos < texto.length() && texto.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void esperar(char c) {
+            if (!consumir(c)) {
+                throw error("se esperaba '" + c + "'");
+            }
+        }
+
+        private IllegalArgumentException error(String mensaje) {
+            return new IllegalArgumentException("JSON no válido en la posición " + pos + ": " + mensaje);
+        }
+    }
+}
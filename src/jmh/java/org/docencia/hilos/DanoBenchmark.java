@@ -0,0 +1,127 @@
+package org.docencia.hilos;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link CalculadoraDanoCritico.TareaCalcularDano} sin la pausa simulada.
+ *
+ * <ul>
+ * <li>{@code golpe}: cada hilo de JMH calcula golpes directamente. Con
+ * {@code -t} mayor que 1 todos comparten el generador de
+ * {@code Math.random()}.</li>
+ * <li>{@code lote}: como el {@code main}, se envía un lote de tareas a un pool
+ * de {@code hilos} y se recogen todos los {@link Future}.</li>
+ * </ul>
+ *
+ * <p>{@code registro=ASINCRONO} publica los mensajes en un
+ * {@link RegistroAsincrono} que descarta la salida, para ver lo que cuesta
+ * registrar frente a {@code NINGUNO}.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DanoBenchmark {
+
+    static final int LOTE = 1_000;
+
+    @State(Scope.Benchmark)
+    public static class Registro {
+        @Param({"NINGUNO", "ASINCRONO"})
+        String registro;
+
+        RegistroAsincrono destino;
+
+        @Setup(Level.Trial)
+        public void abrir() {
+            destino = "ASINCRONO".equals(registro)
+                    ? new RegistroAsincrono(1 << 16, RegistroAsincrono.PoliticaLleno.DESCARTAR, Writer.nullWriter())
+                    : null;
+        }
+
+        @TearDown(Level.Trial)
+        public void cerrar() {
+            if (destino != null) {
+                destino.close();
+            }
+        }
+
+        CalculadoraDanoCritico.TareaCalcularDano tarea(int i) {
+            return new CalculadoraDanoCritico.TareaCalcularDano(
+                    new CalculadoraDanoCritico.Ataque("Cazador-" + i, 100 + i % 50, 0.25, 2.0), destino, () -> 0);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Tarea {
+        CalculadoraDanoCritico.TareaCalcularDano tarea;
+
+        @Setup(Level.Trial)
+        public void preparar(Registro registro) {
+            tarea = registro.tarea(0);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Pool {
+        @Param({"1", "4", "16"})
+        int hilos;
+
+        ExecutorService ejecutor;
+        List<Callable<Integer>> tareas;
+
+        @Setup(Level.Trial)
+        public void arrancar(Registro registro) {
+            ejecutor = Executors.newFixedThreadPool(hilos);
+            tareas = new ArrayList<>(LOTE);
+            for (int i = 0; i < LOTE; i++) {
+                tareas.add(registro.tarea(i));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void parar() {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int golpe(Tarea tarea) throws InterruptedException {
+        return tarea.tarea.calcularGolpe().dano;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOTE)
+    public long lote(Pool pool) throws Exception {
+        long total = 0;
+        for (Future<Integer> futuro : pool.ejecutor.invokeAll(pool.tareas)) {
+            total += futuro.get();
+        }
+        return total;
+    }
+}
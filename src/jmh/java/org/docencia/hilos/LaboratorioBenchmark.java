@@ -0,0 +1,70 @@
+package org.docencia.hilos;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reservar y liberar un equipo del laboratorio como hace
+ * {@link Estudiante}, con uso de duración cero y sin mensajes. Todos los
+ * hilos de JMH comparten el mismo {@link AsignadorEquipos}: la contención la
+ * marca la relación entre {@code -t} y {@code equipos}.
+ *
+ * <ul>
+ * <li>{@code adquirirLiberar}: solo el asignador.</li>
+ * <li>{@code tarea}: una {@link TareaEstudiante} completa, con las medidas de
+ * espera y uso que toma para el monitor.</li>
+ * </ul>
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class LaboratorioBenchmark {
+
+    private static final MonitorLaboratorio SIN_MONITOR = MonitorLaboratorio.desdeActividad(ocupado -> {});
+
+    @State(Scope.Benchmark)
+    public static class Laboratorio {
+        @Param({"JUSTO", "ADELANTAMIENTO", "HIBRIDO"})
+        String modo;
+
+        @Param({"1", "4", "64"})
+        int equipos;
+
+        AsignadorEquipos asignador;
+        TareaEstudiante tarea;
+
+        @Setup(Level.Trial)
+        public void abrir() {
+            asignador = new AsignadorEquipos(equipos, AsignadorEquipos.ModoAdmision.valueOf(modo), 2);
+            tarea = new TareaEstudiante(asignador, () -> 0, SIN_MONITOR);
+        }
+    }
+
+    @Benchmark
+    public int adquirirLiberar(Laboratorio laboratorio) throws InterruptedException {
+        int equipo = laboratorio.asignador.adquirir();
+        laboratorio.asignador.liberar(equipo);
+        return equipo;
+    }
+
+    @Benchmark
+    public void tarea(Laboratorio laboratorio) {
+        laboratorio.tarea.run();
+    }
+}
@@ -0,0 +1,81 @@
+package org.docencia.hilos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Despacho de {@link ServidorMazmorras.PeticionMazmorra} a los GM bots de
+ * cada {@link ServidorMazmorras.ModoEjecucion}, sin registro y con una
+ * preparación que no duerme: lo que se mide es el reparto de las peticiones
+ * entre los hilos. Con {@code -t} mayor que 1 varios hilos de JMH envían
+ * lotes al mismo pool a la vez.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MazmorrasBenchmark {
+
+    static final int LOTE = 1_000;
+
+    @State(Scope.Benchmark)
+    public static class GmBots {
+        @Param({"FIJO", "CACHEADO", "VIRTUAL"})
+        String modo;
+
+        @Param({"1", "4", "16"})
+        int hilos;
+
+        ExecutorService ejecutor;
+        List<Callable<Object>> peticiones;
+
+        @Setup(Level.Trial)
+        public void arrancar() {
+            ejecutor = ServidorMazmorras.crearGmBots(ServidorMazmorras.ModoEjecucion.valueOf(modo), hilos);
+            ServidorMazmorras.PreparadorMazmorra preparador =
+                    mazmorra -> new ServidorMazmorras.InstanciaMazmorra(mazmorra, 0);
+            peticiones = new ArrayList<>(LOTE);
+            for (int i = 0; i < LOTE; i++) {
+                peticiones.add(Executors.callable(new ServidorMazmorras.PeticionMazmorra(
+                        "Jugador-" + i, "Mazmorra-" + i % 5, preparador, null)));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void parar() {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOTE)
+    public int despachar(GmBots gmBots) throws Exception {
+        int hechas = 0;
+        for (Future<Object> futuro : gmBots.ejecutor.invokeAll(gmBots.peticiones)) {
+            futuro.get();
+            hechas++;
+        }
+        return hechas;
+    }
+}
@@ -0,0 +1,153 @@
+package org.docencia.hilos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Coste de pasar el turno con cada {@link RelevoTurno.Tipo}, de 2 a 64
+ * corredores, sin mensajes ni pausas.
+ *
+ * <ul>
+ * <li>{@code vuelta}: el hilo del benchmark es el corredor 0 de un anillo de
+ * hilos que solo se pasan el turno. Cada operación es una vuelta completa,
+ * así que la latencia de un relevo es la puntuación dividida entre
+ * {@code corredores}.</li>
+ * <li>{@code carrera}: carreras completas de {@link CarreraSaiyan} con un
+ * hilo por corredor. El contador {@code pasos} da los pasos por segundo.</li>
+ * </ul>
+ *
+ * <p>{@link RelevoTurno.Tipo#SEMAFORO_JUSTO} no garantiza la alternancia, así
+ * que en {@code carrera} corre con {@link CarreraSaiyan.Turnos#CONTENDIDO}.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RelevosBenchmark {
+
+    @State(Scope.Thread)
+    public static class Anillo {
+        @Param({"SEMAFOROS", "CERROJO_CONDICION", "PARK_UNPARK", "SYNCHRONOUS_QUEUE", "EXCHANGER", "GIRO_Y_PARK",
+                "SEMAFORO_JUSTO"})
+        RelevoTurno.Tipo tipo;
+
+        @Param({"2", "4", "8", "16", "32", "64"})
+        int corredores;
+
+        RelevoTurno relevo;
+        private Thread[] hilos;
+
+        @Setup(Level.Trial)
+        public void arrancar() throws InterruptedException {
+            relevo = RelevoTurno.crear(tipo, corredores);
+            hilos = new Thread[corredores - 1];
+            for (int i = 1; i < corredores; i++) {
+                int corredor = i;
+                hilos[i - 1] = new Thread(() -> {
+                    try {
+                        while (relevo.esperarTurno(corredor)) {
+                            relevo.cederTurno(corredor);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, "Relevo-" + corredor);
+                hilos[i - 1].setDaemon(true);
+                hilos[i - 1].start();
+            }
+            relevo.esperarTurno(0);
+        }
+
+        @TearDown(Level.Trial)
+        public void parar() throws InterruptedException {
+            relevo.detener();
+            for (Thread hilo : hilos) {
+                hilo.join(TimeUnit.SECONDS.toMillis(10));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Carreras {
+        @Param({"SEMAFOROS", "CERROJO_CONDICION", "PARK_UNPARK", "SYNCHRONOUS_QUEUE", "EXCHANGER", "GIRO_Y_PARK",
+                "SEMAFORO_JUSTO"})
+        RelevoTurno.Tipo tipo;
+
+        @Param({"2", "4", "8", "16", "32", "64"})
+        int corredores;
+
+        @Param({"1000"})
+        int meta;
+
+        List<String> nombres;
+        CarreraSaiyan.Turnos turnos;
+        SplittableRandom aleatorio;
+        ExecutorService hilos;
+
+        @Setup(Level.Trial)
+        public void preparar() {
+            nombres = new ArrayList<>();
+            for (int i = 0; i < corredores; i++) {
+                nombres.add("Saiyan-" + (i + 1));
+            }
+            turnos = tipo.garantizaAlternancia() ? CarreraSaiyan.Turnos.ROUND_ROBIN : CarreraSaiyan.Turnos.CONTENDIDO;
+            aleatorio = new SplittableRandom(42);
+            hilos = Executors.newFixedThreadPool(corredores);
+        }
+
+        @TearDown(Level.Trial)
+        public void cerrar() {
+            hilos.shutdownNow();
+        }
+    }
+
+    /** Pasos dados en la iteración; JMH lo presenta como pasos por segundo. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Pasos {
+        public long pasos;
+
+        @Setup(Level.Iteration)
+        public void reiniciar() {
+            pasos = 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void vuelta(Anillo anillo) throws InterruptedException {
+        anillo.relevo.cederTurno(0);
+        anillo.relevo.esperarTurno(0);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int carrera(Carreras estado, Pasos pasos) throws Exception {
+        SplittableRandom aleatorio = estado.aleatorio.split();
+        CarreraSaiyan carrera = new CarreraSaiyan(estado.nombres, estado.turnos, estado.meta,
+                () -> aleatorio.nextInt(1, 11), () -> 0, null);
+        CarreraSaiyan.Resultado resultado = carrera.iniciarEnHilos(estado.tipo, estado.hilos).get();
+        pasos.pasos += resultado.pasos;
+        return resultado.ganador;
+    }
+}
@@ -0,0 +1,67 @@
+package org.docencia.hilos;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Transiciones de color de {@link ColorSemaforo} y
+ * {@link ColorSemaforoMejorado} con duraciones cero y un oyente que solo
+ * cuenta: cada invocación corre un semáforo nuevo hasta {@link #CAMBIOS}
+ * cambios. Con {@code -t} mayor que 1 hay varios semáforos independientes a
+ * la vez.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SemaforoBenchmark {
+
+    static final int CAMBIOS = 10_000;
+
+    /** Cuenta los cambios y para el semáforo al llegar a {@link #CAMBIOS}. */
+    private static final class Contador implements Consumer<LightColor> {
+        Runnable parar;
+        int cambios;
+
+        @Override
+        public void accept(LightColor color) {
+            if (++cambios >= CAMBIOS) {
+                parar.run();
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CAMBIOS)
+    public int colorSemaforo() {
+        Contador contador = new Contador();
+        ColorSemaforo semaforo = new ColorSemaforo(contador, 0, 0, 0);
+        contador.parar = semaforo::stopSimulation;
+        semaforo.run();
+        // stopSimulation() interrumpe al hilo que corre el semáforo, que aquí
+        // es el del propio benchmark.
+        Thread.interrupted();
+        return contador.cambios;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CAMBIOS)
+    public int colorSemaforoMejorado() {
+        Contador contador = new Contador();
+        ColorSemaforoMejorado semaforo = new ColorSemaforoMejorado(contador, 0, 0, 0);
+        contador.parar = semaforo::stopSimulation;
+        semaforo.run();
+        Thread.interrupted();
+        return contador.cambios;
+    }
+}
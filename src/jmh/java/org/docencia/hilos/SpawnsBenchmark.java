@@ -0,0 +1,95 @@
+package org.docencia.hilos;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Camino caliente de {@link SpawnsMundoAbierto.SpawnTarea} sin pausa ni
+ * registro.
+ *
+ * <ul>
+ * <li>{@code spawn}: cada operación hace aparecer un enemigo y lo retira, así
+ * que el índice no se llena. Todos los hilos comparten el mismo
+ * {@link IndiceEntidades}; el nivel de contención lo da {@code -t}.</li>
+ * <li>{@code programar}: coste de programar una {@code SpawnTarea} y
+ * cancelarla, en el {@code ScheduledThreadPoolExecutor} original o en la
+ * {@link RuedaTemporizadores}.</li>
+ * </ul>
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SpawnsBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Mundo {
+        IndiceEntidades indice;
+        SpawnsMundoAbierto.SpawnTarea tarea;
+
+        @Setup(Level.Trial)
+        public void crear() {
+            indice = new IndiceEntidades(1 << 16, SpawnsMundoAbierto.SpawnTarea.zonas.length,
+                    SpawnsMundoAbierto.SpawnTarea.enemigos.length, 1_000f, 32);
+            tarea = new SpawnsMundoAbierto.SpawnTarea(indice, Integer.MAX_VALUE, null, 0);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Planificador {
+        @Param({"POOL", "RUEDA"})
+        String planificador;
+
+        ScheduledExecutorService ejecutor;
+
+        @Setup(Level.Trial)
+        public void arrancar() {
+            if ("RUEDA".equals(planificador)) {
+                ejecutor = new RuedaTemporizadores(10, TimeUnit.MILLISECONDS, 2);
+            } else {
+                // Como en ComparativaTemporizadores: sin esto los cancelados
+                // se acumulan en el heap hasta su vencimiento.
+                ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(2);
+                pool.setRemoveOnCancelPolicy(true);
+                ejecutor = pool;
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void parar() {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean spawn(Mundo mundo) {
+        int id = mundo.tarea.generarEnemigo();
+        return id >= 0 && mundo.indice.desaparecer(id);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean programar(Mundo mundo, Planificador planificador) {
+        ScheduledFuture<?> futuro = planificador.ejecutor.scheduleAtFixedRate(mundo.tarea, 1, 2, TimeUnit.SECONDS);
+        return futuro.cancel(false);
+    }
+}
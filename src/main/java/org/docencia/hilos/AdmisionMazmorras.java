@@ -0,0 +1,211 @@
+package org.docencia.hilos;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Capa de admisión delante de los GM bots de {@link ServidorMazmorras}.
+ * {@code Executors.newFixedThreadPool} usa una cola sin límite, así que en una
+ * avalancha de logins las peticiones se acumulan hasta agotar la memoria. Aquí
+ * la cola está acotada y, cuando se llena, se aplica una
+ * {@link PoliticaSobrecarga} configurable. Por cada mazmorra se publica la
+ * profundidad de cola, el tiempo de espera y los rechazos.
+ */
+public class AdmisionMazmorras {
+
+    enum PoliticaSobrecarga {
+        /** Rechaza la petición nueva con {@link RejectedExecutionException}. */
+        RECHAZAR,
+        /** Ejecuta la petición en el hilo que la envía, frenando al productor. */
+        EJECUTAR_EN_LLAMANTE,
+        /** Descarta la petición más antigua de la cola para hacer hueco. */
+        DESCARTAR_ANTIGUA
+    }
+
+    /**
+     * Métricas de una mazmorra. Todos los campos se pueden leer en caliente.
+     */
+    static class MetricasMazmorra {
+        final AtomicInteger enCola = new AtomicInteger();
+        final LongAdder admitidas = new LongAdder();
+        final LongAdder rechazadas = new LongAdder();
+        final LongAdder descartadas = new LongAdder();
+        final LongAdder ejecutadasEnLlamante = new LongAdder();
+        final LongAdder atendidas = new LongAdder();
+        final LongAdder esperaTotalNanos = new LongAdder();
+        final AtomicLong esperaMaximaNanos = new AtomicLong();
+
+        void registrarEspera(long nanos) {
+            atendidas.increment();
+            esperaTotalNanos.add(nanos);
+            esperaMaximaNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        double esperaMediaMillis() {
+            long n = atendidas.sum();
+            return n == 0 ? 0.0 : esperaTotalNanos.sum() / 1e6 / n;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "enCola=%d admitidas=%d rechazadas=%d descartadas=%d enLlamante=%d espera media=%.1f ms max=%.1f ms",
+                    enCola.get(), admitidas.sum(), rechazadas.sum(), descartadas.sum(), ejecutadasEnLlamante.sum(),
+                    esperaMediaMillis(), esperaMaximaNanos.get() / 1e6);
+        }
+    }
+
+    /**
+     * Envoltorio que recuerda cuándo entró la tarea en la cola.
+     */
+    private final class Admitida implements Runnable {
+        private final String mazmorra;
+        private final Runnable tarea;
+        private final Runnable siDescartada;
+        private final MetricasMazmorra metricas;
+        private final long encoladaNanos;
+
+        Admitida(String mazmorra, Runnable tarea, Runnable siDescartada, MetricasMazmorra metricas,
+                long encoladaNanos) {
+            this.mazmorra = mazmorra;
+            this.tarea = tarea;
+            this.siDescartada = siDescartada;
+            this.metricas = metricas;
+            this.encoladaNanos = encoladaNanos;
+        }
+
+        @Override
+        public void run() {
+            metricas.enCola.decrementAndGet();
+            metricas.registrarEspera(nanoClock.getAsLong() - encoladaNanos);
+            tarea.run();
+        }
+    }
+
+    private final ThreadPoolExecutor gmBots;
+    private final PoliticaSobrecarga politica;
+    private final LongSupplier nanoClock;
+    private final Map<String, MetricasMazmorra> metricas = new ConcurrentHashMap<>();
+
+    public AdmisionMazmorras(int bots, int capacidadCola, PoliticaSobrecarga politica) {
+        this(bots, capacidadCola, politica, System::nanoTime);
+    }
+
+    AdmisionMazmorras(int bots, int capacidadCola, PoliticaSobrecarga politica, LongSupplier nanoClock) {
+        this.politica = Objects.requireNonNull(politica, "politica");
+        this.nanoClock = Objects.requireNonNull(nanoClock, "nanoClock");
+        this.gmBots = new ThreadPoolExecutor(bots, bots, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola), new ManejadorSobrecarga());
+    }
+
+    /**
+     * Envía una petición a los GM bots. Con {@link PoliticaSobrecarga#RECHAZAR}
+     * lanza {@link RejectedExecutionException} si la cola está llena.
+     */
+    public void enviar(ServidorMazmorras.PeticionMazmorra peticion) {
+        enviar(peticion.getMazmorra(), peticion, peticion::interrumpir);
+    }
+
+    /**
+     * Como {@link #enviar(ServidorMazmorras.PeticionMazmorra)} para cualquier
+     * tarea de {@code mazmorra}, por ejemplo una partida agrupada. Si
+     * {@link PoliticaSobrecarga#DESCARTAR_ANTIGUA} la saca de la cola se
+     * ejecuta {@code siDescartada} para avisar a quien esperaba.
+     */
+    void enviar(String mazmorra, Runnable tarea, Runnable siDescartada) {
+        Objects.requireNonNull(tarea, "tarea");
+        Objects.requireNonNull(siDescartada, "siDescartada");
+        MetricasMazmorra m = metricasDe(mazmorra);
+        m.enCola.incrementAndGet();
+        gmBots.execute(new Admitida(mazmorra, tarea, siDescartada, m, nanoClock.getAsLong()));
+        m.admitidas.increment();
+    }
+
+    private final class ManejadorSobrecarga implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable tarea, ThreadPoolExecutor executor) {
+            Admitida admitida = (Admitida) tarea;
+            if (executor.isShutdown()) {
+                admitida.metricas.enCola.decrementAndGet();
+                admitida.metricas.rechazadas.increment();
+                throw new RejectedExecutionException("Servidor de mazmorras detenido");
+            }
+            switch (politica) {
+                case RECHAZAR -> {
+                    admitida.metricas.enCola.decrementAndGet();
+                    admitida.metricas.rechazadas.increment();
+                    throw new RejectedExecutionException(
+                            "Cola llena: petición para '" + admitida.mazmorra + "' rechazada");
+                }
+                case EJECUTAR_EN_LLAMANTE -> {
+                    admitida.metricas.ejecutadasEnLlamante.increment();
+                    admitida.run();
+                }
+                case DESCARTAR_ANTIGUA -> {
+                    Runnable antigua = executor.getQueue().poll();
+                    if (antigua instanceof AdmisionMazmorras.Admitida descartada) {
+                        descartada.metricas.enCola.decrementAndGet();
+                        descartada.metricas.descartadas.increment();
+                        descartada.siDescartada.run();
+                    }
+                    executor.execute(admitida);
+                }
+            }
+        }
+    }
+
+    private MetricasMazmorra metricasDe(String mazmorra) {
+        return metricas.computeIfAbsent(mazmorra, k -> new MetricasMazmorra());
+    }
+
+    Map<String, MetricasMazmorra> getMetricas() {
+        return metricas;
+    }
+
+    int getProfundidadCola() {
+        return gmBots.getQueue().size();
+    }
+
+    public void shutdown() {
+        gmBots.shutdown();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return gmBots.awaitTermination(timeout, unit);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        PoliticaSobrecarga politica = args.length > 0
+                ? PoliticaSobrecarga.valueOf(args[0])
+                : PoliticaSobrecarga.DESCARTAR_ANTIGUA;
+        AdmisionMazmorras admision = new AdmisionMazmorras(3, 6, politica);
+        String[] mazmorras = {
+                "Catacumbas de Hyrule", "Torre Oscura", "Moria",
+                "Estrella de la Muerte", "Nido de Dragón"
+        };
+
+        System.out.println("=== Avalancha de logins con cola acotada (" + politica + ") ===");
+        for (int i = 0; i < 30; i++) {
+            String dungeon = mazmorras[i % mazmorras.length];
+            try {
+                admision.enviar(new ServidorMazmorras.PeticionMazmorra("Jugador" + i, dungeon));
+            } catch (RejectedExecutionException e) {
+                System.out.println("Servidor: " + e.getMessage());
+            }
+        }
+
+        admision.shutdown();
+        admision.awaitTermination(1, TimeUnit.MINUTES);
+        admision.getMetricas().forEach((nombre, m) -> System.out.println(nombre + " -> " + m));
+    }
+}
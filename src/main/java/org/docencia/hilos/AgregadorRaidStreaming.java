@@ -0,0 +1,295 @@
+package org.docencia.hilos;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Agregación de la raid en orden de finalización. Los golpes se recogen con un
+ * {@link ExecutorCompletionService}, de modo que una tarea lenta no retiene el
+ * total de las que ya han terminado. Las estadísticas (DPS de la raid, mínimo,
+ * máximo y media por atacante y tasa de críticos) se pueden consultar mientras
+ * el cálculo sigue en marcha, y si vence el plazo se devuelve un resumen
+ * parcial.
+ *
+ * <p>Cada llamada a {@link #calcular} empieza de cero. El DPS se mide desde
+ * que empieza hasta que llega el último golpe (o vence el plazo); a partir de
+ * ahí deja de cambiar. Los ataques que fallan se cuentan en el resumen y se
+ * publican en el {@link RegistroAsincrono}.
+ */
+public class AgregadorRaidStreaming {
+
+    /**
+     * Estadísticas de un atacante. Un único hilo las actualiza y cualquier otro
+     * puede leerlas en cualquier momento.
+     */
+    static class EstadisticaAtacante {
+        private long golpes;
+        private long total;
+        private int minimo = Integer.MAX_VALUE;
+        private int maximo = Integer.MIN_VALUE;
+
+        synchronized void registrar(int dano) {
+            golpes++;
+            total += dano;
+            minimo = Math.min(minimo, dano);
+            maximo = Math.max(maximo, dano);
+        }
+
+        synchronized long golpes() {
+            return golpes;
+        }
+
+        synchronized long total() {
+            return total;
+        }
+
+        synchronized int minimo() {
+            return golpes == 0 ? 0 : minimo;
+        }
+
+        synchronized int maximo() {
+            return golpes == 0 ? 0 : maximo;
+        }
+
+        synchronized double media() {
+            return golpes == 0 ? 0.0 : (double) total / golpes;
+        }
+
+        /** Copia independiente: no cambia aunque esta siga registrando golpes. */
+        synchronized EstadisticaAtacante copia() {
+            EstadisticaAtacante copia = new EstadisticaAtacante();
+            copia.golpes = golpes;
+            copia.total = total;
+            copia.minimo = minimo;
+            copia.maximo = maximo;
+            return copia;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "golpes=" + golpes + " min=" + minimo() + " max=" + maximo()
+                    + String.format(" media=%.1f", media());
+        }
+    }
+
+    /**
+     * Instantánea de la raid. {@code completo} indica si todos los ataques
+     * terminaron antes del plazo, bien o con error; {@code fallidos} cuenta los
+     * que lanzaron una excepción. Las estadísticas por atacante son copias, así
+     * que el resumen no cambia después de obtenerlo.
+     */
+    static class ResumenRaid {
+        final long total;
+        final long golpes;
+        final long criticos;
+        final long fallidos;
+        final long pendientes;
+        final double dps;
+        final boolean completo;
+        final Map<String, EstadisticaAtacante> porAtacante;
+
+        ResumenRaid(long total, long golpes, long criticos, long fallidos, long pendientes, double dps,
+                boolean completo, Map<String, EstadisticaAtacante> porAtacante) {
+            this.total = total;
+            this.golpes = golpes;
+            this.criticos = criticos;
+            this.fallidos = fallidos;
+            this.pendientes = pendientes;
+            this.dps = dps;
+            this.completo = completo;
+            this.porAtacante = porAtacante;
+        }
+
+        double tasaCritico() {
+            return golpes == 0 ? 0.0 : (double) criticos / golpes;
+        }
+    }
+
+    private static final RegistroAsincrono.Formato FALLO = (destino, e) ->
+            destino.append("Error calculando daño para ").append(e.texto).append(": ").append(e.texto2);
+
+    private final ExecutorService pool;
+    private final LongSupplier nanoClock;
+    private final Consumer<CalculadoraDanoCritico.Golpe> onGolpe;
+    private final Function<CalculadoraDanoCritico.Ataque, Callable<CalculadoraDanoCritico.Golpe>> tareas;
+    private final RegistroAsincrono registro;
+    private final LongAdder total = new LongAdder();
+    private final LongAdder golpes = new LongAdder();
+    private final LongAdder criticos = new LongAdder();
+    private final LongAdder fallidos = new LongAdder();
+    private final AtomicLong pendientes = new AtomicLong();
+    private final Map<String, EstadisticaAtacante> porAtacante = new ConcurrentHashMap<>();
+    private volatile boolean iniciado;
+    private volatile long inicioNanos;
+    /** Momento en que terminó la recogida; mientras sigue en curso, {@link #EN_CURSO}. */
+    private volatile long finNanos;
+
+    private static final long EN_CURSO = Long.MIN_VALUE;
+
+    public AgregadorRaidStreaming(ExecutorService pool) {
+        this(pool, System::nanoTime, golpe -> {});
+    }
+
+    AgregadorRaidStreaming(ExecutorService pool, LongSupplier nanoClock,
+            Consumer<CalculadoraDanoCritico.Golpe> onGolpe) {
+        this(pool, nanoClock, onGolpe, ataque -> new CalculadoraDanoCritico.TareaCalcularDano(ataque)::calcularGolpe,
+                RegistroAsincrono.global());
+    }
+
+    /**
+     * @param tareas   crea la tarea que calcula el golpe de cada ataque
+     * @param registro destino de los avisos de ataques fallidos; si es
+     *                 {@code null} solo se cuentan
+     */
+    AgregadorRaidStreaming(ExecutorService pool, LongSupplier nanoClock,
+            Consumer<CalculadoraDanoCritico.Golpe> onGolpe,
+            Function<CalculadoraDanoCritico.Ataque, Callable<CalculadoraDanoCritico.Golpe>> tareas,
+            RegistroAsincrono registro) {
+        this.pool = Objects.requireNonNull(pool, "pool");
+        this.nanoClock = Objects.requireNonNull(nanoClock, "nanoClock");
+        this.onGolpe = Objects.requireNonNull(onGolpe, "onGolpe");
+        this.tareas = Objects.requireNonNull(tareas, "tareas");
+        this.registro = registro;
+    }
+
+    /**
+     * Lanza todos los ataques y agrega los golpes según van terminando. Si vence
+     * el plazo, cancela las tareas pendientes y devuelve un resumen parcial.
+     * Borra lo agregado en llamadas anteriores; no admite dos llamadas a la
+     * vez sobre el mismo agregador.
+     */
+    synchronized ResumenRaid calcular(CalculadoraDanoCritico.Ataque[] ataques, long plazo, TimeUnit unidad)
+            throws InterruptedException {
+        CompletionService<CalculadoraDanoCritico.Golpe> completion = new ExecutorCompletionService<>(pool);
+        List<Future<CalculadoraDanoCritico.Golpe>> futuros = new ArrayList<>(ataques.length);
+        reiniciar(ataques.length);
+        long limite = inicioNanos + unidad.toNanos(plazo);
+        Map<Future<CalculadoraDanoCritico.Golpe>, String> atacantes = new HashMap<>();
+        for (CalculadoraDanoCritico.Ataque ataque : ataques) {
+            Future<CalculadoraDanoCritico.Golpe> futuro = completion.submit(tareas.apply(ataque));
+            futuros.add(futuro);
+            atacantes.put(futuro, ataque.atacante);
+        }
+
+        try {
+            while (pendientes.get() > 0) {
+                long restante = limite - nanoClock.getAsLong();
+                if (restante <= 0) {
+                    break;
+                }
+                Future<CalculadoraDanoCritico.Golpe> listo = completion.poll(restante, TimeUnit.NANOSECONDS);
+                if (listo == null) {
+                    break;
+                }
+                try {
+                    registrar(listo.get());
+                } catch (ExecutionException e) {
+                    fallidos.increment();
+                    if (registro != null) {
+                        registro.publicar(FALLO, atacantes.get(listo), e.getCause(), 0, 0);
+                    }
+                }
+                if (pendientes.decrementAndGet() == 0) {
+                    finNanos = nanoClock.getAsLong();
+                }
+            }
+        } finally {
+            if (finNanos == EN_CURSO) {
+                finNanos = nanoClock.getAsLong();
+            }
+            for (Future<CalculadoraDanoCritico.Golpe> futuro : futuros) {
+                futuro.cancel(true);
+            }
+        }
+        return resumen();
+    }
+
+    private void reiniciar(int ataques) {
+        iniciado = false;
+        total.reset();
+        golpes.reset();
+        criticos.reset();
+        fallidos.reset();
+        porAtacante.clear();
+        pendientes.set(ataques);
+        finNanos = EN_CURSO;
+        inicioNanos = nanoClock.getAsLong();
+        iniciado = true;
+    }
+
+    private void registrar(CalculadoraDanoCritico.Golpe golpe) {
+        total.add(golpe.dano);
+        golpes.increment();
+        if (golpe.critico) {
+            criticos.increment();
+        }
+        porAtacante.computeIfAbsent(golpe.atacante, k -> new EstadisticaAtacante()).registrar(golpe.dano);
+        onGolpe.accept(golpe);
+    }
+
+    /**
+     * Instantánea de lo agregado hasta ahora. Puede llamarse desde cualquier
+     * hilo mientras {@link #calcular} sigue en curso. Antes de la primera
+     * llamada a {@link #calcular} devuelve un resumen vacío, no completo y con
+     * DPS 0.
+     */
+    ResumenRaid resumen() {
+        if (!iniciado) {
+            return new ResumenRaid(0, 0, 0, 0, 0, 0.0, false, Map.of());
+        }
+        long fin = finNanos;
+        long transcurridoNanos = Math.max(1, (fin == EN_CURSO ? nanoClock.getAsLong() : fin) - inicioNanos);
+        long totalActual = total.sum();
+        double dps = totalActual / (transcurridoNanos / 1e9);
+        long pendientesActual = pendientes.get();
+        Map<String, EstadisticaAtacante> copias = new LinkedHashMap<>();
+        porAtacante.forEach((nombre, estadistica) -> copias.put(nombre, estadistica.copia()));
+        return new ResumenRaid(totalActual, golpes.sum(), criticos.sum(), fallidos.sum(), pendientesActual, dps,
+                pendientesActual == 0, Collections.unmodifiableMap(copias));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CalculadoraDanoCritico.Ataque[] ataques = {
+                new CalculadoraDanoCritico.Ataque("Mago del Fuego", 120, 0.30, 2.5),
+                new CalculadoraDanoCritico.Ataque("Guerrero", 150, 0.15, 2.0),
+                new CalculadoraDanoCritico.Ataque("Pícaro", 90, 0.50, 3.0),
+                new CalculadoraDanoCritico.Ataque("Arquera Élfica", 110, 0.35, 2.2),
+                new CalculadoraDanoCritico.Ataque("Invocador", 80, 0.40, 2.8),
+                new CalculadoraDanoCritico.Ataque("Paladín", 130, 0.10, 1.8),
+                new CalculadoraDanoCritico.Ataque("Bárbaro", 160, 0.20, 2.1),
+                new CalculadoraDanoCritico.Ataque("Nigromante", 100, 0.25, 2.3),
+        };
+        long plazoMillis = args.length > 0 ? Long.parseLong(args[0]) : 1_500;
+
+        AgregadorRaidStreaming agregador = new AgregadorRaidStreaming(pool);
+        System.out.println("=== Agregación en orden de finalización (plazo " + plazoMillis + " ms) ===");
+        ResumenRaid resumen = agregador.calcular(ataques, plazoMillis, TimeUnit.MILLISECONDS);
+        pool.shutdownNow();
+
+        resumen.porAtacante.forEach((nombre, estadistica) -> System.out.println(nombre + " -> " + estadistica));
+        RegistroAsincrono.global().vaciar();
+        System.out.printf("Daño total de la raid: %d | DPS: %.1f | Críticos: %.0f%% | Fallidos: %d | %s%n",
+                resumen.total, resumen.dps, resumen.tasaCritico() * 100, resumen.fallidos,
+                resumen.completo ? "completo" : "parcial, pendientes: " + resumen.pendientes);
+    }
+}
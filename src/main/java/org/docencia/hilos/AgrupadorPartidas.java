@@ -0,0 +1,252 @@
+package org.docencia.hilos;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Agrupa las {@link ServidorMazmorras.PeticionMazmorra} que piden la misma
+ * mazmorra en una partida y prepara una única instancia para todo el grupo.
+ * Un grupo se cierra cuando vence la ventana de espera o cuando alcanza el
+ * tamaño máximo de partida, lo que ocurra antes.
+ *
+ * <p>La ventana reduce preparaciones por jugador a cambio de latencia extra;
+ * para ajustar ese compromiso se publica la distribución de tamaños de grupo y
+ * el tiempo que cada petición pasó esperando a que se cerrara su grupo.
+ */
+public class AgrupadorPartidas {
+
+    /**
+     * Entrega la partida de una mazmorra a los GM bots. Si la partida se
+     * descarta sin ejecutarse hay que llamar a {@code siDescartada}.
+     */
+    @FunctionalInterface
+    interface Despacho {
+        void enviar(String mazmorra, Runnable partida, Runnable siDescartada);
+    }
+
+    private static final class Grupo {
+        final String mazmorra;
+        final List<ServidorMazmorras.PeticionMazmorra> peticiones = new ArrayList<>();
+        final List<Long> llegadas = new ArrayList<>();
+
+        Grupo(String mazmorra) {
+            this.mazmorra = mazmorra;
+        }
+    }
+
+    private final Despacho gmBots;
+    private final ScheduledExecutorService temporizador;
+    private final ServidorMazmorras.PreparadorMazmorra preparador;
+    private final long ventanaNanos;
+    private final int tamanoMaximo;
+    private final LongSupplier nanoClock;
+    private final Map<String, Grupo> abiertos = new HashMap<>();
+
+    private final AtomicLongArray tamanosGrupo;
+    private final LongAdder preparaciones = new LongAdder();
+    private final LongAdder jugadores = new LongAdder();
+    private final LongAdder gruposFallidos = new LongAdder();
+    private final LongAdder esperaVentanaNanos = new LongAdder();
+    private final AtomicLong esperaVentanaMaximaNanos = new AtomicLong();
+
+    public AgrupadorPartidas(ExecutorService gmBots, ScheduledExecutorService temporizador,
+            long ventana, TimeUnit unidad, int tamanoMaximo) {
+        this(gmBots, temporizador, ServidorMazmorras::prepararDesdeCero, unidad.toNanos(ventana), tamanoMaximo,
+                System::nanoTime);
+    }
+
+    AgrupadorPartidas(ExecutorService gmBots, ScheduledExecutorService temporizador,
+            ServidorMazmorras.PreparadorMazmorra preparador, long ventanaNanos, int tamanoMaximo,
+            LongSupplier nanoClock) {
+        this(despachoDe(gmBots), temporizador, preparador, ventanaNanos, tamanoMaximo, nanoClock);
+    }
+
+    /**
+     * Para poner delante de los GM bots otra etapa, como
+     * {@link AdmisionMazmorras}.
+     */
+    AgrupadorPartidas(Despacho gmBots, ScheduledExecutorService temporizador,
+            ServidorMazmorras.PreparadorMazmorra preparador, long ventanaNanos, int tamanoMaximo,
+            LongSupplier nanoClock) {
+        this.gmBots = Objects.requireNonNull(gmBots, "gmBots");
+        this.temporizador = Objects.requireNonNull(temporizador, "temporizador");
+        this.preparador = Objects.requireNonNull(preparador, "preparador");
+        this.nanoClock = Objects.requireNonNull(nanoClock, "nanoClock");
+        if (tamanoMaximo <= 0) {
+            throw new IllegalArgumentException("tamanoMaximo debe ser positivo");
+        }
+        this.ventanaNanos = Math.max(0, ventanaNanos);
+        this.tamanoMaximo = tamanoMaximo;
+        this.tamanosGrupo = new AtomicLongArray(tamanoMaximo + 1);
+    }
+
+    private static Despacho despachoDe(ExecutorService gmBots) {
+        Objects.requireNonNull(gmBots, "gmBots");
+        return (mazmorra, partida, siDescartada) -> gmBots.execute(partida);
+    }
+
+    public void enviar(ServidorMazmorras.PeticionMazmorra peticion) {
+        Grupo completo = null;
+        Grupo nuevo = null;
+        synchronized (abiertos) {
+            Grupo grupo = abiertos.get(peticion.getMazmorra());
+            if (grupo == null) {
+                grupo = new Grupo(peticion.getMazmorra());
+                abiertos.put(grupo.mazmorra, grupo);
+                nuevo = grupo;
+            }
+            grupo.peticiones.add(peticion);
+            grupo.llegadas.add(nanoClock.getAsLong());
+            if (grupo.peticiones.size() >= tamanoMaximo || ventanaNanos == 0) {
+                abiertos.remove(grupo.mazmorra);
+                completo = grupo;
+            }
+        }
+        if (completo != null) {
+            despachar(completo);
+        } else if (nuevo != null) {
+            Grupo programado = nuevo;
+            try {
+                temporizador.schedule(() -> cerrarPorVentana(programado), ventanaNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // Sin temporizador la ventana no vencería nunca.
+                cerrarPorVentana(programado);
+            }
+        }
+    }
+
+    private void cerrarPorVentana(Grupo grupo) {
+        synchronized (abiertos) {
+            if (!abiertos.remove(grupo.mazmorra, grupo)) {
+                return;
+            }
+        }
+        despachar(grupo);
+    }
+
+    private void despachar(Grupo grupo) {
+        long cierre = nanoClock.getAsLong();
+        int tamano = grupo.peticiones.size();
+        tamanosGrupo.incrementAndGet(tamano);
+        jugadores.add(tamano);
+        for (long llegada : grupo.llegadas) {
+            long espera = cierre - llegada;
+            esperaVentanaNanos.add(espera);
+            esperaVentanaMaximaNanos.accumulateAndGet(espera, Math::max);
+        }
+        try {
+            gmBots.enviar(grupo.mazmorra, () -> {
+                ServidorMazmorras.InstanciaMazmorra instancia;
+                try {
+                    instancia = preparador.preparar(grupo.mazmorra);
+                } catch (InterruptedException e) {
+                    fallar(grupo);
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                preparaciones.increment();
+                for (ServidorMazmorras.PeticionMazmorra peticion : grupo.peticiones) {
+                    peticion.conPreparador(mazmorra -> instancia).run();
+                }
+            }, () -> fallar(grupo));
+        } catch (RejectedExecutionException e) {
+            fallar(grupo);
+        }
+    }
+
+    /**
+     * El grupo no llegó a tener instancia: cada jugador recibe su aviso de
+     * petición interrumpida en lugar de quedarse esperando sin respuesta.
+     */
+    private void fallar(Grupo grupo) {
+        gruposFallidos.increment();
+        for (ServidorMazmorras.PeticionMazmorra peticion : grupo.peticiones) {
+            peticion.interrumpir();
+        }
+    }
+
+    /**
+     * Cierra los grupos abiertos sin esperar a que venza su ventana.
+     */
+    public void vaciar() {
+        List<Grupo> pendientes;
+        synchronized (abiertos) {
+            pendientes = new ArrayList<>(abiertos.values());
+            abiertos.clear();
+        }
+        pendientes.forEach(this::despachar);
+    }
+
+    long[] getDistribucionTamanos() {
+        long[] distribucion = new long[tamanosGrupo.length()];
+        for (int i = 0; i < distribucion.length; i++) {
+            distribucion[i] = tamanosGrupo.get(i);
+        }
+        return distribucion;
+    }
+
+    double getPreparacionesPorJugador() {
+        long n = jugadores.sum();
+        return n == 0 ? 0.0 : (double) preparaciones.sum() / n;
+    }
+
+    long getGruposFallidos() {
+        return gruposFallidos.sum();
+    }
+
+    double getEsperaVentanaMediaMillis() {
+        long n = jugadores.sum();
+        return n == 0 ? 0.0 : esperaVentanaNanos.sum() / 1e6 / n;
+    }
+
+    double getEsperaVentanaMaximaMillis() {
+        return esperaVentanaMaximaNanos.get() / 1e6;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long ventanaMs = args.length > 0 ? Long.parseLong(args[0]) : 200;
+        int tamanoMaximo = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        ExecutorService gmBots = Executors.newFixedThreadPool(3);
+        ScheduledExecutorService temporizador = Executors.newSingleThreadScheduledExecutor();
+        AgrupadorPartidas agrupador = new AgrupadorPartidas(gmBots, temporizador, ventanaMs,
+                TimeUnit.MILLISECONDS, tamanoMaximo);
+        String[] mazmorras = {
+                "Catacumbas de Hyrule", "Torre Oscura", "Moria",
+                "Estrella de la Muerte", "Nido de Dragón"
+        };
+
+        System.out.println("=== Agrupación de partidas (ventana " + ventanaMs + " ms, máximo " + tamanoMaximo + ") ===");
+        for (int i = 0; i < 30; i++) {
+            String dungeon = mazmorras[ThreadLocalRandom.current().nextInt(mazmorras.length)];
+            agrupador.enviar(new ServidorMazmorras.PeticionMazmorra("Jugador" + i, dungeon));
+            Thread.sleep(ThreadLocalRandom.current().nextLong(10, 60));
+        }
+        agrupador.vaciar();
+        temporizador.shutdown();
+        temporizador.awaitTermination(1, TimeUnit.SECONDS);
+        gmBots.shutdown();
+        gmBots.awaitTermination(2, TimeUnit.MINUTES);
+
+        long[] distribucion = agrupador.getDistribucionTamanos();
+        for (int tamano = 1; tamano < distribucion.length; tamano++) {
+            System.out.println("Grupos de " + tamano + ": " + distribucion[tamano]);
+        }
+        System.out.printf("Preparaciones por jugador: %.2f | espera de ventana media=%.1f ms max=%.1f ms"
+                + " | grupos fallidos=%d%n",
+                agrupador.getPreparacionesPorJugador(), agrupador.getEsperaVentanaMediaMillis(),
+                agrupador.getEsperaVentanaMaximaMillis(), agrupador.getGruposFallidos());
+    }
+}
@@ -0,0 +1,221 @@
+package org.docencia.hilos;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reparte los equipos del laboratorio. Calcular el equipo a partir de
+ * {@code availablePermits()} justo después de {@code acquire()} da el mismo
+ * número a dos estudiantes en cuanto hay contención; aquí cada estudiante
+ * recibe un identificador de equipo distinto.
+ *
+ * <p>Un {@link Semaphore} cuenta los equipos libres y bloquea a quien llega
+ * cuando no queda ninguno. Quien obtiene permiso saca un equipo concreto de una
+ * lista libre sin bloqueo (pila de Treiber): la cabeza guarda en un mismo
+ * {@code long} el índice y un contador de versión para evitar el problema ABA.
+ * Sacar y devolver un equipo es O(1). Cada equipo tiene además una marca de
+ * ocupado que se cambia con CAS al sacarlo y al devolverlo, así que liberar
+ * dos veces el mismo equipo, o uno que nadie tenía, falla en lugar de meterlo
+ * dos veces en la lista y regalar un permiso.
+ *
+ * <p>La forma de admitir a quien espera se elige con {@link ModoAdmision}.
+ */
+public class AsignadorEquipos {
+
+    enum ModoAdmision {
+        /** Orden FIFO estricto: nadie adelanta a quien ya está en la cola. */
+        JUSTO,
+        /** Quien llega puede quedarse un equipo recién liberado aunque haya cola. */
+        ADELANTAMIENTO,
+        /**
+         * Se permite adelantar, pero como mucho {@code limiteAdelantamientos}
+         * veces seguidas antes de atender a la cola.
+         */
+        HIBRIDO
+    }
+
+    private static final int VACIA = -1;
+    private static final long MASCARA_INDICE = 0xFFFF_FFFFL;
+
+    /** Asignadores creados por {@link #sobreSemaforo(Semaphore)}, uno por semáforo. */
+    private static final Map<Semaphore, WeakReference<AsignadorEquipos>> SOBRE_SEMAFORO = new WeakHashMap<>();
+
+    private final Semaphore permisos;
+    private final AtomicLong cabeza;
+    private final AtomicIntegerArray siguiente;
+    private final AtomicIntegerArray ocupados;
+    private final int equipos;
+    private final ModoAdmision modo;
+    private final int limiteAdelantamientos;
+    private final AtomicInteger adelantamientos = new AtomicInteger();
+
+    public AsignadorEquipos(int equipos) {
+        this(equipos, ModoAdmision.ADELANTAMIENTO, 0);
+    }
+
+    public AsignadorEquipos(int equipos, ModoAdmision modo, int limiteAdelantamientos) {
+        this(equipos, modo, limiteAdelantamientos, new Semaphore(Math.max(equipos, 0),
+                modo != ModoAdmision.ADELANTAMIENTO));
+    }
+
+    private AsignadorEquipos(int equipos, ModoAdmision modo, int limiteAdelantamientos, Semaphore permisos) {
+        if (equipos <= 0) {
+            throw new IllegalArgumentException("equipos debe ser positivo");
+        }
+        if (limiteAdelantamientos < 0) {
+            throw new IllegalArgumentException("limiteAdelantamientos no puede ser negativo");
+        }
+        this.equipos = equipos;
+        this.modo = Objects.requireNonNull(modo, "modo");
+        this.limiteAdelantamientos = limiteAdelantamientos;
+        this.permisos = permisos;
+        this.siguiente = new AtomicIntegerArray(equipos);
+        this.ocupados = new AtomicIntegerArray(equipos);
+        for (int i = 0; i < equipos; i++) {
+            siguiente.set(i, i + 1 < equipos ? i + 1 : VACIA);
+        }
+        this.cabeza = new AtomicLong(0);
+    }
+
+    /**
+     * Asignador que cuenta los equipos con un {@link Semaphore} ya creado,
+     * para el código que sigue repartiendo el laboratorio con un semáforo.
+     * Mientras haya alguien usando el asignador, las llamadas con el mismo
+     * semáforo devuelven el mismo, así que los identificadores no se repiten.
+     * Hay tantos equipos como permisos libres en la primera llamada, y la
+     * admisión es {@link ModoAdmision#JUSTO} si el semáforo es justo y
+     * {@link ModoAdmision#ADELANTAMIENTO} si no.
+     *
+     * <p>El semáforo pasa a ser del asignador: quien lo adquiera o libere
+     * directamente descuadra la cuenta de equipos.
+     */
+    static AsignadorEquipos sobreSemaforo(Semaphore semaforo) {
+        Objects.requireNonNull(semaforo, "semaforo");
+        synchronized (SOBRE_SEMAFORO) {
+            WeakReference<AsignadorEquipos> referencia = SOBRE_SEMAFORO.get(semaforo);
+            AsignadorEquipos asignador = referencia != null ? referencia.get() : null;
+            if (asignador == null) {
+                ModoAdmision modo = semaforo.isFair() ? ModoAdmision.JUSTO : ModoAdmision.ADELANTAMIENTO;
+                asignador = new AsignadorEquipos(semaforo.availablePermits(), modo, 0, semaforo);
+                SOBRE_SEMAFORO.put(semaforo, new WeakReference<>(asignador));
+            }
+            return asignador;
+        }
+    }
+
+    /**
+     * Espera a que haya un equipo libre y devuelve su identificador, entre 1 y
+     * el número de equipos.
+     */
+    public int adquirir() throws InterruptedException {
+        if (modo == ModoAdmision.HIBRIDO) {
+            adquirirHibrido();
+        } else {
+            permisos.acquire();
+        }
+        return sacar() + 1;
+    }
+
+    /**
+     * En un semáforo justo, {@code tryAcquire()} sin plazo se salta la cola. Se
+     * usa para adelantar mientras no se haya superado el límite; si no, se
+     * espera en orden y, al ser atendido desde la cola, el contador vuelve a
+     * cero.
+     */
+    private void adquirirHibrido() throws InterruptedException {
+        if (!permisos.hasQueuedThreads()) {
+            if (permisos.tryAcquire()) {
+                return;
+            }
+        } else if (adelantamientos.get() < limiteAdelantamientos && permisos.tryAcquire()) {
+            adelantamientos.incrementAndGet();
+            return;
+        }
+        permisos.acquire();
+        adelantamientos.set(0);
+    }
+
+    /**
+     * Igual que {@link #adquirir()} pero sin esperar: devuelve {@code -1} si no
+     * hay ningún equipo libre.
+     */
+    public int intentarAdquirir() {
+        if (!permisos.tryAcquire()) {
+            return -1;
+        }
+        return sacar() + 1;
+    }
+
+    /**
+     * @throws IllegalArgumentException si el equipo no existe
+     * @throws IllegalStateException    si el equipo no estaba asignado
+     */
+    public void liberar(int equipoId) {
+        int indice = equipoId - 1;
+        if (indice < 0 || indice >= equipos) {
+            throw new IllegalArgumentException("Equipo inexistente: " + equipoId);
+        }
+        devolver(indice);
+        permisos.release();
+    }
+
+    private int sacar() {
+        while (true) {
+            long actual = cabeza.get();
+            int indice = (int) actual;
+            if (indice == VACIA) {
+                // Un permiso garantiza un equipo; solo se llega aquí si quien lo
+                // devolvió aún no ha terminado de enlazarlo.
+                Thread.onSpinWait();
+                continue;
+            }
+            int resto = siguiente.get(indice);
+            if (cabeza.compareAndSet(actual, versionar(actual, resto))) {
+                if (!ocupados.compareAndSet(indice, 0, 1)) {
+                    throw new IllegalStateException("El equipo " + (indice + 1) + " estaba libre y ocupado a la vez");
+                }
+                return indice;
+            }
+        }
+    }
+
+    private void devolver(int indice) {
+        if (!ocupados.compareAndSet(indice, 1, 0)) {
+            throw new IllegalStateException("El equipo " + (indice + 1) + " no estaba asignado");
+        }
+        while (true) {
+            long actual = cabeza.get();
+            siguiente.set(indice, (int) actual);
+            if (cabeza.compareAndSet(actual, versionar(actual, indice))) {
+                return;
+            }
+        }
+    }
+
+    private static long versionar(long actual, int indice) {
+        long version = (actual >>> 32) + 1;
+        return (version << 32) | (indice & MASCARA_INDICE);
+    }
+
+    public ModoAdmision getModo() {
+        return modo;
+    }
+
+    public int getEquipos() {
+        return equipos;
+    }
+
+    public int getLibres() {
+        return permisos.availablePermits();
+    }
+
+    public int getEnEspera() {
+        return permisos.getQueueLength();
+    }
+}
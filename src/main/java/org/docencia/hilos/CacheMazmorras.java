@@ -0,0 +1,269 @@
+package org.docencia.hilos;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Caché de instancias de mazmorra indexada por nombre. Solo hay unas pocas
+ * mazmorras distintas y muchos jugadores piden la misma a la vez, así que cada
+ * mazmorra se prepara una única vez: si llega otra petición mientras la
+ * preparación está en curso, espera a esa misma preparación (single-flight) en
+ * lugar de lanzar otra.
+ *
+ * <p>La caché está acotada por tamaño (expulsa la menos usada recientemente) y
+ * por tiempo de vida. El mapa solo se bloquea para consultar o insertar el
+ * futuro; la preparación se hace fuera del cerrojo.
+ */
+public class CacheMazmorras implements ServidorMazmorras.PreparadorMazmorra {
+
+    private static final class Entrada {
+        final CompletableFuture<ServidorMazmorras.InstanciaMazmorra> futuro = new CompletableFuture<>();
+        final long creadaNanos;
+
+        Entrada(long creadaNanos) {
+            this.creadaNanos = creadaNanos;
+        }
+    }
+
+    private final ServidorMazmorras.PreparadorMazmorra preparador;
+    private final int capacidad;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder esperasEnVuelo = new LongAdder();
+    private final LongAdder expulsiones = new LongAdder();
+
+    public CacheMazmorras(int capacidad, long ttl, TimeUnit unidad) {
+        this(ServidorMazmorras::prepararDesdeCero, capacidad, unidad.toNanos(ttl), System::nanoTime);
+    }
+
+    CacheMazmorras(ServidorMazmorras.PreparadorMazmorra preparador, int capacidad, long ttlNanos,
+            LongSupplier nanoClock) {
+        this.preparador = Objects.requireNonNull(preparador, "preparador");
+        this.nanoClock = Objects.requireNonNull(nanoClock, "nanoClock");
+        if (capacidad <= 0) {
+            throw new IllegalArgumentException("capacidad debe ser positiva");
+        }
+        this.capacidad = capacidad;
+        this.ttlNanos = ttlNanos;
+    }
+
+    @Override
+    public ServidorMazmorras.InstanciaMazmorra preparar(String mazmorra) throws InterruptedException {
+        return obtener(mazmorra);
+    }
+
+    /**
+     * Devuelve la instancia de la mazmorra, preparándola si no está en caché.
+     */
+    ServidorMazmorras.InstanciaMazmorra obtener(String mazmorra) throws InterruptedException {
+        while (true) {
+            Entrada entrada;
+            boolean propietario = false;
+            long ahora = nanoClock.getAsLong();
+            lock.lock();
+            try {
+                entrada = entradas.get(mazmorra);
+                if (entrada != null && entrada.futuro.isDone() && ahora - entrada.creadaNanos > ttlNanos) {
+                    entradas.remove(mazmorra);
+                    expulsiones.increment();
+                    entrada = null;
+                }
+                if (entrada == null) {
+                    entrada = new Entrada(ahora);
+                    entradas.put(mazmorra, entrada);
+                    propietario = true;
+                    expulsarSobrantes();
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (propietario) {
+                fallos.increment();
+                return prepararComoPropietario(mazmorra, entrada);
+            }
+            if (entrada.futuro.isDone()) {
+                aciertos.increment();
+            } else {
+                esperasEnVuelo.increment();
+            }
+            try {
+                return entrada.futuro.get();
+            } catch (ExecutionException e) {
+                Throwable causa = e.getCause();
+                if (causa instanceof InterruptedException) {
+                    continue;
+                }
+                if (causa instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new IllegalStateException("Error preparando " + mazmorra, causa);
+            }
+        }
+    }
+
+    /**
+     * Cualquier fallo, también un {@link Error}, quita la entrada y completa
+     * el futuro: si no, quienes esperan esa mazmorra se quedarían bloqueados
+     * para siempre y la entrada envenenada seguiría en la caché.
+     */
+    private ServidorMazmorras.InstanciaMazmorra prepararComoPropietario(String mazmorra, Entrada entrada)
+            throws InterruptedException {
+        try {
+            ServidorMazmorras.InstanciaMazmorra instancia = preparador.preparar(mazmorra);
+            entrada.futuro.complete(instancia);
+            return instancia;
+        } catch (Throwable e) {
+            try {
+                quitar(mazmorra, entrada);
+            } finally {
+                entrada.futuro.completeExceptionally(e);
+            }
+            throw e;
+        }
+    }
+
+    private void quitar(String mazmorra, Entrada entrada) {
+        lock.lock();
+        try {
+            entradas.remove(mazmorra, entrada);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void expulsarSobrantes() {
+        Iterator<Map.Entry<String, Entrada>> it = entradas.entrySet().iterator();
+        while (entradas.size() > capacidad && it.hasNext()) {
+            Entrada candidata = it.next().getValue();
+            if (candidata.futuro.isDone()) {
+                it.remove();
+                expulsiones.increment();
+            }
+        }
+    }
+
+    long getAciertos() {
+        return aciertos.sum();
+    }
+
+    long getFallos() {
+        return fallos.sum();
+    }
+
+    long getEsperasEnVuelo() {
+        return esperasEnVuelo.sum();
+    }
+
+    long getExpulsiones() {
+        return expulsiones.sum();
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entradas.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "aciertos=" + getAciertos() + " fallos=" + getFallos() + " esperasEnVuelo=" + getEsperasEnVuelo()
+                + " expulsiones=" + getExpulsiones() + " tamaño=" + size();
+    }
+
+    /**
+     * Genera índices con distribución de Zipf: unas pocas mazmorras acaparan la
+     * mayoría de las peticiones.
+     */
+    static final class Zipf {
+        private final double[] acumulada;
+
+        Zipf(int elementos, double exponente) {
+            acumulada = new double[elementos];
+            double suma = 0;
+            for (int i = 0; i < elementos; i++) {
+                suma += 1.0 / Math.pow(i + 1, exponente);
+                acumulada[i] = suma;
+            }
+            for (int i = 0; i < elementos; i++) {
+                acumulada[i] /= suma;
+            }
+        }
+
+        int siguiente() {
+            int i = Arrays.binarySearch(acumulada, ThreadLocalRandom.current().nextDouble());
+            return Math.min(i >= 0 ? i : -i - 1, acumulada.length - 1);
+        }
+    }
+
+    private static long[] medirLatencias(ServidorMazmorras.PreparadorMazmorra preparador, String[] mazmorras,
+            int peticiones, int hilos, Zipf zipf) throws InterruptedException {
+        long[] latencias = new long[peticiones];
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        for (int i = 0; i < peticiones; i++) {
+            int indice = i;
+            String mazmorra = mazmorras[zipf.siguiente()];
+            pool.execute(() -> {
+                long inicio = System.nanoTime();
+                try {
+                    preparador.preparar(mazmorra);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                latencias[indice] = System.nanoTime() - inicio;
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+        Arrays.sort(latencias);
+        return latencias;
+    }
+
+    private static String resumir(long[] latencias) {
+        double media = Arrays.stream(latencias).average().orElse(0) / 1e6;
+        double p99 = latencias[(int) Math.min(latencias.length - 1, Math.ceil(latencias.length * 0.99) - 1)] / 1e6;
+        return String.format("media=%.2f ms p99=%.2f ms", media, p99);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int peticiones = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        String[] mazmorras = new String[20];
+        for (int i = 0; i < mazmorras.length; i++) {
+            mazmorras[i] = "Mazmorra-" + i;
+        }
+        ServidorMazmorras.PreparadorMazmorra lento = mazmorra -> {
+            Thread.sleep(20);
+            return new ServidorMazmorras.InstanciaMazmorra(mazmorra, System.nanoTime());
+        };
+        Zipf zipf = new Zipf(mazmorras.length, 1.1);
+
+        System.out.println("=== Caché de mazmorras con mezcla Zipf (" + peticiones + " peticiones) ===");
+        long[] sinCache = medirLatencias(lento, mazmorras, peticiones, 16, zipf);
+        System.out.println("Sin caché: " + resumir(sinCache));
+
+        CacheMazmorras cache = new CacheMazmorras(lento, 10, TimeUnit.SECONDS.toNanos(30), System::nanoTime);
+        long[] conCache = medirLatencias(cache, mazmorras, peticiones, 16, zipf);
+        System.out.println("Con caché: " + resumir(conCache));
+        System.out.println("Estadísticas: " + cache);
+    }
+}
@@ -2,7 +2,10 @@ package org.docencia.hilos;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 
 /*
  * @author franciscorodalf
@@ -37,34 +40,106 @@ public class CalculadoraDanoCritico {
         }
     }
 
+    static class Golpe {
+        final String atacante;
+        final int dano;
+        final boolean critico;
+
+        Golpe(String atacante, int dano, boolean critico) {
+            this.atacante = atacante;
+            this.dano = dano;
+            this.critico = critico;
+        }
+    }
+
     static class TareaCalcularDano implements Callable<Integer> {
+        private static final RegistroAsincrono.Formato CALCULANDO = (destino, e) ->
+                destino.append('[').append(e.texto).append("] Calculando daño para ").append(e.texto2);
+        private static final RegistroAsincrono.Formato RESULTADO = (destino, e) ->
+                destino.append('[').append(e.texto).append("] ").append(e.texto2)
+                        .append(e.a != 0 ? " ¡CRÍTICO!" : " golpe normal").append(" -> daño: ").append(e.b);
+
+        private static final HistogramaLatencias LATENCIA =
+                RegistroMetricas.global().histograma("dano.tarea.latencia");
+        private static final LongAdder GOLPES = RegistroMetricas.global().contador("dano.golpes");
+        private static final LongAdder CRITICOS = RegistroMetricas.global().contador("dano.criticos");
+
         private final Ataque ataque;
+        private final RegistroAsincrono registro;
+        private final DiarioEventos diario;
+        private final int atacanteDiario;
+        private final LongSupplier pausaMillis;
 
         TareaCalcularDano(Ataque ataque) {
+            this(ataque, RegistroAsincrono.global());
+        }
+
+        TareaCalcularDano(Ataque ataque, RegistroAsincrono registro) {
+            this(ataque, registro, () -> 500 + (int) (Math.random() * 500));
+        }
+
+        /**
+         * @param registro    destino de los mensajes; si es {@code null} no se
+         *                    publica nada
+         * @param pausaMillis duración simulada del cálculo; con 0 no se duerme
+         */
+        TareaCalcularDano(Ataque ataque, RegistroAsincrono registro, LongSupplier pausaMillis) {
+            this(ataque, registro, DiarioEventos.global(), pausaMillis);
+        }
+
+        /**
+         * @param diario diario binario donde anotar cada golpe; si es
+         *               {@code null} no se anota
+         */
+        TareaCalcularDano(Ataque ataque, RegistroAsincrono registro, DiarioEventos diario,
+                LongSupplier pausaMillis) {
             this.ataque = ataque;
+            this.registro = registro;
+            this.diario = diario;
+            this.atacanteDiario = diario != null ? diario.nombre(ataque.atacante) : -1;
+            this.pausaMillis = Objects.requireNonNull(pausaMillis, "pausaMillis");
         }
 
         @Override
         public Integer call() throws Exception {
-            String hilo = Thread.currentThread().getName();
-            System.out.println("[" + hilo + "] Calculando daño para " + ataque.atacante);
+            return calcularGolpe().dano;
+        }
+
+        Golpe calcularGolpe() throws InterruptedException {
+            long inicio = System.nanoTime();
+            String hilo = registro != null ? Thread.currentThread().getName() : null;
+            if (registro != null) {
+                registro.publicar(CALCULANDO, hilo, ataque.atacante, 0, 0);
+            }
 
             boolean esCritico = Math.random() < ataque.probCritico;
             double multiplicador = esCritico ? ataque.multiplicadorCritico : 1.0;
 
-            Thread.sleep(500 + (int) (Math.random() * 500));
+            long pausa = pausaMillis.getAsLong();
+            if (pausa > 0) {
+                Thread.sleep(pausa);
+            }
 
             int danoFinal = (int) (ataque.danoBase * multiplicador);
-            System.out.println("[" + hilo + "] " + ataque.atacante +
-                    (esCritico ? " ¡CRÍTICO!" : " golpe normal") +
-                    " -> daño: " + danoFinal);
+            if (registro != null) {
+                registro.publicar(RESULTADO, hilo, ataque.atacante, esCritico ? 1 : 0, danoFinal);
+            }
+            if (diario != null) {
+                diario.golpe(atacanteDiario, danoFinal, esCritico);
+            }
+            GOLPES.increment();
+            if (esCritico) {
+                CRITICOS.increment();
+            }
+            LATENCIA.registrar(System.nanoTime() - inicio);
 
-            return danoFinal;
+            return new Golpe(ataque.atacante, danoFinal, esCritico);
         }
     }
 
     public static void main(String[] args) {
         ExecutorService pool = Executors.newFixedThreadPool(4);
+        RegistroMetricas.global().medirEjecutor("dano.pool", pool);
         List<Future<Integer>> futuros = new ArrayList<>();
 
         Ataque[] ataques = {
@@ -98,6 +173,7 @@ public class CalculadoraDanoCritico {
             }
         }
 
+        RegistroAsincrono.global().vaciar();
         System.out.println("Daño total de la raid: " + totalRaid);
         pool.shutdown();
     }
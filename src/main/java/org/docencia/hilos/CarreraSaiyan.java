@@ -0,0 +1,340 @@
+package org.docencia.hilos;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Carrera entre cualquier número de corredores. A diferencia de
+ * {@link SaiyanRaceSemaphore} y {@link SaiyanRaceSemaphoreOne}, todo el estado
+ * (turnos, distancias, ganador) pertenece a la instancia, así que un mismo
+ * proceso puede tener miles de carreras independientes a la vez.
+ *
+ * <p>Los corredores no ocupan un hilo cada uno: cada paso es una tarea corta
+ * en un {@link Executor} compartido y el turno se pasa programando la tarea
+ * del siguiente, sin bloquear ningún hilo. Las pausas entre pasos se esperan
+ * con {@link CompletableFuture#delayedExecutor}. La disciplina de turnos se
+ * elige con {@link Turnos}.
+ *
+ * <p>{@link #iniciarEnHilos(RelevoTurno.Tipo, Executor)} corre la misma
+ * carrera al estilo de las clases originales, con un hilo bloqueante por
+ * corredor que se pasan el turno con el {@link RelevoTurno} elegido.
+ */
+public class CarreraSaiyan {
+
+    enum Turnos {
+        /** Turno estricto por orden: 0, 1, ..., n-1, 0, ... como SaiyanRaceSemaphore. */
+        ROUND_ROBIN,
+        /**
+         * Todos compiten por el turno como en SaiyanRaceSemaphoreOne: quien lo
+         * consigue da un paso; no hay alternancia garantizada.
+         */
+        CONTENDIDO
+    }
+
+    /**
+     * Resultado de una carrera terminada.
+     */
+    static final class Resultado {
+        final int ganador;
+        final String nombreGanador;
+        final int pasos;
+        final int[] distancias;
+
+        Resultado(int ganador, String nombreGanador, int pasos, int[] distancias) {
+            this.ganador = ganador;
+            this.nombreGanador = nombreGanador;
+            this.pasos = pasos;
+            this.distancias = distancias;
+        }
+
+        @Override
+        public String toString() {
+            return nombreGanador + " gana en " + pasos + " pasos";
+        }
+    }
+
+    static final int META = 100;
+
+    private final String[] corredores;
+    private final Turnos turnos;
+    private final int meta;
+    private final IntSupplier stepSupplier;
+    private final LongSupplier pauseSupplier;
+    private final Consumer<String> progressLogger;
+
+    private final int[] distancias;
+    private final long[] listoNanos;
+    private final AtomicBoolean turnoOcupado = new AtomicBoolean();
+    private final AtomicBoolean terminada = new AtomicBoolean();
+    private final CompletableFuture<Resultado> resultado = new CompletableFuture<>();
+    private final AtomicBoolean iniciada = new AtomicBoolean();
+    private Executor ejecutor;
+    private volatile RelevoTurno relevo;
+    private volatile int ganador = -1;
+    private int pasos;
+
+    public CarreraSaiyan(List<String> corredores, Turnos turnos) {
+        this(corredores, turnos, META,
+                () -> ThreadLocalRandom.current().nextInt(1, 11),
+                () -> ThreadLocalRandom.current().nextLong(200, 401),
+                RegistroAsincrono.global());
+    }
+
+    /**
+     * @param pauseSupplier pausa en milisegundos de cada corredor después de su
+     *                      paso; con 0 no hay pausa
+     * @param progressLogger recibe los mensajes de progreso; si es
+     *                       {@code null} no se construye ningún mensaje
+     */
+    CarreraSaiyan(
+            List<String> corredores,
+            Turnos turnos,
+            int meta,
+            IntSupplier stepSupplier,
+            LongSupplier pauseSupplier,
+            Consumer<String> progressLogger) {
+        if (corredores.isEmpty()) {
+            throw new IllegalArgumentException("hace falta al menos un corredor");
+        }
+        if (meta <= 0) {
+            throw new IllegalArgumentException("meta debe ser positiva");
+        }
+        this.corredores = corredores.toArray(String[]::new);
+        this.turnos = Objects.requireNonNull(turnos, "turnos");
+        this.meta = meta;
+        this.stepSupplier = Objects.requireNonNull(stepSupplier, "stepSupplier");
+        this.pauseSupplier = Objects.requireNonNull(pauseSupplier, "pauseSupplier");
+        this.progressLogger = progressLogger;
+        this.distancias = new int[this.corredores.length];
+        this.listoNanos = new long[this.corredores.length];
+    }
+
+    /**
+     * Arranca la carrera en {@code ejecutor}. Solo se puede iniciar una vez.
+     */
+    CompletableFuture<Resultado> iniciar(Executor ejecutor) {
+        marcarIniciada(ejecutor);
+        if (turnos == Turnos.ROUND_ROBIN) {
+            ejecutor.execute(() -> turnoRoundRobin(0));
+        } else {
+            for (int i = 0; i < corredores.length; i++) {
+                int corredor = i;
+                ejecutor.execute(() -> turnoContendido(corredor));
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Arranca la carrera con un hilo por corredor que se bloquea esperando su
+     * turno en un {@link RelevoTurno} de tipo {@code tipo}. {@code ejecutor}
+     * tiene que poder ejecutar a la vez las tareas de todos los corredores
+     * (hilos virtuales o un pool con al menos tantos hilos); si no, la
+     * carrera se queda esperando un turno que nunca llega.
+     *
+     * @throws IllegalArgumentException si la carrera es {@link Turnos#ROUND_ROBIN}
+     *                                  y el relevo no garantiza la alternancia
+     */
+    CompletableFuture<Resultado> iniciarEnHilos(RelevoTurno.Tipo tipo, Executor ejecutor) {
+        if (turnos == Turnos.ROUND_ROBIN && !tipo.garantizaAlternancia()) {
+            throw new IllegalArgumentException(tipo + " no garantiza el turno estricto de " + turnos);
+        }
+        RelevoTurno relevo = RelevoTurno.crear(tipo, corredores.length);
+        marcarIniciada(ejecutor);
+        this.relevo = relevo;
+        for (int i = 0; i < corredores.length; i++) {
+            int corredor = i;
+            ejecutor.execute(() -> correr(corredor, relevo));
+        }
+        return resultado;
+    }
+
+    private void marcarIniciada(Executor ejecutor) {
+        Objects.requireNonNull(ejecutor, "ejecutor");
+        if (!iniciada.compareAndSet(false, true)) {
+            throw new IllegalStateException("La carrera ya se ha iniciado");
+        }
+        this.ejecutor = ejecutor;
+    }
+
+    /**
+     * Bucle del hilo de {@code corredor}. El turno se cede antes de la pausa,
+     * como en {@link SaiyanRaceSemaphore}. Cuando la carrera termina, cada
+     * hilo que recibe el turno lo pasa y se va; con alternancia estricta la
+     * cadena acaba en el anterior al ganador, que ya no espera turno.
+     */
+    private void correr(int corredor, RelevoTurno relevo) {
+        boolean alternancia = relevo.getTipo().garantizaAlternancia();
+        int siguiente = relevo.siguiente(corredor);
+        try {
+            while (relevo.esperarTurno(corredor)) {
+                if (!terminada.get()) {
+                    avanzar(corredor);
+                }
+                if (terminada.get()) {
+                    if (!relevo.isDetenido() && (!alternancia || siguiente != ganador)) {
+                        relevo.cederTurno(corredor);
+                    }
+                    return;
+                }
+                relevo.cederTurno(corredor);
+                long pausa = pausa();
+                if (pausa > 0) {
+                    Thread.sleep(pausa);
+                }
+            }
+        } catch (InterruptedException e) {
+            if (!relevo.isDetenido()) {
+                Thread.currentThread().interrupt();
+                fallar(e);
+            }
+        } catch (RuntimeException e) {
+            fallar(e);
+        }
+    }
+
+    /**
+     * Paso de {@code corredor} con turno estricto. Solo hay una tarea de la
+     * carrera en vuelo, así que el estado no necesita más sincronización que
+     * la del propio ejecutor al pasar de una tarea a la siguiente.
+     */
+    private void turnoRoundRobin(int corredor) {
+        if (terminada.get()) {
+            return;
+        }
+        try {
+            if (avanzar(corredor)) {
+                return;
+            }
+            listoNanos[corredor] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pausa());
+            int siguiente = (corredor + 1) % corredores.length;
+            programar(() -> turnoRoundRobin(siguiente), listoNanos[siguiente] - System.nanoTime());
+        } catch (RuntimeException e) {
+            fallar(e);
+        }
+    }
+
+    /**
+     * Intento de paso de {@code corredor} compitiendo por el turno. Si otro lo
+     * tiene, la tarea se vuelve a encolar en lugar de bloquear el hilo.
+     */
+    private void turnoContendido(int corredor) {
+        if (terminada.get()) {
+            return;
+        }
+        if (!turnoOcupado.compareAndSet(false, true)) {
+            programar(() -> turnoContendido(corredor), 0);
+            return;
+        }
+        long pausa;
+        try {
+            if (avanzar(corredor)) {
+                return;
+            }
+            pausa = TimeUnit.MILLISECONDS.toNanos(pausa());
+        } catch (RuntimeException e) {
+            fallar(e);
+            return;
+        } finally {
+            turnoOcupado.set(false);
+        }
+        programar(() -> turnoContendido(corredor), pausa);
+    }
+
+    /**
+     * Da un paso con el turno en la mano.
+     *
+     * @return {@code true} si con este paso termina la carrera
+     */
+    private boolean avanzar(int corredor) {
+        int paso = Math.max(1, stepSupplier.getAsInt());
+        int distancia = distancias[corredor] += paso;
+        pasos++;
+        if (progressLogger != null) {
+            progressLogger.accept(corredores[corredor] + " avanzó " + paso + " metros. Distancia total: "
+                    + distancia + " metros.");
+        }
+        if (distancia < meta || !terminada.compareAndSet(false, true)) {
+            return false;
+        }
+        ganador = corredor;
+        if (progressLogger != null) {
+            progressLogger.accept(corredores[corredor] + " ha ganado la carrera!");
+        }
+        resultado.complete(new Resultado(corredor, corredores[corredor], pasos, distancias.clone()));
+        return true;
+    }
+
+    private long pausa() {
+        return Math.max(0, pauseSupplier.getAsLong());
+    }
+
+    private void programar(Runnable tarea, long retardoNanos) {
+        if (retardoNanos <= 0) {
+            ejecutor.execute(tarea);
+        } else {
+            CompletableFuture.delayedExecutor(retardoNanos, TimeUnit.NANOSECONDS, ejecutor).execute(tarea);
+        }
+    }
+
+    private void fallar(Throwable error) {
+        terminada.set(true);
+        detenerRelevo();
+        resultado.completeExceptionally(error);
+    }
+
+    /**
+     * Abandona la carrera; el resultado queda cancelado.
+     */
+    public void cancelar() {
+        terminada.set(true);
+        detenerRelevo();
+        resultado.cancel(false);
+    }
+
+    private void detenerRelevo() {
+        RelevoTurno relevo = this.relevo;
+        if (relevo != null) {
+            relevo.detener();
+        }
+    }
+
+    public boolean isTerminada() {
+        return terminada.get();
+    }
+
+    public int getCorredores() {
+        return corredores.length;
+    }
+
+    /**
+     * Uso: {@code CarreraSaiyan [ROUND_ROBIN|CONTENDIDO] [tipoRelevo]}. Sin
+     * tipo de relevo los corredores no ocupan hilos; con él, cada uno corre
+     * en su hilo virtual.
+     */
+    public static void main(String[] args) throws Exception {
+        Turnos turnos = args.length > 0 ? Turnos.valueOf(args[0]) : Turnos.ROUND_ROBIN;
+        CarreraSaiyan carrera = new CarreraSaiyan(List.of("Goku", "Vegeta", "Gohan", "Piccolo"), turnos);
+        Resultado resultado;
+        if (args.length > 1) {
+            try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+                resultado = carrera.iniciarEnHilos(RelevoTurno.Tipo.valueOf(args[1]), hilos).get();
+            }
+        } else {
+            resultado = carrera.iniciar(ForkJoinPool.commonPool()).get();
+        }
+        RegistroAsincrono.global().vaciar();
+        System.out.println(resultado);
+    }
+}
@@ -2,24 +2,34 @@ package org.docencia.hilos;
 
 import java.time.Duration;
 import java.util.Objects;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
  * Simulación básica de un semáforo de tráfico que alterna los colores ROJO,
- * VERDE y AMBAR utilizando un único semáforo para sincronizar el cambio de
- * estado.
+ * VERDE y AMBAR. Solo un hilo cambia el color, así que basta una
+ * {@link FaseSemaforo} para publicarlo y detenerlo, sin cerrojos.
  */
 public class ColorSemaforo implements Runnable {
 
-    private final Semaphore semaphore = new Semaphore(1, true);
+    private static final RegistroAsincrono.Formato COLOR_ACTUAL = (destino, e) ->
+            destino.append("Color actual: ").append(e.texto);
+
+    /**
+     * Forma de esperar la duración de un color: {@code Thread::sleep} en
+     * producción o {@link SimuladorEventos#dormir(long)} en una simulación.
+     */
+    @FunctionalInterface
+    interface Espera {
+        void dormir(long millis) throws InterruptedException;
+    }
+
+    private final FaseSemaforo fases = new FaseSemaforo(LightColor.ROJO);
     private final long rojoMillis;
     private final long verdeMillis;
     private final long ambarMillis;
     private final Consumer<LightColor> onColorChange;
-    private final AtomicBoolean running = new AtomicBoolean(true);
-    private volatile LightColor currentColor = LightColor.ROJO;
+    private final Espera espera;
     private volatile Thread runner;
 
     public ColorSemaforo() {
@@ -34,39 +44,41 @@ public class ColorSemaforo implements Runnable {
     }
 
     ColorSemaforo(Consumer<LightColor> onColorChange, long rojoMillis, long verdeMillis, long ambarMillis) {
+        this(onColorChange, rojoMillis, verdeMillis, ambarMillis, Thread::sleep);
+    }
+
+    ColorSemaforo(Consumer<LightColor> onColorChange, long rojoMillis, long verdeMillis, long ambarMillis,
+            Espera espera) {
         this.onColorChange = Objects.requireNonNull(onColorChange, "onColorChange");
+        this.espera = Objects.requireNonNull(espera, "espera");
         this.rojoMillis = Math.max(0, rojoMillis);
         this.verdeMillis = Math.max(0, verdeMillis);
         this.ambarMillis = Math.max(0, ambarMillis);
     }
 
     static void printToConsole(LightColor color) {
-        System.out.println("Color actual: " + color);
+        RegistroAsincrono.global().publicar(COLOR_ACTUAL, color);
     }
 
     @Override
     public void run() {
         runner = Thread.currentThread();
         try {
-            while (running.get()) {
-                semaphore.acquire();
-                try {
-                    onColorChange.accept(currentColor);
-                } finally {
-                    semaphore.release();
-                }
-                sleepCurrentColor();
-                avanzarColor();
+            while (!fases.isDetenida()) {
+                LightColor color = fases.getFase();
+                onColorChange.accept(color);
+                sleepColor(color);
+                fases.avanzar(color);
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         } finally {
-            running.set(false);
+            fases.detener();
         }
     }
 
-    private void sleepCurrentColor() throws InterruptedException {
-        long millis = switch (currentColor) {
+    private void sleepColor(LightColor color) throws InterruptedException {
+        long millis = switch (color) {
             case ROJO -> rojoMillis;
             case VERDE -> verdeMillis;
             case AMBAR -> ambarMillis;
@@ -74,22 +86,11 @@ public class ColorSemaforo implements Runnable {
         if (millis <= 0) {
             return;
         }
-        Thread.sleep(millis);
-    }
-
-    private void avanzarColor() {
-        if (!running.get()) {
-            return;
-        }
-        currentColor = switch (currentColor) {
-            case ROJO -> LightColor.VERDE;
-            case VERDE -> LightColor.AMBAR;
-            case AMBAR -> LightColor.ROJO;
-        };
+        espera.dormir(millis);
     }
 
     public void stopSimulation() {
-        running.set(false);
+        fases.detener();
         Thread activeRunner = runner;
         if (activeRunner != null) {
             activeRunner.interrupt();
@@ -97,14 +98,31 @@ public class ColorSemaforo implements Runnable {
     }
 
     public LightColor getCurrentColor() {
-        return currentColor;
+        return fases.getFase();
     }
 
     public boolean isRunning() {
-        return running.get();
+        return !fases.isDetenida();
     }
 
+    /**
+     * Con el argumento {@code simulado} los 20 segundos pasan en tiempo virtual
+     * y el programa termina al momento.
+     */
     public static void main(String[] args) throws InterruptedException {
+        if (args.length > 0 && "simulado".equalsIgnoreCase(args[0])) {
+            SimuladorEventos simulador = new SimuladorEventos();
+            ColorSemaforo simulado = new ColorSemaforo(ColorSemaforo::printToConsole,
+                LightColor.ROJO.getDurationMillis(),
+                LightColor.VERDE.getDurationMillis(),
+                LightColor.AMBAR.getDurationMillis(),
+                simulador::dormir);
+            simulador.schedule(simulado::stopSimulation, 20, TimeUnit.SECONDS);
+            simulado.run();
+            // stopSimulation interrumpe al hilo del semáforo, que aquí es este.
+            Thread.interrupted();
+            return;
+        }
         ColorSemaforo colorSemaforo = new ColorSemaforo();
         Thread hilo = new Thread(colorSemaforo, "SimulacionSemaforo");
         hilo.start();
@@ -2,25 +2,23 @@ package org.docencia.hilos;
 
 import java.time.Duration;
 import java.util.Objects;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
  * Variante del semáforo que garantiza estrictamente el orden
- * ROJO → VERDE → AMBAR usando tres semáforos que coordinan el turno
- * correspondiente a cada color.
+ * ROJO → VERDE → AMBAR. El turno de cada color lo lleva una
+ * {@link FaseSemaforo}: solo se puede avanzar desde el color actual, y otros
+ * hilos pueden esperar a un color concreto sin sondear.
  */
 public class ColorSemaforoMejorado implements Runnable {
 
-    private final Semaphore turnoRojo = new Semaphore(1);
-    private final Semaphore turnoVerde = new Semaphore(0);
-    private final Semaphore turnoAmbar = new Semaphore(0);
+    private final FaseSemaforo fases = new FaseSemaforo(LightColor.ROJO);
     private final long rojoMillis;
     private final long verdeMillis;
     private final long ambarMillis;
     private final Consumer<LightColor> onColorChange;
-    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final ColorSemaforo.Espera espera;
     private volatile Thread runner;
 
     public ColorSemaforoMejorado() {
@@ -35,7 +33,13 @@ public class ColorSemaforoMejorado implements Runnable {
     }
 
     ColorSemaforoMejorado(Consumer<LightColor> onColorChange, long rojoMillis, long verdeMillis, long ambarMillis) {
+        this(onColorChange, rojoMillis, verdeMillis, ambarMillis, Thread::sleep);
+    }
+
+    ColorSemaforoMejorado(Consumer<LightColor> onColorChange, long rojoMillis, long verdeMillis, long ambarMillis,
+            ColorSemaforo.Espera espera) {
         this.onColorChange = Objects.requireNonNull(onColorChange, "onColorChange");
+        this.espera = Objects.requireNonNull(espera, "espera");
         this.rojoMillis = Math.max(0, rojoMillis);
         this.verdeMillis = Math.max(0, verdeMillis);
         this.ambarMillis = Math.max(0, ambarMillis);
@@ -45,60 +49,81 @@ public class ColorSemaforoMejorado implements Runnable {
     public void run() {
         runner = Thread.currentThread();
         try {
-            while (running.get()) {
-                if (!mostrarColor(LightColor.ROJO, rojoMillis, turnoRojo, turnoVerde)) {
+            while (!fases.isDetenida()) {
+                if (!mostrarColor(LightColor.ROJO, rojoMillis)) {
                     break;
                 }
-                if (!mostrarColor(LightColor.VERDE, verdeMillis, turnoVerde, turnoAmbar)) {
+                if (!mostrarColor(LightColor.VERDE, verdeMillis)) {
                     break;
                 }
-                if (!mostrarColor(LightColor.AMBAR, ambarMillis, turnoAmbar, turnoRojo)) {
+                if (!mostrarColor(LightColor.AMBAR, ambarMillis)) {
                     break;
                 }
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         } finally {
-            running.set(false);
-            liberarTodos();
+            fases.detener();
         }
     }
 
-    private boolean mostrarColor(LightColor color, long millis, Semaphore miTurno, Semaphore siguienteTurno)
-        throws InterruptedException {
-        miTurno.acquire();
-        if (!running.get()) {
-            siguienteTurno.release();
+    private boolean mostrarColor(LightColor color, long millis) throws InterruptedException {
+        if (fases.isDetenida() || fases.getFase() != color) {
             return false;
         }
         onColorChange.accept(color);
         if (millis > 0) {
-            Thread.sleep(millis);
+            espera.dormir(millis);
         }
-        siguienteTurno.release();
-        return running.get();
-    }
-
-    private void liberarTodos() {
-        turnoRojo.release();
-        turnoVerde.release();
-        turnoAmbar.release();
+        return fases.avanzar(color);
     }
 
+    /**
+     * Detiene el semáforo y despierta a todos los que esperan un color.
+     */
     public void stopSimulation() {
-        running.set(false);
-        liberarTodos();
+        fases.detener();
         Thread activeRunner = runner;
         if (activeRunner != null) {
             activeRunner.interrupt();
         }
     }
 
+    /**
+     * Espera sin sondear a que el semáforo muestre {@code color}.
+     *
+     * @return {@code false} si el semáforo se detuvo antes
+     */
+    public boolean esperarColor(LightColor color) throws InterruptedException {
+        return fases.esperar(color) >= 0;
+    }
+
+    public LightColor getCurrentColor() {
+        return fases.getFase();
+    }
+
     public boolean isRunning() {
-        return running.get();
+        return !fases.isDetenida();
     }
 
+    /**
+     * Con el argumento {@code simulado} los 20 segundos pasan en tiempo virtual
+     * y el programa termina al momento.
+     */
     public static void main(String[] args) throws InterruptedException {
+        if (args.length > 0 && "simulado".equalsIgnoreCase(args[0])) {
+            SimuladorEventos simulador = new SimuladorEventos();
+            ColorSemaforoMejorado simulado = new ColorSemaforoMejorado(ColorSemaforo::printToConsole,
+                LightColor.ROJO.getDurationMillis(),
+                LightColor.VERDE.getDurationMillis(),
+                LightColor.AMBAR.getDurationMillis(),
+                simulador::dormir);
+            simulador.schedule(simulado::stopSimulation, 20, TimeUnit.SECONDS);
+            simulado.run();
+            // stopSimulation interrumpe al hilo del semáforo, que aquí es este.
+            Thread.interrupted();
+            return;
+        }
         ColorSemaforoMejorado simulacion = new ColorSemaforoMejorado();
         Thread hilo = new Thread(simulacion, "SemaforoMejorado");
         hilo.start();
@@ -0,0 +1,77 @@
+package org.docencia.hilos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compara los modos de {@link AsignadorEquipos.ModoAdmision}: muchos
+ * estudiantes en hilos de plataforma cogen y sueltan equipo durante un tiempo
+ * fijo, con un uso corto activo. Para cada modo se muestra el rendimiento
+ * (usos por segundo) frente a la espera media, p99 y máxima para conseguir
+ * equipo, que es lo que se gana o se pierde al permitir adelantamientos.
+ *
+ * <p>Uso: {@code ComparativaAdmisionLaboratorio [estudiantes] [equipos] [segundos] [limiteHibrido]}
+ */
+public class ComparativaAdmisionLaboratorio {
+
+    private static final long USO_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+    public static void main(String[] args) throws InterruptedException {
+        int estudiantes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int equipos = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int segundos = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int limiteHibrido = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+
+        System.out.println("=== Admisión al laboratorio: " + estudiantes + " estudiantes, " + equipos
+                + " equipos, " + segundos + " s por modo ===");
+        System.out.printf("%-15s %14s %12s %12s %12s%n", "modo", "usos/s", "media ms", "p99 ms", "max ms");
+        for (AsignadorEquipos.ModoAdmision modo : AsignadorEquipos.ModoAdmision.values()) {
+            AsignadorEquipos laboratorio = new AsignadorEquipos(equipos, modo, limiteHibrido);
+            EstadisticasLaboratorio estadisticas = new EstadisticasLaboratorio();
+            long usos = medir(laboratorio, estadisticas, estudiantes, TimeUnit.SECONDS.toNanos(segundos));
+            HistogramaLatencias espera = estadisticas.getEspera();
+            System.out.printf("%-15s %,14.0f %12.3f %12.3f %12.3f%n", modo, usos / (double) segundos,
+                    espera.getMedia() / 1e6, espera.percentil(0.99) / 1e6, espera.getMaximo() / 1e6);
+        }
+    }
+
+    private static long medir(AsignadorEquipos laboratorio, MonitorLaboratorio monitor, int estudiantes,
+            long duracionNanos) throws InterruptedException {
+        LongAdder usos = new LongAdder();
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Thread> hilos = new ArrayList<>(estudiantes);
+        long[] fin = new long[1];
+        for (int e = 0; e < estudiantes; e++) {
+            Thread hilo = new Thread(() -> {
+                try {
+                    salida.await();
+                    while (System.nanoTime() < fin[0]) {
+                        long inicioEspera = System.nanoTime();
+                        int equipo = laboratorio.adquirir();
+                        long inicioUso = System.nanoTime();
+                        monitor.equipoAdquirido(equipo, inicioUso - inicioEspera);
+                        while (System.nanoTime() - inicioUso < USO_NANOS) {
+                            Thread.onSpinWait();
+                        }
+                        monitor.equipoLiberado(equipo, System.nanoTime() - inicioUso);
+                        laboratorio.liberar(equipo);
+                        usos.increment();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "Estudiante-" + (e + 1));
+            hilos.add(hilo);
+            hilo.start();
+        }
+        fin[0] = System.nanoTime() + duracionNanos;
+        salida.countDown();
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        return usos.sum();
+    }
+}
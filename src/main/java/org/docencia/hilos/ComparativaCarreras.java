@@ -0,0 +1,59 @@
+package org.docencia.hilos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendimiento del {@link CarreraSaiyan} en carreras por segundo según el
+ * número de hilos del ejecutor compartido. Se lanzan miles de carreras
+ * independientes a la vez, sin pausas ni mensajes, con cada disciplina de
+ * turnos. El número de hilos va de 1 hasta el doble de núcleos.
+ *
+ * <p>Uso: {@code ComparativaCarreras [carreras] [corredores]}
+ */
+public class ComparativaCarreras {
+
+    public static void main(String[] args) throws Exception {
+        int carreras = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int corredores = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int nucleos = Runtime.getRuntime().availableProcessors();
+        List<String> nombres = new ArrayList<>();
+        for (int i = 0; i < corredores; i++) {
+            nombres.add("Saiyan-" + (i + 1));
+        }
+
+        System.out.println("=== Carreras: " + carreras + " a la vez, " + corredores + " corredores, "
+                + nucleos + " núcleos ===");
+        for (CarreraSaiyan.Turnos turnos : CarreraSaiyan.Turnos.values()) {
+            medir(nombres, turnos, carreras, 1);
+            for (int hilos = 1; hilos <= 2 * nucleos; hilos *= 2) {
+                double porSegundo = medir(nombres, turnos, carreras, hilos);
+                System.out.printf("%-12s hilos=%-3d %,12.0f carreras/s%n", turnos, hilos, porSegundo);
+            }
+        }
+    }
+
+    private static double medir(List<String> nombres, CarreraSaiyan.Turnos turnos, int carreras, int hilos)
+            throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(hilos, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        SplittableRandom semillas = new SplittableRandom(42);
+        try {
+            CompletableFuture<?>[] resultados = new CompletableFuture<?>[carreras];
+            long inicio = System.nanoTime();
+            for (int i = 0; i < carreras; i++) {
+                SplittableRandom aleatorio = semillas.split();
+                CarreraSaiyan carrera = new CarreraSaiyan(nombres, turnos, CarreraSaiyan.META,
+                        () -> aleatorio.nextInt(1, 11), () -> 0, null);
+                resultados[i] = carrera.iniciar(pool);
+            }
+            CompletableFuture.allOf(resultados).get(5, TimeUnit.MINUTES);
+            return carreras / ((System.nanoTime() - inicio) / 1e9);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.docencia.hilos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Compara el {@link ControladorCruces} con el modelo de un hilo por semáforo
+ * ({@link ColorSemaforo}) midiendo la fluctuación de los cambios de color. Los
+ * cruces arrancan escalonados dentro de un ciclo, como en una calle real.
+ *
+ * <p>Para cada cambio se mide el retraso del paso: cuánto más de lo previsto
+ * ha durado el color anterior. Además se mide la deriva acumulada al final,
+ * que en el modelo de hilo por semáforo crece con cada ciclo porque cada
+ * {@code sleep} empieza cuando acabó el anterior. Con más cruces que
+ * {@code maxHilos} el modelo de hilo por semáforo no se ejecuta.
+ *
+ * <p>Uso: {@code ComparativaCruces [cruces,...] [segundos] [hilosControlador] [maxHilos]}
+ */
+public class ComparativaCruces {
+
+    /**
+     * Aviso de color que mide el retraso de cada paso y la deriva acumulada de
+     * un cruce.
+     */
+    private static final class MedidorPasos implements Consumer<LightColor> {
+        private final HistogramaLatencias pasos;
+        private long inicioNanos;
+        private long previstoNanos;
+        private long ultimoNanos;
+        private LightColor anterior;
+
+        MedidorPasos(HistogramaLatencias pasos) {
+            this.pasos = pasos;
+        }
+
+        @Override
+        public void accept(LightColor color) {
+            long ahora = System.nanoTime();
+            if (anterior == null) {
+                inicioNanos = ahora;
+            } else {
+                long duracion = TimeUnit.MILLISECONDS.toNanos(anterior.getDurationMillis());
+                pasos.registrar(ahora - ultimoNanos - duracion);
+                previstoNanos += duracion;
+            }
+            anterior = color;
+            ultimoNanos = ahora;
+        }
+
+        long deriva() {
+            return anterior == null ? 0 : ultimoNanos - inicioNanos - previstoNanos;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String[] tamanos = (args.length > 0 ? args[0] : "10000,100000").split(",");
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int hilosControlador = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+        int maxHilos = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+        long ciclo = LightColor.ROJO.getDurationMillis() + LightColor.VERDE.getDurationMillis()
+                + LightColor.AMBAR.getDurationMillis();
+
+        System.out.println("=== Semáforos: " + segundos + " s, ciclo " + ciclo + " ms, controlador con "
+                + hilosControlador + " hilos ===");
+        for (String tamano : tamanos) {
+            int cruces = Integer.parseInt(tamano.trim());
+            medirControlador(cruces, segundos, hilosControlador, ciclo);
+            if (cruces <= maxHilos) {
+                medirHiloPorSemaforo(cruces, segundos, ciclo);
+            } else {
+                System.out.printf("%-8d hilo por semáforo: omitido (más de %d hilos)%n", cruces, maxHilos);
+            }
+        }
+    }
+
+    private static void medirControlador(int cruces, int segundos, int hilos, long ciclo)
+            throws InterruptedException {
+        ControladorCruces controlador = new ControladorCruces(hilos);
+        HistogramaLatencias pasos = new HistogramaLatencias();
+        List<MedidorPasos> medidores = new ArrayList<>(cruces);
+        for (int i = 0; i < cruces; i++) {
+            MedidorPasos medidor = new MedidorPasos(pasos);
+            medidores.add(medidor);
+            controlador.agregar(medidor, LightColor.ROJO.getDurationMillis(), LightColor.VERDE.getDurationMillis(),
+                    LightColor.AMBAR.getDurationMillis(), i % ciclo);
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(segundos));
+        controlador.shutdown();
+        imprimir(cruces, "controlador", pasos, medidores, hilos);
+        System.out.printf("%-8s   retraso sobre el vencimiento: %s%n", "",
+                controlador.getRetrasos().resumenMillis());
+    }
+
+    private static void medirHiloPorSemaforo(int cruces, int segundos, long ciclo) throws InterruptedException {
+        HistogramaLatencias pasos = new HistogramaLatencias();
+        List<MedidorPasos> medidores = new ArrayList<>(cruces);
+        List<ColorSemaforo> semaforos = new ArrayList<>(cruces);
+        List<Thread> hilos = new ArrayList<>(cruces);
+        for (int i = 0; i < cruces; i++) {
+            MedidorPasos medidor = new MedidorPasos(pasos);
+            ColorSemaforo semaforo = new ColorSemaforo(medidor, LightColor.ROJO.getDurationMillis(),
+                    LightColor.VERDE.getDurationMillis(), LightColor.AMBAR.getDurationMillis());
+            long desfase = i % ciclo;
+            Thread hilo = new Thread(() -> {
+                try {
+                    Thread.sleep(desfase);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                semaforo.run();
+            }, "Semaforo-" + i);
+            medidores.add(medidor);
+            semaforos.add(semaforo);
+            hilos.add(hilo);
+            hilo.start();
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(segundos));
+        for (ColorSemaforo semaforo : semaforos) {
+            semaforo.stopSimulation();
+        }
+        for (Thread hilo : hilos) {
+            hilo.interrupt();
+            hilo.join();
+        }
+        imprimir(cruces, "hilo por semáforo", pasos, medidores, cruces);
+    }
+
+    private static void imprimir(int cruces, String modelo, HistogramaLatencias pasos, List<MedidorPasos> medidores,
+            int hilos) {
+        double derivaMedia = medidores.stream().mapToLong(MedidorPasos::deriva).average().orElse(0);
+        long derivaMaxima = medidores.stream().mapToLong(MedidorPasos::deriva).max().orElse(0);
+        System.out.printf("%-8d %-18s hilos=%-7d pasos: %s | deriva media=%.2f ms max=%.2f ms%n", cruces, modelo,
+                hilos, pasos.resumenMillis(), derivaMedia / 1e6, derivaMaxima / 1e6);
+    }
+}
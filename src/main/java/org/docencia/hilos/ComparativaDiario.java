@@ -0,0 +1,170 @@
+package org.docencia.hilos;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+/**
+ * Compara el texto que hoy escriben {@code TareaCalcularDano} y
+ * {@code SpawnTarea} con {@code println} frente al {@link DiarioEventos}
+ * binario. Varios hilos anotan la misma mezcla de eventos, siete golpes por
+ * cada spawn, y después se leen de nuevo: el texto se recorre línea a línea
+ * sacando el daño, y el diario con {@link DiarioEventos.Lector}. Las dos
+ * lecturas deben sumar el mismo daño.
+ *
+ * <p>Se miden eventos por segundo al escribir (hasta tenerlo todo en el
+ * fichero) y al leer, y los bytes que ocupa cada evento en disco.
+ *
+ * <p>Uso: {@code ComparativaDiario [hilos] [eventosPorHilo]}
+ */
+public class ComparativaDiario {
+
+    private static final String[] ATACANTES = {"Mago del Fuego", "Guerrero", "Pícaro", "Arquera Élfica"};
+    private static final String ZONA = "Bosque Maldito";
+    private static final String ENEMIGO = "Slime Mutante";
+
+    @FunctionalInterface
+    private interface Productor {
+        void anotar(String hilo, int i);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int hilos = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int eventos = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        long total = (long) hilos * eventos;
+
+        System.out.println("=== Diario: " + hilos + " hilos x " + eventos + " eventos ===");
+        System.out.printf("%-10s %14s %14s %12s %16s%n", "variante", "escritos/s", "leídos/s", "B/evento",
+                "daño leído");
+
+        Path texto = Files.createTempFile("eventos", ".log");
+        Path directorio = Files.createTempDirectory("diario");
+        try {
+            long inicio = System.nanoTime();
+            try (PrintStream salida = new PrintStream(new BufferedOutputStream(
+                    new FileOutputStream(texto.toFile()), 8192), true, StandardCharsets.UTF_8)) {
+                producir(hilos, eventos, (hilo, i) -> {
+                    if ((i & 7) == 7) {
+                        salida.println("[" + hilo + "] Spawn de " + ENEMIGO + " en " + ZONA + " (población: "
+                                + (i & 63) + ")");
+                    } else {
+                        salida.println("[" + hilo + "] " + ATACANTES[i & 3]
+                                + ((i & 15) == 0 ? " ¡CRÍTICO!" : " golpe normal") + " -> daño: " + dano(i));
+                    }
+                });
+            }
+            long escritura = System.nanoTime() - inicio;
+            inicio = System.nanoTime();
+            long danoTexto = leerTexto(texto);
+            imprimir("println", total, escritura, System.nanoTime() - inicio, Files.size(texto), danoTexto);
+
+            inicio = System.nanoTime();
+            try (DiarioEventos diario = new DiarioEventos(directorio)) {
+                int[] atacantes = new int[ATACANTES.length];
+                for (int a = 0; a < atacantes.length; a++) {
+                    atacantes[a] = diario.nombre(ATACANTES[a]);
+                }
+                int zona = diario.nombre(ZONA);
+                int enemigo = diario.nombre(ENEMIGO);
+                producir(hilos, eventos, (hilo, i) -> {
+                    if ((i & 7) == 7) {
+                        diario.spawn(zona, enemigo, i);
+                    } else {
+                        diario.golpe(atacantes[i & 3], dano(i), (i & 15) == 0);
+                    }
+                });
+            }
+            escritura = System.nanoTime() - inicio;
+            inicio = System.nanoTime();
+            long[] danoDiario = new long[1];
+            new DiarioEventos.Lector(directorio).recorrer((marca, tipo, critico, zona, sujeto, valor) -> {
+                if (tipo == DiarioEventos.Tipo.GOLPE) {
+                    danoDiario[0] += valor;
+                }
+            });
+            imprimir("diario", total, escritura, System.nanoTime() - inicio, tamano(directorio), danoDiario[0]);
+        } finally {
+            Files.deleteIfExists(texto);
+            borrar(directorio);
+        }
+    }
+
+    private static int dano(int i) {
+        return 100 + (i & 255);
+    }
+
+    private static void producir(int hilos, int eventos, Productor productor) throws InterruptedException {
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Thread> productores = new ArrayList<>(hilos);
+        for (int h = 0; h < hilos; h++) {
+            Thread hilo = new Thread(() -> {
+                String nombre = Thread.currentThread().getName();
+                try {
+                    salida.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < eventos; i++) {
+                    productor.anotar(nombre, i);
+                }
+            }, "pool-1-thread-" + (h + 1));
+            productores.add(hilo);
+            hilo.start();
+        }
+        salida.countDown();
+        for (Thread hilo : productores) {
+            hilo.join();
+        }
+    }
+
+    /** Suma el daño de las líneas de golpe, como haría quien procese la salida. */
+    private static long leerTexto(Path fichero) throws IOException {
+        String marcador = " -> daño: ";
+        long dano = 0;
+        try (BufferedReader lector = Files.newBufferedReader(fichero, StandardCharsets.UTF_8)) {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                int p = linea.lastIndexOf(marcador);
+                if (p >= 0) {
+                    dano += Integer.parseInt(linea, p + marcador.length(), linea.length(), 10);
+                }
+            }
+        }
+        return dano;
+    }
+
+    private static long tamano(Path directorio) throws IOException {
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            long total = 0;
+            for (Path f : (Iterable<Path>) ficheros::iterator) {
+                total += Files.size(f);
+            }
+            return total;
+        }
+    }
+
+    private static void borrar(Path directorio) throws IOException {
+        try (Stream<Path> ficheros = Files.walk(directorio)) {
+            for (Path f : (Iterable<Path>) ficheros.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(f);
+            }
+        }
+    }
+
+    private static void imprimir(String variante, long total, long escrituraNanos, long lecturaNanos, long bytes,
+            long dano) {
+        System.out.printf("%-10s %,14.0f %,14.0f %12.1f %,16d%n", variante, total / (escrituraNanos / 1e9),
+                total / (lecturaNanos / 1e9), bytes / (double) total, dano);
+    }
+}
@@ -0,0 +1,150 @@
+package org.docencia.hilos;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Compara la {@link FaseSemaforo} con el relevo de tres {@link Semaphore} que
+ * usaba {@link ColorSemaforoMejorado}.
+ *
+ * <ul>
+ * <li>Un hilo: coste de una transición sin nadie esperando.</li>
+ * <li>Relevo: tres hilos, uno por color; cada uno espera su color y pasa al
+ * siguiente. Se mide el rendimiento y la latencia desde que se cede el turno
+ * hasta que el siguiente hilo despierta.</li>
+ * </ul>
+ *
+ * <p>Uso: {@code ComparativaFasesSemaforo [transicionesUnHilo] [transicionesRelevo]}
+ */
+public class ComparativaFasesSemaforo {
+
+    private static final LightColor[] COLORES = LightColor.values();
+
+    /** Las dos formas de pasar el turno, para el relevo entre hilos. */
+    private interface Relevo {
+        /** Espera el turno de {@code color}; {@code false} si hay que parar. */
+        boolean esperarTurno(LightColor color) throws InterruptedException;
+
+        void cederTurno(LightColor color);
+
+        void detener();
+    }
+
+    private static final class RelevoSemaforos implements Relevo {
+        private final Semaphore[] turnos = {new Semaphore(1), new Semaphore(0), new Semaphore(0)};
+        private volatile boolean detenido;
+
+        @Override
+        public boolean esperarTurno(LightColor color) throws InterruptedException {
+            turnos[color.ordinal()].acquire();
+            return !detenido;
+        }
+
+        @Override
+        public void cederTurno(LightColor color) {
+            turnos[FaseSemaforo.siguiente(color).ordinal()].release();
+        }
+
+        @Override
+        public void detener() {
+            detenido = true;
+            for (Semaphore turno : turnos) {
+                turno.release();
+            }
+        }
+    }
+
+    private static final class RelevoFases implements Relevo {
+        private final FaseSemaforo fases = new FaseSemaforo(LightColor.ROJO);
+
+        @Override
+        public boolean esperarTurno(LightColor color) throws InterruptedException {
+            return fases.esperar(color) >= 0;
+        }
+
+        @Override
+        public void cederTurno(LightColor color) {
+            fases.avanzar(color);
+        }
+
+        @Override
+        public void detener() {
+            fases.detener();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int unHilo = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+        int relevo = args.length > 1 ? Integer.parseInt(args[1]) : 300_000;
+
+        System.out.println("=== Transiciones de fase: un hilo (" + unHilo + ") ===");
+        for (int ronda = 0; ronda < 2; ronda++) {
+            System.out.printf("semáforos: %6.1f ns/transición | fases: %6.1f ns/transición%n",
+                    unHiloSemaforos(unHilo), unHiloFases(unHilo));
+        }
+
+        System.out.println("=== Relevo entre tres hilos (" + relevo + " transiciones) ===");
+        medirRelevo("semáforos", new RelevoSemaforos(), relevo);
+        medirRelevo("fases", new RelevoFases(), relevo);
+        medirRelevo("semáforos", new RelevoSemaforos(), relevo);
+        medirRelevo("fases", new RelevoFases(), relevo);
+    }
+
+    private static double unHiloSemaforos(int transiciones) throws InterruptedException {
+        RelevoSemaforos relevo = new RelevoSemaforos();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < transiciones; i++) {
+            LightColor color = COLORES[i % 3];
+            relevo.esperarTurno(color);
+            relevo.cederTurno(color);
+        }
+        return (System.nanoTime() - inicio) / (double) transiciones;
+    }
+
+    private static double unHiloFases(int transiciones) {
+        FaseSemaforo fases = new FaseSemaforo(LightColor.ROJO);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < transiciones; i++) {
+            fases.avanzar(COLORES[i % 3]);
+        }
+        return (System.nanoTime() - inicio) / (double) transiciones;
+    }
+
+    private static void medirRelevo(String nombre, Relevo relevo, int transiciones) throws InterruptedException {
+        HistogramaLatencias despertar = new HistogramaLatencias();
+        long[] cedido = new long[1];
+        int[] hechas = new int[1];
+        Thread[] hilos = new Thread[COLORES.length];
+        for (LightColor color : COLORES) {
+            hilos[color.ordinal()] = new Thread(() -> {
+                try {
+                    while (relevo.esperarTurno(color)) {
+                        // El turno pasa de un hilo a otro, así que los campos
+                        // compartidos los toca un solo hilo a la vez.
+                        if (hechas[0] > 0) {
+                            despertar.registrar(System.nanoTime() - cedido[0]);
+                        }
+                        if (++hechas[0] >= transiciones) {
+                            relevo.detener();
+                            return;
+                        }
+                        cedido[0] = System.nanoTime();
+                        relevo.cederTurno(color);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "Turno-" + color);
+        }
+        long inicio = System.nanoTime();
+        for (Thread hilo : hilos) {
+            hilo.start();
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        long nanos = System.nanoTime() - inicio;
+        System.out.printf("%-10s %,12.0f transiciones/s | despertar: media=%.1f µs p50=%.1f µs p99=%.1f µs "
+                + "max=%.1f µs%n", nombre, transiciones / (nanos / 1e9), despertar.getMedia() / 1e3,
+                despertar.percentil(0.50) / 1e3, despertar.percentil(0.99) / 1e3, despertar.getMaximo() / 1e3);
+    }
+}
@@ -0,0 +1,87 @@
+package org.docencia.hilos;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compara el rendimiento y la latencia p99 de los tres
+ * {@link ServidorMazmorras.ModoEjecucion} cuando llegan de golpe entre 10k y
+ * 100k peticiones cuyo trabajo es sobre todo espera bloqueante. Todas las
+ * preparaciones pasan por el mismo {@link LimitadorPreparaciones}.
+ *
+ * <p>El envío se frena con un {@link Semaphore} de {@code enVuelo} permisos
+ * (por defecto, el doble del límite): nunca hay más peticiones sin terminar,
+ * así que el modo {@link ServidorMazmorras.ModoEjecucion#CACHEADO} no crea
+ * más hilos que eso. Si aun así la JVM se queda sin memoria, el error se
+ * propaga y la comparativa se para, porque tras un {@link OutOfMemoryError}
+ * las medidas de los demás modos ya no serían fiables. La latencia cuenta
+ * desde antes de pedir el permiso.
+ *
+ * <p>Uso: {@code ComparativaModosMazmorras [esperaMs] [hilosFijo] [limite] [enVuelo] [peticiones...]}
+ */
+public class ComparativaModosMazmorras {
+
+    private static String medir(ServidorMazmorras.ModoEjecucion modo, int peticiones, int hilosFijo, int enVuelo,
+            ServidorMazmorras.PreparadorMazmorra preparador) throws InterruptedException {
+        long[] latencias = new long[peticiones];
+        AtomicInteger errores = new AtomicInteger();
+        Semaphore permisos = new Semaphore(enVuelo);
+        ExecutorService gmBots = ServidorMazmorras.crearGmBots(modo, hilosFijo);
+        long inicio = System.nanoTime();
+        try {
+            for (int i = 0; i < peticiones; i++) {
+                int indice = i;
+                long enviada = System.nanoTime();
+                permisos.acquire();
+                gmBots.execute(() -> {
+                    try {
+                        preparador.preparar("Moria");
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        errores.incrementAndGet();
+                    } finally {
+                        latencias[indice] = System.nanoTime() - enviada;
+                        permisos.release();
+                    }
+                });
+            }
+        } finally {
+            gmBots.shutdown();
+        }
+        gmBots.awaitTermination(30, TimeUnit.MINUTES);
+        long makespan = System.nanoTime() - inicio;
+        Arrays.sort(latencias);
+        long p99 = latencias[(int) Math.min(peticiones - 1, Math.ceil(peticiones * 0.99) - 1)];
+        return String.format("%,.0f pet/s | p50=%.1f ms | p99=%.1f ms | errores=%d",
+                peticiones / (makespan / 1e9), latencias[peticiones / 2] / 1e6, p99 / 1e6, errores.get());
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long esperaMs = args.length > 0 ? Long.parseLong(args[0]) : 10;
+        int hilosFijo = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int limite = args.length > 2 ? Integer.parseInt(args[2]) : 5_000;
+        int enVuelo = args.length > 3 ? Integer.parseInt(args[3]) : 2 * limite;
+        int[] tamanos = args.length > 4
+                ? Arrays.stream(args, 4, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[] {10_000, 50_000, 100_000};
+
+        ServidorMazmorras.PreparadorMazmorra bloqueante = mazmorra -> {
+            Thread.sleep(esperaMs);
+            return new ServidorMazmorras.InstanciaMazmorra(mazmorra, System.nanoTime());
+        };
+
+        System.out.println("=== Comparativa de modos (espera " + esperaMs + " ms, fijo " + hilosFijo
+                + " hilos, límite " + limite + ", en vuelo " + enVuelo + ") ===");
+        for (int peticiones : tamanos) {
+            for (ServidorMazmorras.ModoEjecucion modo : ServidorMazmorras.ModoEjecucion.values()) {
+                LimitadorPreparaciones limitador = new LimitadorPreparaciones(bloqueante, limite);
+                String resultado = medir(modo, peticiones, hilosFijo, enVuelo, limitador);
+                System.out.printf("%,8d peticiones | %-8s | %s | concurrencia máx=%d%n",
+                        peticiones, modo, resultado, limitador.getMaximoEnCurso());
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.docencia.hilos;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compara {@code println} directo con el {@link RegistroAsincrono}. Varios
+ * hilos registran el mismo mensaje que {@code TareaCalcularDano}: con
+ * {@code println} se concatena y se escribe en un {@link PrintStream} con
+ * vaciado automático, como {@code System.out}; con el registro asíncrono se
+ * publica el evento estructurado. Las dos variantes escriben en un fichero
+ * temporal para no inundar la consola.
+ *
+ * <p>Se mide el coste por llamada visto por quien registra (media y p99), el
+ * tiempo hasta que todo está escrito, los bytes reservados por mensaje en los
+ * hilos productores y los mensajes descartados.
+ *
+ * <p>Uso: {@code ComparativaRegistro [hilos] [mensajesPorHilo] [capacidad]}
+ */
+public class ComparativaRegistro {
+
+    private static final RegistroAsincrono.Formato RESULTADO = (destino, e) ->
+            destino.append('[').append(e.texto).append("] ").append(e.texto2)
+                    .append(e.a != 0 ? " ¡CRÍTICO!" : " golpe normal").append(" -> daño: ").append(e.b);
+
+    @FunctionalInterface
+    private interface Productor {
+        void registrar(String hilo, String atacante, boolean critico, int dano);
+    }
+
+    private static final class Medida {
+        final HistogramaLatencias llamada = new HistogramaLatencias();
+        final LongAdder bytesReservados = new LongAdder();
+        long productoresNanos;
+        long totalNanos;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int hilos = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int mensajes = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int capacidad = args.length > 2 ? Integer.parseInt(args[2]) : 1 << 14;
+        String[] atacantes = {"Mago del Fuego", "Guerrero", "Pícaro", "Arquera Élfica"};
+
+        System.out.println("=== Registro: " + hilos + " hilos x " + mensajes + " mensajes, capacidad "
+                + capacidad + " ===");
+        System.out.printf("%-22s %10s %12s %12s %12s %10s %12s%n", "variante", "total s", "mensajes/s",
+                "media ns", "p99 ns", "B/mensaje", "descartados");
+
+        Path fichero = Files.createTempFile("registro", ".log");
+        try {
+            try (PrintStream salida = abrir(fichero)) {
+                Medida m = medir(hilos, mensajes, atacantes, (hilo, atacante, critico, dano) ->
+                        salida.println("[" + hilo + "] " + atacante + (critico ? " ¡CRÍTICO!" : " golpe normal")
+                                + " -> daño: " + dano));
+                m.totalNanos = m.productoresNanos;
+                imprimir("println", m, hilos, mensajes, 0);
+            }
+            for (RegistroAsincrono.PoliticaLleno politica : RegistroAsincrono.PoliticaLleno.values()) {
+                try (PrintStream salida = abrir(fichero);
+                        RegistroAsincrono registro = new RegistroAsincrono(capacidad, politica,
+                                new OutputStreamWriter(salida, StandardCharsets.UTF_8))) {
+                    long inicio = System.nanoTime();
+                    Medida m = medir(hilos, mensajes, atacantes, (hilo, atacante, critico, dano) ->
+                            registro.publicar(RESULTADO, hilo, atacante, critico ? 1 : 0, dano));
+                    registro.vaciar();
+                    m.totalNanos = System.nanoTime() - inicio;
+                    imprimir("asíncrono " + politica, m, hilos, mensajes, registro.getDescartados());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(fichero);
+        }
+    }
+
+    private static PrintStream abrir(Path fichero) throws IOException {
+        return new PrintStream(new BufferedOutputStream(new FileOutputStream(fichero.toFile()), 8192), true,
+                StandardCharsets.UTF_8);
+    }
+
+    private static Medida medir(int hilos, int mensajes, String[] atacantes, Productor productor)
+            throws InterruptedException {
+        Medida medida = new Medida();
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Thread> productores = new ArrayList<>(hilos);
+        for (int h = 0; h < hilos; h++) {
+            Thread hilo = new Thread(() -> {
+                String nombre = Thread.currentThread().getName();
+                try {
+                    salida.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long reservadosAntes = bytesReservados();
+                for (int i = 0; i < mensajes; i++) {
+                    long inicio = System.nanoTime();
+                    productor.registrar(nombre, atacantes[i & 3], (i & 7) == 0, 100 + (i & 255));
+                    medida.llamada.registrar(System.nanoTime() - inicio);
+                }
+                medida.bytesReservados.add(bytesReservados() - reservadosAntes);
+            }, "pool-1-thread-" + (h + 1));
+            productores.add(hilo);
+            hilo.start();
+        }
+        long inicio = System.nanoTime();
+        salida.countDown();
+        for (Thread hilo : productores) {
+            hilo.join();
+        }
+        medida.productoresNanos = System.nanoTime() - inicio;
+        return medida;
+    }
+
+    private static long bytesReservados() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean hilos) {
+            return hilos.getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    private static void imprimir(String variante, Medida m, int hilos, int mensajes, long descartados) {
+        long total = (long) hilos * mensajes;
+        System.out.printf("%-22s %10.2f %,12.0f %12.0f %12d %10.1f %,12d%n", variante, m.totalNanos / 1e9,
+                total / (m.totalNanos / 1e9), m.llamada.getMedia(), m.llamada.percentil(0.99),
+                m.bytesReservados.sum() / (double) total, descartados);
+    }
+}
@@ -0,0 +1,97 @@
+package org.docencia.hilos;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Compara {@link RuedaTemporizadores} con {@link ScheduledThreadPoolExecutor}
+ * programando y cancelando entre 10^4 y 10^7 temporizadores de respawn, y
+ * midiendo el retraso con el que vencen.
+ *
+ * <p>Uso: {@code ComparativaTemporizadores [temporizadores...]}. Con 10^7 hace
+ * falta bastante heap para el planificador del JDK ({@code -Xmx4g}).
+ */
+public class ComparativaTemporizadores {
+
+    private static void programarYCancelar(String nombre, Supplier<ScheduledExecutorService> fabrica, int n)
+            throws InterruptedException {
+        ScheduledExecutorService planificador = fabrica.get();
+        if (planificador instanceof ScheduledThreadPoolExecutor stpe) {
+            stpe.setRemoveOnCancelPolicy(true);
+        }
+        ScheduledFuture<?>[] futuros = new ScheduledFuture<?>[n];
+        SplittableRandom random = new SplittableRandom(n);
+        Runnable respawn = () -> {};
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            futuros[i] = planificador.schedule(respawn, 60_000 + random.nextInt(600_000), TimeUnit.MILLISECONDS);
+        }
+        long nanosProgramar = System.nanoTime() - inicio;
+
+        inicio = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            futuros[i].cancel(false);
+        }
+        long nanosCancelar = System.nanoTime() - inicio;
+
+        planificador.shutdownNow();
+        planificador.awaitTermination(1, TimeUnit.MINUTES);
+        System.out.printf("%-10s %,11d | programar %7.1f ns/op | cancelar %7.1f ns/op%n",
+                nombre, n, (double) nanosProgramar / n, (double) nanosCancelar / n);
+    }
+
+    private static void vencimientos(String nombre, Supplier<ScheduledExecutorService> fabrica, int n)
+            throws InterruptedException {
+        ScheduledExecutorService planificador = fabrica.get();
+        CountDownLatch pendientes = new CountDownLatch(n);
+        LongAdder retrasoTotal = new LongAdder();
+        long[] retrasos = new long[n];
+        SplittableRandom random = new SplittableRandom(n);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            int indice = i;
+            long retardo = random.nextLong(TimeUnit.MILLISECONDS.toNanos(2_000));
+            long objetivo = System.nanoTime() + retardo;
+            planificador.schedule(() -> {
+                long retraso = Math.max(0, System.nanoTime() - objetivo);
+                retrasos[indice] = retraso;
+                retrasoTotal.add(retraso);
+                pendientes.countDown();
+            }, retardo, TimeUnit.NANOSECONDS);
+        }
+        boolean terminado = pendientes.await(2, TimeUnit.MINUTES);
+        long total = System.nanoTime() - inicio;
+        planificador.shutdownNow();
+        Arrays.sort(retrasos);
+        System.out.printf("%-10s %,11d | vencidos en %.2f s | retraso medio %.2f ms p99 %.2f ms%s%n",
+                nombre, n, total / 1e9, retrasoTotal.sum() / 1e6 / n,
+                retrasos[(int) Math.min(n - 1, Math.ceil(n * 0.99) - 1)] / 1e6, terminado ? "" : " (incompleto)");
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] tamanos = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[] {10_000, 100_000, 1_000_000};
+        Supplier<ScheduledExecutorService> jdk = () -> new ScheduledThreadPoolExecutor(2);
+        Supplier<ScheduledExecutorService> rueda = () -> new RuedaTemporizadores(1, TimeUnit.MILLISECONDS, Runnable::run);
+
+        System.out.println("=== Programar y cancelar temporizadores de respawn ===");
+        for (int n : tamanos) {
+            programarYCancelar("JDK", jdk, n);
+            programarYCancelar("Rueda", rueda, n);
+        }
+        System.out.println("=== Retraso al vencer (retardos en 0-2 s) ===");
+        for (int n : tamanos) {
+            vencimientos("JDK", jdk, n);
+            vencimientos("Rueda", rueda, n);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.docencia.hilos;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Controla muchos semáforos de tráfico con pocos hilos. En lugar de un hilo
+ * por semáforo dormido en {@code Thread.sleep}, cada {@link Cruce} es una
+ * pequeña máquina de estados cuyo siguiente cambio de color se programa en un
+ * {@link ScheduledExecutorService}. Los cruces se reparten en turno rotatorio
+ * entre los planificadores, por ejemplo uno por núcleo.
+ *
+ * <p>Los vencimientos son absolutos: si un cambio llega tarde, el siguiente se
+ * calcula desde cuando tocaba y no desde cuando se ejecutó, así que los
+ * retrasos no se acumulan ciclo a ciclo. El retraso de cada cambio respecto a
+ * su vencimiento se guarda en un {@link HistogramaLatencias}.
+ */
+public class ControladorCruces {
+
+    private final List<ScheduledExecutorService> planificadores;
+    private final boolean propios;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger siguientePlanificador = new AtomicInteger();
+    private final HistogramaLatencias retrasos = new HistogramaLatencias();
+    private final LongAdder cambios = new LongAdder();
+    private final Queue<Cruce> cruces = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Crea {@code hilos} planificadores de un hilo cada uno; se apagan con
+     * {@link #shutdown()}.
+     */
+    public ControladorCruces(int hilos) {
+        if (hilos <= 0) {
+            throw new IllegalArgumentException("hilos debe ser positivo");
+        }
+        List<ScheduledExecutorService> creados = new ArrayList<>(hilos);
+        for (int i = 0; i < hilos; i++) {
+            int numero = i + 1;
+            creados.add(Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread hilo = new Thread(r, "ControladorCruces-" + numero);
+                hilo.setDaemon(true);
+                return hilo;
+            }));
+        }
+        this.planificadores = List.copyOf(creados);
+        this.propios = true;
+        this.nanoClock = System::nanoTime;
+    }
+
+    /**
+     * Usa planificadores ajenos, por ejemplo una {@link RuedaTemporizadores};
+     * {@link #shutdown()} solo detiene los cruces.
+     */
+    ControladorCruces(List<ScheduledExecutorService> planificadores) {
+        this(planificadores, System::nanoTime);
+    }
+
+    /**
+     * Igual, con el reloj que usan esos planificadores. Con un
+     * {@link SimuladorEventos} y su {@code nanoTime} los cruces se simulan en
+     * tiempo virtual.
+     */
+    ControladorCruces(List<ScheduledExecutorService> planificadores, LongSupplier nanoClock) {
+        if (planificadores.isEmpty()) {
+            throw new IllegalArgumentException("hace falta al menos un planificador");
+        }
+        this.planificadores = List.copyOf(planificadores);
+        this.propios = false;
+        this.nanoClock = Objects.requireNonNull(nanoClock, "nanoClock");
+    }
+
+    /**
+     * Añade un cruce con las duraciones por defecto de {@link LightColor}.
+     */
+    public Cruce agregar(Consumer<LightColor> onColorChange) {
+        return agregar(onColorChange, LightColor.ROJO.getDurationMillis(), LightColor.VERDE.getDurationMillis(),
+                LightColor.AMBAR.getDurationMillis(), 0);
+    }
+
+    /**
+     * Añade un cruce y lo arranca tras {@code desfaseMillis}, que sirve para que
+     * los cruces de una misma calle no cambien todos a la vez. El aviso de
+     * color se ejecuta en el hilo del planificador, así que debe ser breve.
+     */
+    public Cruce agregar(Consumer<LightColor> onColorChange, long rojoMillis, long verdeMillis, long ambarMillis,
+            long desfaseMillis) {
+        Objects.requireNonNull(onColorChange, "onColorChange");
+        int indice = Math.floorMod(siguientePlanificador.getAndIncrement(), planificadores.size());
+        Cruce cruce = new Cruce(planificadores.get(indice), onColorChange, rojoMillis, verdeMillis, ambarMillis);
+        cruces.add(cruce);
+        cruce.programar(nanoClock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, desfaseMillis)));
+        return cruce;
+    }
+
+    /**
+     * Semáforo de un cruce. Mantiene la semántica de {@link ColorSemaforo}:
+     * empieza en ROJO avisando del color, recorre ROJO → VERDE → AMBAR con sus
+     * propias duraciones y, una vez detenido, su color ya no cambia.
+     */
+    public final class Cruce {
+        private final ScheduledExecutorService planificador;
+        private final long rojoNanos;
+        private final long verdeNanos;
+        private final long ambarNanos;
+        private final Consumer<LightColor> onColorChange;
+        private volatile LightColor currentColor = LightColor.ROJO;
+        private volatile boolean running = true;
+        private volatile ScheduledFuture<?> siguiente;
+        private boolean iniciado;
+        private long vencimientoNanos;
+
+        private Cruce(ScheduledExecutorService planificador, Consumer<LightColor> onColorChange,
+                long rojoMillis, long verdeMillis, long ambarMillis) {
+            this.planificador = planificador;
+            this.onColorChange = onColorChange;
+            this.rojoNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, rojoMillis));
+            this.verdeNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, verdeMillis));
+            this.ambarNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ambarMillis));
+        }
+
+        private void programar(long vencimiento) {
+            vencimientoNanos = vencimiento;
+            try {
+                siguiente = planificador.schedule(this::cambiar, vencimiento - nanoClock.getAsLong(),
+                        TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                running = false;
+            }
+        }
+
+        /**
+         * Cada ejecución es un cambio de color: avanza al siguiente (salvo la
+         * primera, que anuncia el ROJO inicial), avisa y programa el próximo
+         * para cuando acabe la duración del color nuevo.
+         */
+        private void cambiar() {
+            if (!running) {
+                return;
+            }
+            retrasos.registrar(nanoClock.getAsLong() - vencimientoNanos);
+            cambios.increment();
+            if (iniciado) {
+                currentColor = switch (currentColor) {
+                    case ROJO -> LightColor.VERDE;
+                    case VERDE -> LightColor.AMBAR;
+                    case AMBAR -> LightColor.ROJO;
+                };
+            }
+            iniciado = true;
+            LightColor color = currentColor;
+            onColorChange.accept(color);
+            long duracion = switch (color) {
+                case ROJO -> rojoNanos;
+                case VERDE -> verdeNanos;
+                case AMBAR -> ambarNanos;
+            };
+            if (running) {
+                programar(vencimientoNanos + duracion);
+            }
+        }
+
+        public LightColor getCurrentColor() {
+            return currentColor;
+        }
+
+        public void stopSimulation() {
+            running = false;
+            ScheduledFuture<?> pendiente = siguiente;
+            if (pendiente != null) {
+                pendiente.cancel(false);
+            }
+        }
+
+        public boolean isRunning() {
+            return running;
+        }
+    }
+
+    public int getCruces() {
+        return cruces.size();
+    }
+
+    public long getCambios() {
+        return cambios.sum();
+    }
+
+    /**
+     * Retraso de cada cambio de color respecto a su vencimiento, en nanosegundos.
+     */
+    public HistogramaLatencias getRetrasos() {
+        return retrasos;
+    }
+
+    /**
+     * Detiene todos los cruces y, si los planificadores son propios, los apaga.
+     */
+    public void shutdown() {
+        for (Cruce cruce : cruces) {
+            cruce.stopSimulation();
+        }
+        if (propios) {
+            planificadores.forEach(ScheduledExecutorService::shutdownNow);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int numero = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        ControladorCruces controlador = new ControladorCruces(Runtime.getRuntime().availableProcessors());
+        Cruce observado = controlador.agregar(ColorSemaforo::printToConsole);
+        for (int i = 1; i < numero; i++) {
+            controlador.agregar(color -> {}, LightColor.ROJO.getDurationMillis(),
+                    LightColor.VERDE.getDurationMillis(), LightColor.AMBAR.getDurationMillis(), i % 7_000);
+        }
+        Thread.sleep(Duration.ofSeconds(20).toMillis());
+        controlador.shutdown();
+        RegistroAsincrono.global().vaciar();
+        System.out.println(numero + " cruces, " + controlador.getCambios() + " cambios de color, último color del "
+                + "cruce observado: " + observado.getCurrentColor());
+        System.out.println("Retraso de los cambios: " + controlador.getRetrasos().resumenMillis());
+    }
+}
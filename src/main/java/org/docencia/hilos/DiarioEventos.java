@@ -0,0 +1,457 @@
+package org.docencia.hilos;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Diario binario de solo añadir para los golpes de {@code TareaCalcularDano}
+ * y los spawns de {@code SpawnTarea}. Cada evento ocupa
+ * {@value #TAMANO_REGISTRO} bytes fijos, en little-endian:
+ *
+ * <pre>
+ *  0  int    micros desde la base del segmento
+ *  4  byte   tipo (1 golpe, 2 spawn, 3 zona llena)
+ *  5  byte   1 si el golpe es crítico
+ *  6  short  zona (id de nombre, 0xFFFF si no hay)
+ *  8  int    sujeto: atacante o enemigo (id de nombre)
+ * 12  int    valor: daño o id de la entidad (-1 si no apareció)
+ * </pre>
+ *
+ * <p>Los nombres se guardan una sola vez en {@code nombres.txt}, uno por
+ * línea; su id es el número de línea. Los eventos van a ficheros
+ * {@code segmento-NNNNNN.diario} mapeados en memoria. Cada segmento empieza
+ * con una cabecera de {@value #CABECERA} bytes con la marca base en
+ * microsegundos, así que la marca de cada evento cabe en un {@code int}.
+ *
+ * <p>Varios productores escriben a la vez sin cerrojo: cada uno reserva su
+ * hueco con un incremento atómico y lo rellena con escrituras absolutas
+ * sobre el mapeo; el sistema operativo agrupa las páginas al volcarlas. El
+ * byte de tipo se escribe el último, tras una barrera de liberación, así que
+ * un lector que lo ve distinto de cero ve el registro entero. Solo se
+ * sincroniza al cambiar de segmento, cuando se llena o cuando la marca ya no
+ * cabe en el {@code int}. Dentro de un segmento los eventos quedan en orden
+ * de reserva, que puede diferir en unos microsegundos del de sus marcas.
+ *
+ * <p>Si la JVM se arranca con {@code -Dhilos.diario=directorio},
+ * {@link #global()} abre un diario en ese directorio que se cierra al
+ * terminar; si no, devuelve {@code null} y no se anota nada.
+ */
+public class DiarioEventos implements AutoCloseable {
+
+    /** Tipos de evento; el código en disco es el ordinal más uno. */
+    public enum Tipo {
+        GOLPE, SPAWN, ZONA_LLENA
+    }
+
+    /** Recibe los eventos de {@link Lector#recorrer(Visitante)} sin crear objetos. */
+    @FunctionalInterface
+    public interface Visitante {
+        /**
+         * @param zona id de nombre de la zona, o -1 si el evento no tiene
+         */
+        void evento(long marcaMicros, Tipo tipo, boolean critico, int zona, int sujeto, int valor);
+    }
+
+    static final int TAMANO_REGISTRO = 16;
+    static final int CABECERA = 32;
+    static final int REGISTROS_POR_SEGMENTO = 1 << 22;
+    /** La zona se guarda en 16 bits sin signo y 0xFFFF significa "ninguna". */
+    static final int MAX_NOMBRES = 0xFFFF;
+
+    private static final int MAGICO = 0x44494152;
+    private static final int VERSION = 1;
+    private static final int SIN_CERRAR = -1;
+    private static final String NOMBRES = "nombres.txt";
+    private static final String PREFIJO = "segmento-";
+    private static final String SUFIJO = ".diario";
+    private static final Tipo[] TIPOS = Tipo.values();
+
+    private static final class Segmento {
+        final int numero;
+        final FileChannel canal;
+        final MappedByteBuffer datos;
+        final long baseMicros;
+        final AtomicInteger reservados = new AtomicInteger();
+        final LongAdder completados = new LongAdder();
+
+        Segmento(int numero, FileChannel canal, MappedByteBuffer datos, long baseMicros) {
+            this.numero = numero;
+            this.canal = canal;
+            this.datos = datos;
+            this.baseMicros = baseMicros;
+        }
+    }
+
+    private final Path directorio;
+    private final int capacidad;
+    private final long origenMicros;
+    private final long origenNanos;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final FileChannel nombres;
+    private int siguienteNombre;
+
+    private volatile Segmento actual;
+
+    public DiarioEventos(Path directorio) throws IOException {
+        this(directorio, REGISTROS_POR_SEGMENTO);
+    }
+
+    /**
+     * Abre el diario del directorio, o lo crea. Los nombres ya registrados
+     * conservan su id y los eventos nuevos empiezan un segmento nuevo.
+     */
+    DiarioEventos(Path directorio, int registrosPorSegmento) throws IOException {
+        this.directorio = Objects.requireNonNull(directorio, "directorio");
+        if (registrosPorSegmento <= 0
+                || registrosPorSegmento > (Integer.MAX_VALUE - CABECERA) / TAMANO_REGISTRO / 2) {
+            throw new IllegalArgumentException("registrosPorSegmento fuera de rango: " + registrosPorSegmento);
+        }
+        this.capacidad = registrosPorSegmento;
+        this.origenMicros = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+        this.origenNanos = System.nanoTime();
+        Files.createDirectories(directorio);
+
+        Path rutaNombres = directorio.resolve(NOMBRES);
+        if (Files.exists(rutaNombres)) {
+            for (String nombre : Files.readAllLines(rutaNombres, StandardCharsets.UTF_8)) {
+                ids.put(nombre, siguienteNombre++);
+            }
+        }
+        this.nombres = FileChannel.open(rutaNombres, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        List<Path> existentes = segmentos(directorio);
+        int ultimo = existentes.isEmpty() ? 0 : numero(existentes.get(existentes.size() - 1));
+        this.actual = abrirSegmento(ultimo + 1);
+    }
+
+    private static final class Global {
+        static final DiarioEventos INSTANCIA = crear();
+
+        private static DiarioEventos crear() {
+            String directorio = System.getProperty("hilos.diario");
+            if (directorio == null || directorio.isBlank()) {
+                return null;
+            }
+            try {
+                DiarioEventos diario = new DiarioEventos(Path.of(directorio));
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        diario.close();
+                    } catch (IOException e) {
+                        // Lo escrito sigue en el mapeo y el sistema lo vuelca igualmente.
+                    }
+                }, "diario-cierre"));
+                return diario;
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo abrir el diario en " + directorio, e);
+            }
+        }
+    }
+
+    /**
+     * Diario compartido del proceso, o {@code null} si no se ha configurado
+     * {@code hilos.diario}.
+     */
+    public static DiarioEventos global() {
+        return Global.INSTANCIA;
+    }
+
+    /**
+     * Id del nombre; la primera vez se añade a {@code nombres.txt}. Quien
+     * anota mucho debería guardarlo en un campo.
+     *
+     * @throws IllegalArgumentException si el nombre contiene saltos de línea
+     * @throws IllegalStateException    si ya hay {@value #MAX_NOMBRES} nombres
+     */
+    public int nombre(String nombre) {
+        Integer id = ids.get(Objects.requireNonNull(nombre, "nombre"));
+        return id != null ? id : registrarNombre(nombre);
+    }
+
+    private synchronized int registrarNombre(String nombre) {
+        Integer id = ids.get(nombre);
+        if (id != null) {
+            return id;
+        }
+        if (nombre.indexOf('\n') >= 0 || nombre.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("El nombre no puede tener saltos de línea: " + nombre);
+        }
+        if (siguienteNombre >= MAX_NOMBRES) {
+            throw new IllegalStateException("El diario ya tiene " + MAX_NOMBRES + " nombres");
+        }
+        try {
+            ByteBuffer linea = ByteBuffer.wrap((nombre + "\n").getBytes(StandardCharsets.UTF_8));
+            while (linea.hasRemaining()) {
+                nombres.write(linea);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ids.put(nombre, siguienteNombre);
+        return siguienteNombre++;
+    }
+
+    public void golpe(int atacante, int dano, boolean critico) {
+        anotar(Tipo.GOLPE, critico, -1, atacante, dano);
+    }
+
+    public void spawn(int zona, int enemigo, int entidad) {
+        anotar(Tipo.SPAWN, false, zona, enemigo, entidad);
+    }
+
+    public void zonaLlena(int zona, int enemigo) {
+        anotar(Tipo.ZONA_LLENA, false, zona, enemigo, -1);
+    }
+
+    /**
+     * @throws IllegalStateException si el diario está cerrado
+     */
+    private void anotar(Tipo tipo, boolean critico, int zona, int sujeto, int valor) {
+        while (true) {
+            Segmento segmento = actual;
+            if (segmento == null) {
+                throw new IllegalStateException("El diario está cerrado");
+            }
+            long delta = ahoraMicros() - segmento.baseMicros;
+            if (delta <= Integer.MAX_VALUE) {
+                int hueco = segmento.reservados.getAndIncrement();
+                if (hueco < capacidad) {
+                    int p = CABECERA + hueco * TAMANO_REGISTRO;
+                    MappedByteBuffer datos = segmento.datos;
+                    datos.putInt(p, (int) delta);
+                    datos.put(p + 5, (byte) (critico ? 1 : 0));
+                    datos.putShort(p + 6, (short) zona);
+                    datos.putInt(p + 8, sujeto);
+                    datos.putInt(p + 12, valor);
+                    // El tipo marca el registro como completo: va el último y
+                    // no puede adelantarse a los demás campos.
+                    VarHandle.releaseFence();
+                    datos.put(p + 4, (byte) (tipo.ordinal() + 1));
+                    segmento.completados.increment();
+                    return;
+                }
+            }
+            rotar(segmento);
+        }
+    }
+
+    /** Marca en microsegundos desde la época, monótona dentro del proceso. */
+    private long ahoraMicros() {
+        return origenMicros + (System.nanoTime() - origenNanos) / 1_000;
+    }
+
+    private synchronized void rotar(Segmento lleno) {
+        if (actual != lleno) {
+            return;
+        }
+        try {
+            actual = abrirSegmento(lleno.numero + 1);
+            cerrarSegmento(lleno);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Segmento abrirSegmento(int numero) throws IOException {
+        Path ruta = directorio.resolve(String.format("%s%06d%s", PREFIJO, numero, SUFIJO));
+        FileChannel canal = FileChannel.open(ruta, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        MappedByteBuffer datos = canal.map(FileChannel.MapMode.READ_WRITE, 0,
+                CABECERA + (long) capacidad * TAMANO_REGISTRO);
+        datos.order(ByteOrder.LITTLE_ENDIAN);
+        long base = ahoraMicros();
+        datos.putInt(0, MAGICO);
+        datos.putInt(4, VERSION);
+        datos.putInt(8, TAMANO_REGISTRO);
+        datos.putInt(12, SIN_CERRAR);
+        datos.putLong(16, base);
+        return new Segmento(numero, canal, datos, base);
+    }
+
+    /**
+     * Impide nuevas reservas, espera a que terminen las que ya estaban en
+     * curso y deja el número de eventos en la cabecera.
+     */
+    private void cerrarSegmento(Segmento segmento) throws IOException {
+        int eventos = Math.min(segmento.reservados.getAndAdd(capacidad), capacidad);
+        while (segmento.completados.sum() < eventos) {
+            Thread.yield();
+        }
+        segmento.datos.force();
+        segmento.datos.putInt(12, eventos);
+        segmento.datos.force();
+        try {
+            segmento.canal.truncate(CABECERA + (long) eventos * TAMANO_REGISTRO);
+        } catch (IOException e) {
+            // Algunos sistemas no recortan un fichero mapeado; la cabecera ya dice dónde acaba.
+        }
+        segmento.canal.close();
+    }
+
+    /**
+     * Cierra el segmento actual. Las anotaciones posteriores lanzan
+     * {@link IllegalStateException}.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        Segmento segmento = actual;
+        if (segmento == null) {
+            return;
+        }
+        actual = null;
+        try {
+            cerrarSegmento(segmento);
+        } finally {
+            nombres.close();
+        }
+    }
+
+    private static List<Path> segmentos(Path directorio) throws IOException {
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            return ficheros.filter(f -> {
+                String nombre = f.getFileName().toString();
+                return nombre.startsWith(PREFIJO) && nombre.endsWith(SUFIJO);
+            }).sorted().toList();
+        }
+    }
+
+    private static int numero(Path segmento) {
+        String nombre = segmento.getFileName().toString();
+        return Integer.parseInt(nombre.substring(PREFIJO.length(), nombre.length() - SUFIJO.length()));
+    }
+
+    /**
+     * Lectura secuencial de un diario, segmento a segmento. Un segmento que
+     * sigue abierto se lee hasta el primer hueco sin rellenar.
+     */
+    public static final class Lector {
+        private final Path directorio;
+        private final List<String> nombres;
+
+        public Lector(Path directorio) throws IOException {
+            this.directorio = Objects.requireNonNull(directorio, "directorio");
+            Path rutaNombres = directorio.resolve(NOMBRES);
+            this.nombres = Files.exists(rutaNombres)
+                    ? List.copyOf(Files.readAllLines(rutaNombres, StandardCharsets.UTF_8))
+                    : List.of();
+        }
+
+        public String nombre(int id) {
+            return id >= 0 && id < nombres.size() ? nombres.get(id) : "#" + id;
+        }
+
+        /**
+         * Pasa todos los eventos al visitante, en orden de segmento y de
+         * reserva.
+         *
+         * @return eventos leídos
+         * @throws IOException si un segmento no tiene el formato esperado
+         */
+        public long recorrer(Visitante visitante) throws IOException {
+            long total = 0;
+            for (Path ruta : segmentos(directorio)) {
+                total += recorrer(ruta, visitante);
+            }
+            return total;
+        }
+
+        private static long recorrer(Path ruta, Visitante visitante) throws IOException {
+            ByteBuffer datos;
+            try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+                if (canal.size() < CABECERA) {
+                    throw new IOException("Segmento incompleto: " + ruta);
+                }
+                datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            if (datos.getInt(0) != MAGICO || datos.getInt(4) != VERSION || datos.getInt(8) != TAMANO_REGISTRO) {
+                throw new IOException("No es un segmento del diario: " + ruta);
+            }
+            long huecos = (datos.limit() - CABECERA) / TAMANO_REGISTRO;
+            int cerrados = datos.getInt(12);
+            long eventos = cerrados == SIN_CERRAR ? huecos : Math.min(cerrados, huecos);
+            long base = datos.getLong(16);
+            for (int i = 0; i < eventos; i++) {
+                int p = CABECERA + i * TAMANO_REGISTRO;
+                int tipo = datos.get(p + 4);
+                if (tipo == 0 && cerrados == SIN_CERRAR) {
+                    return i;
+                }
+                // Empareja con la barrera de anotar: visto el tipo, el resto está escrito.
+                VarHandle.acquireFence();
+                if (tipo < 1 || tipo > TIPOS.length) {
+                    throw new IOException("Tipo de evento no válido en " + ruta + ", evento " + i);
+                }
+                int zona = Short.toUnsignedInt(datos.getShort(p + 6));
+                visitante.evento(base + Integer.toUnsignedLong(datos.getInt(p)), TIPOS[tipo - 1],
+                        datos.get(p + 5) != 0, zona == 0xFFFF ? -1 : zona, datos.getInt(p + 8),
+                        datos.getInt(p + 12));
+            }
+            return eventos;
+        }
+    }
+
+    /**
+     * Resume un diario: eventos por tipo, daño por atacante y spawns por zona.
+     *
+     * <p>Uso: {@code DiarioEventos directorio}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Uso: DiarioEventos directorio");
+            System.exit(2);
+        }
+        Lector lector = new Lector(Path.of(args[0]));
+        long[] porTipo = new long[TIPOS.length];
+        Map<Integer, long[]> danoPorAtacante = new TreeMap<>();
+        Map<Integer, long[]> spawnsPorZona = new TreeMap<>();
+        long[] marcas = {Long.MAX_VALUE, Long.MIN_VALUE};
+        long inicio = System.nanoTime();
+        long eventos = lector.recorrer((marca, tipo, critico, zona, sujeto, valor) -> {
+            porTipo[tipo.ordinal()]++;
+            marcas[0] = Math.min(marcas[0], marca);
+            marcas[1] = Math.max(marcas[1], marca);
+            if (tipo == Tipo.GOLPE) {
+                long[] t = danoPorAtacante.computeIfAbsent(sujeto, k -> new long[3]);
+                t[0]++;
+                t[1] += critico ? 1 : 0;
+                t[2] += valor;
+            } else if (tipo == Tipo.SPAWN) {
+                spawnsPorZona.computeIfAbsent(zona, k -> new long[1])[0]++;
+            }
+        });
+        long nanos = System.nanoTime() - inicio;
+
+        System.out.printf("=== %,d eventos leídos en %.0f ms (%,.0f eventos/s) ===%n", eventos, nanos / 1e6,
+                eventos / (nanos / 1e9));
+        for (Tipo tipo : TIPOS) {
+            System.out.printf("%-12s %,12d%n", tipo, porTipo[tipo.ordinal()]);
+        }
+        if (eventos > 0) {
+            System.out.println("Desde " + Instant.EPOCH.plus(marcas[0], ChronoUnit.MICROS) + " hasta "
+                    + Instant.EPOCH.plus(marcas[1], ChronoUnit.MICROS));
+        }
+        danoPorAtacante.forEach((id, t) -> System.out.printf("%-20s golpes=%,10d críticos=%,10d daño=%,14d%n",
+                lector.nombre(id), t[0], t[1], t[2]));
+        spawnsPorZona.forEach((id, t) -> System.out.printf("%-20s spawns=%,10d%n", lector.nombre(id), t[0]));
+    }
+}
@@ -0,0 +1,271 @@
+package org.docencia.hilos;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Reparte los cambios de color de un semáforo entre muchos suscriptores
+ * (vehículos, peatones, paneles) de forma asíncrona. Se pasa como
+ * {@code onColorChange} a {@link ColorSemaforo}, {@link ColorSemaforoMejorado}
+ * o a un cruce de {@link ControladorCruces}.
+ *
+ * <p>Publicar no espera a nadie: por cada suscriptor solo se deja el aviso en
+ * su buzón y, si no tenía ya una entrega en marcha, se lanza una en el
+ * {@link Executor}. El buzón guarda únicamente el último aviso, de modo que un
+ * suscriptor lento no acumula cola: se salta los colores intermedios y ve el
+ * más reciente. Cada suscriptor recibe sus avisos de uno en uno y en orden, y
+ * el ritmo del semáforo no depende de lo que tarden.
+ */
+public class DifusorColores implements Consumer<LightColor>, AutoCloseable {
+
+    /** Aviso compartido por todos los suscriptores de una publicación. */
+    private static final class Aviso {
+        final LightColor color;
+        final long publicadoNanos;
+
+        Aviso(LightColor color, long publicadoNanos) {
+            this.color = color;
+            this.publicadoNanos = publicadoNanos;
+        }
+    }
+
+    /**
+     * Suscripción a los cambios de color; {@link #cancelar()} la da de baja.
+     */
+    public final class Suscripcion {
+        private final Consumer<LightColor> oyente;
+        private final AtomicReference<Aviso> buzon = new AtomicReference<>();
+        private final AtomicBoolean entregando = new AtomicBoolean();
+        private final LongAdder entregados = new LongAdder();
+        private final LongAdder coalescidos = new LongAdder();
+        private volatile boolean activa = true;
+
+        private Suscripcion(Consumer<LightColor> oyente) {
+            this.oyente = oyente;
+        }
+
+        private void ofrecer(Aviso aviso) {
+            if (buzon.getAndSet(aviso) != null) {
+                coalescidos.increment();
+                coalescidosTotal.increment();
+            }
+            if (entregando.compareAndSet(false, true)) {
+                try {
+                    ejecutor.execute(this::entregar);
+                } catch (RejectedExecutionException e) {
+                    entregando.set(false);
+                    descartar();
+                }
+            }
+        }
+
+        /**
+         * Entrega lo que haya en el buzón hasta vaciarlo. Al terminar se vuelve
+         * a mirar por si llegó un aviso justo después de soltar la marca.
+         */
+        private void entregar() {
+            do {
+                Aviso aviso;
+                while (activa && (aviso = buzon.getAndSet(null)) != null) {
+                    latencia.registrar(System.nanoTime() - aviso.publicadoNanos);
+                    try {
+                        oyente.accept(aviso.color);
+                    } catch (RuntimeException e) {
+                        errores.increment();
+                    }
+                    entregados.increment();
+                    entregadosTotal.increment();
+                }
+                entregando.set(false);
+            } while (activa && buzon.get() != null && entregando.compareAndSet(false, true));
+            if (!activa) {
+                descartar();
+            }
+        }
+
+        private void descartar() {
+            if (buzon.getAndSet(null) != null) {
+                descartadosTotal.increment();
+            }
+        }
+
+        public void cancelar() {
+            activa = false;
+            suscripciones.remove(this);
+            descartar();
+        }
+
+        public boolean isActiva() {
+            return activa;
+        }
+
+        public long getEntregados() {
+            return entregados.sum();
+        }
+
+        /** Avisos que este suscriptor se ha saltado porque llegó uno más nuevo. */
+        public long getCoalescidos() {
+            return coalescidos.sum();
+        }
+    }
+
+    private final Set<Suscripcion> suscripciones = ConcurrentHashMap.newKeySet();
+    private final Executor ejecutor;
+    private final ExecutorService ejecutorPropio;
+
+    private final LongAdder publicados = new LongAdder();
+    private final LongAdder entregadosTotal = new LongAdder();
+    private final LongAdder coalescidosTotal = new LongAdder();
+    private final LongAdder descartadosTotal = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+    private final HistogramaLatencias latencia = new HistogramaLatencias();
+
+    /**
+     * Entrega cada aviso en un hilo virtual, así que un suscriptor bloqueado
+     * no ocupa hilos de plataforma.
+     */
+    public DifusorColores() {
+        this.ejecutorPropio = Executors.newVirtualThreadPerTaskExecutor();
+        this.ejecutor = ejecutorPropio;
+    }
+
+    DifusorColores(Executor ejecutor) {
+        this.ejecutor = Objects.requireNonNull(ejecutor, "ejecutor");
+        this.ejecutorPropio = null;
+    }
+
+    /**
+     * Da de alta un suscriptor. Coste O(1); no afecta a las publicaciones en
+     * curso.
+     */
+    public Suscripcion suscribir(Consumer<LightColor> oyente) {
+        Suscripcion suscripcion = new Suscripcion(Objects.requireNonNull(oyente, "oyente"));
+        suscripciones.add(suscripcion);
+        return suscripcion;
+    }
+
+    /**
+     * Publica un cambio de color. No ejecuta ningún oyente en el hilo que
+     * llama.
+     */
+    @Override
+    public void accept(LightColor color) {
+        Aviso aviso = new Aviso(Objects.requireNonNull(color, "color"), System.nanoTime());
+        publicados.increment();
+        for (Suscripcion suscripcion : suscripciones) {
+            suscripcion.ofrecer(aviso);
+        }
+    }
+
+    public int getSuscriptores() {
+        return suscripciones.size();
+    }
+
+    public long getPublicados() {
+        return publicados.sum();
+    }
+
+    public long getEntregados() {
+        return entregadosTotal.sum();
+    }
+
+    /** Avisos sustituidos por uno más nuevo antes de entregarse. */
+    public long getCoalescidos() {
+        return coalescidosTotal.sum();
+    }
+
+    /** Avisos perdidos por cancelación de la suscripción o rechazo del ejecutor. */
+    public long getDescartados() {
+        return descartadosTotal.sum();
+    }
+
+    public long getErrores() {
+        return errores.sum();
+    }
+
+    /** Tiempo desde la publicación hasta que empieza la entrega, en nanosegundos. */
+    public HistogramaLatencias getLatencia() {
+        return latencia;
+    }
+
+    @Override
+    public void close() {
+        if (ejecutorPropio != null) {
+            ejecutorPropio.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "suscriptores=" + suscripciones.size() + " publicados=" + publicados.sum() + " entregados="
+                + entregadosTotal.sum() + " coalescidos=" + coalescidosTotal.sum() + " descartados="
+                + descartadosTotal.sum() + " errores=" + errores.sum() + "\n  latencia: " + latencia.resumenMillis();
+    }
+
+    /**
+     * Un semáforo rápido con decenas de suscriptores, algunos muy lentos. Se
+     * comprueba que el ciclo del semáforo no se alarga y que los lentos solo
+     * ven el último color.
+     *
+     * <p>Uso: {@code DifusorColores [suscriptores] [lentos] [segundos]}
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int suscriptores = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int lentos = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int segundos = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        try (DifusorColores difusor = new DifusorColores()) {
+            Suscripcion lenta = null;
+            for (int i = 0; i < suscriptores; i++) {
+                boolean esLento = i < lentos;
+                Suscripcion s = difusor.suscribir(color -> {
+                    if (esLento) {
+                        try {
+                            Thread.sleep(1_000);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+                if (esLento) {
+                    lenta = s;
+                }
+            }
+            HistogramaLatencias ciclo = new HistogramaLatencias();
+            long[] anterior = {0};
+            ColorSemaforo semaforo = new ColorSemaforo(color -> {
+                long ahora = System.nanoTime();
+                if (color == LightColor.ROJO) {
+                    if (anterior[0] != 0) {
+                        ciclo.registrar(ahora - anterior[0]);
+                    }
+                    anterior[0] = ahora;
+                }
+                difusor.accept(color);
+            }, 100, 100, 50);
+            Thread hilo = new Thread(semaforo, "SemaforoDifusor");
+            hilo.start();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(segundos));
+            semaforo.stopSimulation();
+            hilo.join();
+
+            System.out.println("=== Difusión a " + suscriptores + " suscriptores (" + lentos + " lentos) ===");
+            System.out.println("Ciclo del semáforo (previsto 250 ms): " + ciclo.resumenMillis());
+            System.out.println("Difusor: " + difusor);
+            if (lenta != null) {
+                System.out.println("Un suscriptor lento: entregados=" + lenta.getEntregados() + " coalescidos="
+                        + lenta.getCoalescidos());
+            }
+        }
+    }
+}
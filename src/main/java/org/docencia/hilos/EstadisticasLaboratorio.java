@@ -0,0 +1,49 @@
+package org.docencia.hilos;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * {@link MonitorLaboratorio} que acumula en histogramas la espera hasta
+ * conseguir equipo y el tiempo de uso de cada estudiante. Puede reenviar
+ * además el aviso ocupado/libre a un monitor de actividad existente.
+ */
+public class EstadisticasLaboratorio implements MonitorLaboratorio {
+
+    private final HistogramaLatencias espera = new HistogramaLatencias();
+    private final HistogramaLatencias uso = new HistogramaLatencias();
+    private final Consumer<Boolean> activityMonitor;
+
+    public EstadisticasLaboratorio() {
+        this(estado -> {});
+    }
+
+    public EstadisticasLaboratorio(Consumer<Boolean> activityMonitor) {
+        this.activityMonitor = Objects.requireNonNull(activityMonitor, "activityMonitor");
+    }
+
+    @Override
+    public void equipoAdquirido(int equipoId, long esperaNanos) {
+        espera.registrar(esperaNanos);
+        activityMonitor.accept(true);
+    }
+
+    @Override
+    public void equipoLiberado(int equipoId, long usoNanos) {
+        uso.registrar(usoNanos);
+        activityMonitor.accept(false);
+    }
+
+    public HistogramaLatencias getEspera() {
+        return espera;
+    }
+
+    public HistogramaLatencias getUso() {
+        return uso;
+    }
+
+    @Override
+    public String toString() {
+        return "espera: " + espera.resumenMillis() + "\nuso:    " + uso.resumenMillis();
+    }
+}
@@ -0,0 +1,199 @@
+package org.docencia.hilos;
+
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Estimador del daño esperado de un {@link CalculadoraDanoCritico.Ataque} para
+ * tareas de balanceo. Lanza N muestras en paralelo con fork-join, cada trozo
+ * con su propio {@link SplittableRandom} obtenido por {@code split()}, y
+ * devuelve la media, la varianza y un intervalo de confianza.
+ *
+ * <p>Como el árbol de divisiones solo depende de N y del umbral, el resultado
+ * es el mismo en cada ejecución con la misma semilla, sea cual sea el número de
+ * hilos. Para un golpe único existe además una solución exacta
+ * ({@link #exacto}) con la que se contrasta la simulación.
+ */
+public class EstimadorDanoEsperado {
+
+    static final long UMBRAL_POR_DEFECTO = 1L << 20;
+    static final double Z_95 = 1.959963984540054;
+
+    /**
+     * Media, varianza e intervalo de confianza al 95 % de una estimación. Si
+     * es {@linkplain #exacta exacta} no hay muestras y el intervalo se reduce
+     * a la media.
+     */
+    static class Estimacion {
+        final long muestras;
+        final double media;
+        final double varianza;
+        final boolean exacta;
+
+        Estimacion(long muestras, double media, double varianza) {
+            this(muestras, media, varianza, false);
+        }
+
+        private Estimacion(long muestras, double media, double varianza, boolean exacta) {
+            this.muestras = muestras;
+            this.media = media;
+            this.varianza = varianza;
+            this.exacta = exacta;
+        }
+
+        static Estimacion exacta(double media, double varianza) {
+            return new Estimacion(0, media, varianza, true);
+        }
+
+        double errorEstandar() {
+            return exacta || muestras == 0 ? 0.0 : Math.sqrt(varianza / muestras);
+        }
+
+        double inferior() {
+            return media - Z_95 * errorEstandar();
+        }
+
+        double superior() {
+            return media + Z_95 * errorEstandar();
+        }
+
+        @Override
+        public String toString() {
+            if (exacta) {
+                return String.format("media=%.4f varianza=%.4f (exacta)", media, varianza);
+            }
+            return String.format("media=%.4f varianza=%.4f IC95=[%.4f, %.4f] (n=%d)",
+                    media, varianza, inferior(), superior(), muestras);
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final long umbral;
+
+    public EstimadorDanoEsperado() {
+        this(ForkJoinPool.commonPool(), UMBRAL_POR_DEFECTO);
+    }
+
+    EstimadorDanoEsperado(ForkJoinPool pool, long umbral) {
+        this.pool = Objects.requireNonNull(pool, "pool");
+        if (umbral <= 0) {
+            throw new IllegalArgumentException("umbral debe ser positivo");
+        }
+        this.umbral = umbral;
+    }
+
+    /**
+     * Valor exacto de un golpe: con probabilidad p el daño es
+     * {@code (int) (danoBase * multiplicadorCritico)} y en otro caso
+     * {@code danoBase}, igual que en {@code TareaCalcularDano}.
+     */
+    static Estimacion exacto(CalculadoraDanoCritico.Ataque ataque) {
+        double p = Math.min(1.0, Math.max(0.0, ataque.probCritico));
+        int normal = ataque.danoBase;
+        int critico = (int) (ataque.danoBase * ataque.multiplicadorCritico);
+        double media = p * critico + (1 - p) * normal;
+        double diferencia = critico - normal;
+        double varianza = p * (1 - p) * diferencia * diferencia;
+        return Estimacion.exacta(media, varianza);
+    }
+
+    Estimacion estimar(CalculadoraDanoCritico.Ataque ataque, long muestras, long semilla) {
+        if (muestras <= 0) {
+            throw new IllegalArgumentException("muestras debe ser positivo");
+        }
+        long criticos = pool.invoke(new TareaMuestreo(ataque, new SplittableRandom(semilla), muestras, umbral));
+        return aEstimacion(ataque, muestras, criticos);
+    }
+
+    /**
+     * Comprueba que el valor exacto cae dentro de {@code sigmas} errores
+     * estándar de la simulación.
+     */
+    static boolean concuerda(Estimacion simulada, Estimacion exacta, double sigmas) {
+        double tolerancia = sigmas * Math.max(simulada.errorEstandar(), 1e-12);
+        return Math.abs(simulada.media - exacta.media) <= tolerancia;
+    }
+
+    /**
+     * Cada muestra vale el daño normal o el crítico, así que el número de
+     * críticos basta para la media y la varianza muestral: con
+     * {@code q = criticos / n} la media es {@code normal + q * d} y la
+     * varianza {@code q * (1 - q) * d² * n / (n - 1)}, siendo {@code d} la
+     * diferencia entre ambos. Así no se acumulan sumas de cuadrados que
+     * desborden un {@code long} ni se restan dos números casi iguales.
+     */
+    private static Estimacion aEstimacion(CalculadoraDanoCritico.Ataque ataque, long muestras, long criticos) {
+        double normal = ataque.danoBase;
+        double diferencia = (int) (ataque.danoBase * ataque.multiplicadorCritico) - normal;
+        double q = (double) criticos / muestras;
+        double media = normal + q * diferencia;
+        double varianza = muestras > 1
+                ? q * (1 - q) * diferencia * diferencia * muestras / (muestras - 1)
+                : 0.0;
+        return new Estimacion(muestras, media, varianza);
+    }
+
+    private static class TareaMuestreo extends RecursiveTask<Long> {
+        private final CalculadoraDanoCritico.Ataque ataque;
+        private final SplittableRandom random;
+        private final long muestras;
+        private final long umbral;
+
+        TareaMuestreo(CalculadoraDanoCritico.Ataque ataque, SplittableRandom random, long muestras, long umbral) {
+            this.ataque = ataque;
+            this.random = random;
+            this.muestras = muestras;
+            this.umbral = umbral;
+        }
+
+        @Override
+        protected Long compute() {
+            if (muestras <= umbral) {
+                return contarCriticos();
+            }
+            long mitad = muestras >>> 1;
+            TareaMuestreo izquierda = new TareaMuestreo(ataque, random.split(), mitad, umbral);
+            TareaMuestreo derecha = new TareaMuestreo(ataque, random, muestras - mitad, umbral);
+            izquierda.fork();
+            long criticos = derecha.compute();
+            return criticos + izquierda.join();
+        }
+
+        private long contarCriticos() {
+            double p = ataque.probCritico;
+            long criticos = 0;
+            for (long i = 0; i < muestras; i++) {
+                if (random.nextDouble() < p) {
+                    criticos++;
+                }
+            }
+            return criticos;
+        }
+    }
+
+    public static void main(String[] args) {
+        long muestras = args.length > 0 ? Long.parseLong(args[0]) : 100_000_000L;
+        long semilla = args.length > 1 ? Long.parseLong(args[1]) : 2024L;
+        CalculadoraDanoCritico.Ataque[] ataques = {
+                new CalculadoraDanoCritico.Ataque("Mago del Fuego", 120, 0.30, 2.5),
+                new CalculadoraDanoCritico.Ataque("Guerrero", 150, 0.15, 2.0),
+                new CalculadoraDanoCritico.Ataque("Pícaro", 90, 0.50, 3.0),
+                new CalculadoraDanoCritico.Ataque("Paladín", 130, 0.10, 1.8),
+        };
+        EstimadorDanoEsperado estimador = new EstimadorDanoEsperado();
+
+        System.out.println("=== Estimador Monte Carlo de daño esperado (n=" + muestras + ", semilla=" + semilla + ") ===");
+        for (CalculadoraDanoCritico.Ataque ataque : ataques) {
+            long inicio = System.nanoTime();
+            Estimacion simulada = estimador.estimar(ataque, muestras, semilla);
+            long nanos = System.nanoTime() - inicio;
+            Estimacion exacta = exacto(ataque);
+            System.out.println(ataque.atacante);
+            System.out.println("  Monte Carlo: " + simulada + String.format(" en %.1f ms", nanos / 1e6));
+            System.out.printf("  Exacto:      media=%.4f varianza=%.4f -> %s%n", exacta.media, exacta.varianza,
+                    concuerda(simulada, exacta, 4.0) ? "concuerda" : "NO concuerda");
+        }
+    }
+}
@@ -10,7 +10,10 @@ import java.util.function.LongSupplier;
 
 /**
  * Representa a un estudiante que necesita utilizar uno de los equipos del
- * laboratorio. El acceso está controlado mediante un semáforo con 4 permisos.
+ * laboratorio. El acceso está controlado mediante un {@link AsignadorEquipos}
+ * con 4 equipos, que además indica qué equipo concreto le ha tocado. El
+ * comportamiento vive en {@link TareaEstudiante}; esta clase solo lo ejecuta
+ * en un hilo propio por estudiante.
  */
 public class Estudiante extends Thread {
 
@@ -18,53 +21,48 @@ public class Estudiante extends Thread {
     private static final long MAX_USO_MS = 5_000;
 
     protected final String nombre;
-    private final Semaphore semaforo;
-    private final LongSupplier usoMillisSupplier;
     private final Consumer<String> logger;
-    private final Consumer<Boolean> activityMonitor;
+    private final TareaEstudiante tarea;
 
+    public Estudiante(String nombre, AsignadorEquipos laboratorio) {
+        this(nombre, laboratorio, Estudiante::duracionAleatoria, RegistroAsincrono.global(), estado -> {});
+    }
+
+    /**
+     * Constructor original: los equipos se cuentan con {@code semaforo}. Los
+     * estudiantes que comparten semáforo comparten también el asignador de
+     * {@link AsignadorEquipos#sobreSemaforo(Semaphore)}.
+     */
     public Estudiante(String nombre, Semaphore semaforo) {
-        this(nombre, semaforo, Estudiante::duracionAleatoria, System.out::println, estado -> {});
+        this(nombre, AsignadorEquipos.sobreSemaforo(semaforo));
     }
 
     Estudiante(
         String nombre,
-        Semaphore semaforo,
+        AsignadorEquipos laboratorio,
         LongSupplier usoMillisSupplier,
         Consumer<String> logger,
         Consumer<Boolean> activityMonitor
+    ) {
+        this(nombre, laboratorio, usoMillisSupplier, logger, MonitorLaboratorio.desdeActividad(activityMonitor));
+    }
+
+    Estudiante(
+        String nombre,
+        AsignadorEquipos laboratorio,
+        LongSupplier usoMillisSupplier,
+        Consumer<String> logger,
+        MonitorLaboratorio monitor
     ) {
         super("Estudiante-" + nombre);
         this.nombre = Objects.requireNonNull(nombre, "nombre");
-        this.semaforo = Objects.requireNonNull(semaforo, "semaforo");
-        this.usoMillisSupplier = Objects.requireNonNull(usoMillisSupplier, "usoMillisSupplier");
         this.logger = Objects.requireNonNull(logger, "logger");
-        this.activityMonitor = Objects.requireNonNull(activityMonitor, "activityMonitor");
+        this.tarea = new TareaEstudiante(laboratorio, usoMillisSupplier, monitor, this::logInicio, this::logFin);
     }
 
     @Override
     public void run() {
-        boolean acquired = false;
-        int equipoId = -1;
-        try {
-            semaforo.acquire();
-            acquired = true;
-            equipoId = semaforo.availablePermits() + 1;
-            activityMonitor.accept(true);
-            logInicio(equipoId);
-            long uso = Math.max(0, usoMillisSupplier.getAsLong());
-            if (uso > 0) {
-                Thread.sleep(uso);
-            }
-            logFin(equipoId);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        } finally {
-            if (acquired) {
-                activityMonitor.accept(false);
-                semaforo.release();
-            }
-        }
+        tarea.run();
     }
 
     protected void logInicio(int equipoId) {
@@ -79,20 +77,32 @@ public class Estudiante extends Thread {
         logger.accept(message);
     }
 
-    private static long duracionAleatoria() {
+    static long duracionAleatoria() {
         return ThreadLocalRandom.current().nextLong(MIN_USO_MS, MAX_USO_MS + 1);
     }
 
+    /**
+     * Uso: {@code Estudiante [JUSTO|ADELANTAMIENTO|HIBRIDO]}. Por defecto
+     * {@code ADELANTAMIENTO}, como el semáforo no justo original y como
+     * {@link AsignadorEquipos#AsignadorEquipos(int)}.
+     */
     public static void main(String[] args) throws InterruptedException {
-        Semaphore semaforo = new Semaphore(4);
+        AsignadorEquipos.ModoAdmision modo = args.length > 0
+                ? AsignadorEquipos.ModoAdmision.valueOf(args[0].toUpperCase())
+                : AsignadorEquipos.ModoAdmision.ADELANTAMIENTO;
+        AsignadorEquipos laboratorio = new AsignadorEquipos(4, modo, 2);
+        EstadisticasLaboratorio estadisticas = new EstadisticasLaboratorio();
         List<Thread> estudiantes = new ArrayList<>();
         for (int i = 1; i <= 6; i++) {
-            Estudiante estudiante = new Estudiante(String.valueOf(i), semaforo);
+            Estudiante estudiante = new Estudiante(String.valueOf(i), laboratorio, Estudiante::duracionAleatoria,
+                    RegistroAsincrono.global(), estadisticas);
             estudiantes.add(estudiante);
             estudiante.start();
         }
         for (Thread estudiante : estudiantes) {
             estudiante.join();
         }
+        RegistroAsincrono.global().vaciar();
+        System.out.println("Admisión " + modo + "\n" + estadisticas);
     }
 }
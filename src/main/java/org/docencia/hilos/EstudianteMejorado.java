@@ -8,22 +8,30 @@ import java.util.function.LongSupplier;
 
 /**
  * Versión mejorada que indica qué equipo concreto se ha utilizado. El número
- * de equipo se obtiene a partir de los permisos disponibles en el semáforo.
+ * de equipo es el que ha reservado el {@link AsignadorEquipos}.
  */
 public class EstudianteMejorado extends Estudiante {
 
+    public EstudianteMejorado(String nombre, AsignadorEquipos laboratorio) {
+        super(nombre, laboratorio);
+    }
+
+    /**
+     * Constructor original, sobre el asignador de
+     * {@link AsignadorEquipos#sobreSemaforo(Semaphore)}.
+     */
     public EstudianteMejorado(String nombre, Semaphore semaforo) {
         super(nombre, semaforo);
     }
 
     EstudianteMejorado(
         String nombre,
-        Semaphore semaforo,
+        AsignadorEquipos laboratorio,
         LongSupplier usoMillisSupplier,
         Consumer<String> logger,
         Consumer<Boolean> activityMonitor
     ) {
-        super(nombre, semaforo, usoMillisSupplier, logger, activityMonitor);
+        super(nombre, laboratorio, usoMillisSupplier, logger, activityMonitor);
     }
 
     @Override
@@ -37,10 +45,10 @@ public class EstudianteMejorado extends Estudiante {
     }
 
     public static void main(String[] args) throws InterruptedException {
-        Semaphore semaforo = new Semaphore(4);
+        AsignadorEquipos laboratorio = new AsignadorEquipos(4);
         List<Thread> estudiantes = new ArrayList<>();
         for (int i = 1; i <= 6; i++) {
-            EstudianteMejorado estudiante = new EstudianteMejorado(String.valueOf(i), semaforo);
+            EstudianteMejorado estudiante = new EstudianteMejorado(String.valueOf(i), laboratorio);
             estudiantes.add(estudiante);
             estudiante.start();
         }
@@ -0,0 +1,197 @@
+package org.docencia.hilos;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Máquina de fases de un semáforo sin cerrojos. Todo el estado cabe en un
+ * {@code long}: la fase (el {@link LightColor}) en los bits bajos, un bit de
+ * detenido y un número de versión que crece con cada cambio. Avanzar de fase
+ * es un único CAS que solo tiene éxito desde la fase esperada, así que dos
+ * hilos no pueden avanzar dos veces la misma fase.
+ *
+ * <p>Quien quiere esperar a una fase se apunta en la cola de esa fase y se
+ * aparca; el hilo que entra en la fase despierta a todos los de su cola y les
+ * deja anotada la versión en la que se alcanzó. Detener despierta a todos los
+ * que esperan, sea cual sea su fase.
+ */
+public class FaseSemaforo {
+
+    private static final int BITS_FASE = 2;
+    private static final long MASCARA_FASE = (1L << BITS_FASE) - 1;
+    private static final long DETENIDO = 1L << BITS_FASE;
+    private static final int DESPLAZAMIENTO_VERSION = BITS_FASE + 1;
+    private static final LightColor[] FASES = LightColor.values();
+    private static final long SIN_ALCANZAR = -1;
+
+    /** Hilo aparcado a la espera de una fase. */
+    private static final class Espera {
+        final Thread hilo = Thread.currentThread();
+        volatile long versionAlcanzada = SIN_ALCANZAR;
+        volatile boolean detenida;
+    }
+
+    private final AtomicLong palabra;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ConcurrentLinkedQueue<Espera>[] esperas = new ConcurrentLinkedQueue[FASES.length];
+
+    public FaseSemaforo() {
+        this(LightColor.ROJO);
+    }
+
+    public FaseSemaforo(LightColor inicial) {
+        this.palabra = new AtomicLong(Objects.requireNonNull(inicial, "inicial").ordinal());
+        for (int i = 0; i < esperas.length; i++) {
+            esperas[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    static LightColor siguiente(LightColor color) {
+        return switch (color) {
+            case ROJO -> LightColor.VERDE;
+            case VERDE -> LightColor.AMBAR;
+            case AMBAR -> LightColor.ROJO;
+        };
+    }
+
+    private static LightColor fase(long palabra) {
+        return FASES[(int) (palabra & MASCARA_FASE)];
+    }
+
+    public LightColor getFase() {
+        return fase(palabra.get());
+    }
+
+    public long getVersion() {
+        return palabra.get() >>> DESPLAZAMIENTO_VERSION;
+    }
+
+    public boolean isDetenida() {
+        return (palabra.get() & DETENIDO) != 0;
+    }
+
+    /**
+     * Pasa de {@code desde} a la fase siguiente y despierta a quien espera la
+     * nueva fase.
+     *
+     * @return {@code false} si la fase actual no era {@code desde} o la
+     *         máquina está detenida
+     */
+    public boolean avanzar(LightColor desde) {
+        long actual = palabra.get();
+        if ((actual & DETENIDO) != 0 || fase(actual) != desde) {
+            return false;
+        }
+        LightColor nueva = siguiente(desde);
+        long version = (actual >>> DESPLAZAMIENTO_VERSION) + 1;
+        if (!palabra.compareAndSet(actual, version << DESPLAZAMIENTO_VERSION | nueva.ordinal())) {
+            return false;
+        }
+        despertar(esperas[nueva.ordinal()], version, false);
+        return true;
+    }
+
+    /**
+     * Detiene la máquina: ya no avanza y todos los que esperan se despiertan.
+     */
+    public void detener() {
+        long actual;
+        do {
+            actual = palabra.get();
+            if ((actual & DETENIDO) != 0) {
+                return;
+            }
+        } while (!palabra.compareAndSet(actual, actual | DETENIDO));
+        for (ConcurrentLinkedQueue<Espera> cola : esperas) {
+            despertar(cola, SIN_ALCANZAR, true);
+        }
+    }
+
+    private static void despertar(ConcurrentLinkedQueue<Espera> cola, long version, boolean detenida) {
+        Espera espera;
+        while ((espera = cola.poll()) != null) {
+            if (detenida) {
+                espera.detenida = true;
+            } else {
+                espera.versionAlcanzada = version;
+            }
+            LockSupport.unpark(espera.hilo);
+        }
+    }
+
+    /**
+     * Espera sin sondeo a que la máquina esté en {@code fase} o entre en ella.
+     *
+     * @return la versión en la que se alcanzó la fase, o {@code -1} si la
+     *         máquina se detuvo antes
+     */
+    public long esperar(LightColor fase) throws InterruptedException {
+        return esperar(fase, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Igual que {@link #esperar(LightColor)} con un plazo máximo.
+     *
+     * <p>El plazo se descuenta del tiempo ya esperado en vez de sumarse a
+     * {@link System#nanoTime()}, así que un plazo enorme no desborda y equivale
+     * a esperar sin límite.
+     *
+     * @return la versión en la que se alcanzó la fase, o {@code -1} si la
+     *         máquina se detuvo o venció el plazo
+     */
+    public long esperar(LightColor fase, long plazo, TimeUnit unidad) throws InterruptedException {
+        Objects.requireNonNull(fase, "fase");
+        long actual = palabra.get();
+        if ((actual & DETENIDO) != 0) {
+            return SIN_ALCANZAR;
+        }
+        if (fase(actual) == fase) {
+            return actual >>> DESPLAZAMIENTO_VERSION;
+        }
+        ConcurrentLinkedQueue<Espera> cola = esperas[fase.ordinal()];
+        Espera espera = new Espera();
+        cola.add(espera);
+        // Se vuelve a mirar después de apuntarse: o se ve la fase nueva o
+        // quien la alcance verá esta espera en la cola.
+        actual = palabra.get();
+        if ((actual & DETENIDO) != 0 || fase(actual) == fase) {
+            cola.remove(espera);
+            return (actual & DETENIDO) != 0 ? SIN_ALCANZAR : actual >>> DESPLAZAMIENTO_VERSION;
+        }
+        long nanos = unidad.toNanos(plazo);
+        long inicio = System.nanoTime();
+        while (true) {
+            long alcanzada = espera.versionAlcanzada;
+            if (alcanzada != SIN_ALCANZAR) {
+                return alcanzada;
+            }
+            if (espera.detenida) {
+                return SIN_ALCANZAR;
+            }
+            if (Thread.interrupted()) {
+                cola.remove(espera);
+                throw new InterruptedException();
+            }
+            if (nanos == Long.MAX_VALUE) {
+                LockSupport.park(this);
+            } else {
+                long restante = nanos - (System.nanoTime() - inicio);
+                if (restante <= 0) {
+                    cola.remove(espera);
+                    return espera.versionAlcanzada;
+                }
+                LockSupport.parkNanos(this, restante);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        long actual = palabra.get();
+        return fase(actual) + " v" + (actual >>> DESPLAZAMIENTO_VERSION)
+                + ((actual & DETENIDO) != 0 ? " (detenida)" : "");
+    }
+}
@@ -0,0 +1,121 @@
+package org.docencia.hilos;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias con memoria fija y cubos logarítmicos. Cada potencia
+ * de dos se divide en {@value #SUBCUBOS} subcubos, así que el error relativo de
+ * un percentil es como mucho del 12,5 % y todo el rango de un {@code long} cabe
+ * en menos de 500 contadores. Registrar un valor es un incremento atómico sin
+ * reservar memoria, apto para rutas calientes con varios hilos.
+ */
+public class HistogramaLatencias {
+
+    static final int BITS_SUBCUBO = 3;
+    static final int SUBCUBOS = 1 << BITS_SUBCUBO;
+    private static final int CUBOS = (64 - BITS_SUBCUBO) * SUBCUBOS;
+
+    private final AtomicLongArray cubos = new AtomicLongArray(CUBOS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    public void registrar(long valor) {
+        long v = Math.max(0, valor);
+        cubos.incrementAndGet(indice(v));
+        total.increment();
+        suma.add(v);
+        if (v > maximo.get()) {
+            maximo.accumulateAndGet(v, Math::max);
+        }
+    }
+
+    static int indice(long v) {
+        if (v < SUBCUBOS) {
+            return (int) v;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(v);
+        int desplazamiento = exponente - BITS_SUBCUBO;
+        int mantisa = (int) ((v >>> desplazamiento) & (SUBCUBOS - 1));
+        return (desplazamiento + 1) * SUBCUBOS + mantisa;
+    }
+
+    static long limiteInferior(int indice) {
+        if (indice < SUBCUBOS) {
+            return indice;
+        }
+        int desplazamiento = indice / SUBCUBOS - 1;
+        int mantisa = indice % SUBCUBOS;
+        return (long) (SUBCUBOS + mantisa) << desplazamiento;
+    }
+
+    static long limiteSuperior(int indice) {
+        return indice + 1 >= CUBOS ? Long.MAX_VALUE : limiteInferior(indice + 1) - 1;
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    public long getMaximo() {
+        return maximo.get();
+    }
+
+    public double getMedia() {
+        long n = total.sum();
+        return n == 0 ? 0.0 : (double) suma.sum() / n;
+    }
+
+    /**
+     * Valor por debajo del cual queda la fracción {@code p} (0-1) de las
+     * muestras. Devuelve el límite superior del cubo, acotado por el máximo.
+     */
+    public long percentil(double p) {
+        long n = total.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long objetivo = (long) Math.ceil(Math.min(1.0, Math.max(0.0, p)) * n);
+        long acumulado = 0;
+        for (int i = 0; i < CUBOS; i++) {
+            acumulado += cubos.get(i);
+            if (acumulado >= Math.max(1, objetivo)) {
+                return Math.min(limiteSuperior(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    /**
+     * Copia los contadores por cubo en {@code destino}, que debe tener al menos
+     * {@link #numeroCubos()} posiciones.
+     */
+    public void copiarCubos(long[] destino) {
+        for (int i = 0; i < CUBOS; i++) {
+            destino[i] = cubos.get(i);
+        }
+    }
+
+    public static int numeroCubos() {
+        return CUBOS;
+    }
+
+    public void reiniciar() {
+        for (int i = 0; i < CUBOS; i++) {
+            cubos.set(i, 0);
+        }
+        total.reset();
+        suma.reset();
+        maximo.set(0);
+    }
+
+    /**
+     * Resumen en milisegundos suponiendo que los valores son nanosegundos.
+     */
+    public String resumenMillis() {
+        return String.format("n=%d media=%.2f ms p50=%.2f ms p99=%.2f ms max=%.2f ms",
+                getTotal(), getMedia() / 1e6, percentil(0.50) / 1e6, percentil(0.99) / 1e6, getMaximo() / 1e6);
+    }
+}
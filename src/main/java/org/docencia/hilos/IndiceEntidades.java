@@ -0,0 +1,344 @@
+package org.docencia.hilos;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Índice en memoria de las entidades vivas de cada zona del mundo abierto.
+ * Está pensado para millones de enemigos, así que no hay un objeto por
+ * entidad: todos los datos viven en arrays primitivos indexados por el id de la
+ * entidad y los ids libres se reutilizan con una pila.
+ *
+ * <p>Cada zona es un cuadrado de {@code tamanoZona} de lado dividido en una
+ * rejilla de {@code celdasPorLado}². Las entidades de una celda forman una
+ * lista doblemente enlazada dentro de los propios arrays, de modo que aparecer,
+ * desaparecer y moverse es O(1) y las consultas por rango solo recorren las
+ * celdas que tocan el rectángulo.
+ */
+public class IndiceEntidades {
+
+    private static final int NINGUNA = -1;
+
+    private final int zonas;
+    private final int tiposEnemigo;
+    private final float tamanoZona;
+    private final int celdasPorLado;
+    private final float celdasPorUnidad;
+
+    private final int[] zona;
+    private final int[] tipo;
+    private final float[] x;
+    private final float[] y;
+    private final int[] celda;
+    private final int[] siguiente;
+    private final int[] anterior;
+    private final int[] cabezaCelda;
+    private final int[] libres;
+    private int cimaLibres;
+
+    private final int[] poblacionZona;
+    private final int[] poblacionTipo;
+    private final StampedLock lock = new StampedLock();
+
+    public IndiceEntidades(int capacidad, int zonas, int tiposEnemigo, float tamanoZona, int celdasPorLado) {
+        if (capacidad <= 0 || zonas <= 0 || tiposEnemigo <= 0 || celdasPorLado <= 0 || tamanoZona <= 0) {
+            throw new IllegalArgumentException("Todos los tamaños del índice deben ser positivos");
+        }
+        this.zonas = zonas;
+        this.tiposEnemigo = tiposEnemigo;
+        this.tamanoZona = tamanoZona;
+        this.celdasPorLado = celdasPorLado;
+        this.celdasPorUnidad = celdasPorLado / tamanoZona;
+        this.zona = new int[capacidad];
+        this.tipo = new int[capacidad];
+        this.x = new float[capacidad];
+        this.y = new float[capacidad];
+        this.celda = new int[capacidad];
+        this.siguiente = new int[capacidad];
+        this.anterior = new int[capacidad];
+        this.cabezaCelda = new int[zonas * celdasPorLado * celdasPorLado];
+        Arrays.fill(cabezaCelda, NINGUNA);
+        Arrays.fill(zona, NINGUNA);
+        this.libres = new int[capacidad];
+        for (int i = 0; i < capacidad; i++) {
+            libres[i] = capacidad - 1 - i;
+        }
+        this.cimaLibres = capacidad;
+        this.poblacionZona = new int[zonas];
+        this.poblacionTipo = new int[zonas * tiposEnemigo];
+    }
+
+    /**
+     * Da de alta una entidad y devuelve su id, o {@code -1} si el índice está
+     * lleno o la zona ya alcanzó {@code limiteZona}.
+     */
+    public int aparecer(int zonaId, int tipoId, float px, float py, int limiteZona) {
+        comprobarZona(zonaId);
+        comprobarTipo(tipoId);
+        long stamp = lock.writeLock();
+        try {
+            if (cimaLibres == 0 || poblacionZona[zonaId] >= limiteZona) {
+                return NINGUNA;
+            }
+            int id = libres[--cimaLibres];
+            zona[id] = zonaId;
+            tipo[id] = tipoId;
+            x[id] = px;
+            y[id] = py;
+            enlazar(id, celdaDe(zonaId, px, py));
+            poblacionZona[zonaId]++;
+            poblacionTipo[zonaId * tiposEnemigo + tipoId]++;
+            return id;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int aparecer(int zonaId, int tipoId, float px, float py) {
+        return aparecer(zonaId, tipoId, px, py, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Da de baja la entidad. Devuelve {@code false} si ya no estaba viva.
+     */
+    public boolean desaparecer(int id) {
+        if (id < 0 || id >= zona.length) {
+            return false;
+        }
+        long stamp = lock.writeLock();
+        try {
+            int zonaId = zona[id];
+            if (zonaId == NINGUNA) {
+                return false;
+            }
+            desenlazar(id);
+            poblacionZona[zonaId]--;
+            poblacionTipo[zonaId * tiposEnemigo + tipo[id]]--;
+            zona[id] = NINGUNA;
+            libres[cimaLibres++] = id;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void mover(int id, float px, float py) {
+        if (id < 0 || id >= zona.length) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            int zonaId = zona[id];
+            if (zonaId == NINGUNA) {
+                return;
+            }
+            x[id] = px;
+            y[id] = py;
+            int nueva = celdaDe(zonaId, px, py);
+            if (nueva != celda[id]) {
+                desenlazar(id);
+                enlazar(id, nueva);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int poblacion(int zonaId) {
+        comprobarZona(zonaId);
+        long stamp = lock.tryOptimisticRead();
+        int valor = poblacionZona[zonaId];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                valor = poblacionZona[zonaId];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return valor;
+    }
+
+    public int poblacion(int zonaId, int tipoId) {
+        comprobarZona(zonaId);
+        comprobarTipo(tipoId);
+        long stamp = lock.tryOptimisticRead();
+        int valor = poblacionTipo[zonaId * tiposEnemigo + tipoId];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                valor = poblacionTipo[zonaId * tiposEnemigo + tipoId];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return valor;
+    }
+
+    /**
+     * Recorre las entidades de la zona cuya posición cae en el rectángulo
+     * [x0, x1] × [y0, y1] y devuelve cuántas hay. El visitante recibe el id.
+     *
+     * <p>Los ids se recogen bajo el cerrojo de lectura y se entregan al
+     * visitante después de soltarlo, así que este puede llamar a
+     * {@link #desaparecer} o {@link #mover} sin bloquearse. A cambio, una
+     * entidad puede haber desaparecido o movido entre la consulta y la visita.
+     */
+    public int enRango(int zonaId, float x0, float y0, float x1, float y1, IntConsumer visitante) {
+        int[] ids = new int[16];
+        int encontradas = buscar(zonaId, x0, y0, x1, y1, ids);
+        // Entre dos pasadas pueden aparecer más; se repite hasta que quepan.
+        while (encontradas > ids.length) {
+            ids = new int[Math.max(encontradas, ids.length * 2)];
+            encontradas = buscar(zonaId, x0, y0, x1, y1, ids);
+        }
+        for (int i = 0; i < encontradas; i++) {
+            visitante.accept(ids[i]);
+        }
+        return encontradas;
+    }
+
+    public int contarEnRango(int zonaId, float x0, float y0, float x1, float y1) {
+        return buscar(zonaId, x0, y0, x1, y1, null);
+    }
+
+    /**
+     * Cuenta las entidades del rectángulo bajo el cerrojo de lectura y copia
+     * en {@code destino}, si no es {@code null}, tantos ids como quepan.
+     */
+    private int buscar(int zonaId, float x0, float y0, float x1, float y1, int[] destino) {
+        comprobarZona(zonaId);
+        int cx0 = coordenadaCelda(Math.min(x0, x1));
+        int cx1 = coordenadaCelda(Math.max(x0, x1));
+        int cy0 = coordenadaCelda(Math.min(y0, y1));
+        int cy1 = coordenadaCelda(Math.max(y0, y1));
+        float minX = Math.min(x0, x1);
+        float maxX = Math.max(x0, x1);
+        float minY = Math.min(y0, y1);
+        float maxY = Math.max(y0, y1);
+        int base = zonaId * celdasPorLado * celdasPorLado;
+        int capacidad = destino == null ? 0 : destino.length;
+        int encontradas = 0;
+        long stamp = lock.readLock();
+        try {
+            for (int cy = cy0; cy <= cy1; cy++) {
+                for (int cx = cx0; cx <= cx1; cx++) {
+                    for (int id = cabezaCelda[base + cy * celdasPorLado + cx]; id != NINGUNA; id = siguiente[id]) {
+                        if (x[id] >= minX && x[id] <= maxX && y[id] >= minY && y[id] <= maxY) {
+                            if (encontradas < capacidad) {
+                                destino[encontradas] = id;
+                            }
+                            encontradas++;
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return encontradas;
+    }
+
+    public int tipoDe(int id) {
+        return tipo[id];
+    }
+
+    public float getTamanoZona() {
+        return tamanoZona;
+    }
+
+    public int getZonas() {
+        return zonas;
+    }
+
+    private void enlazar(int id, int c) {
+        celda[id] = c;
+        anterior[id] = NINGUNA;
+        siguiente[id] = cabezaCelda[c];
+        if (cabezaCelda[c] != NINGUNA) {
+            anterior[cabezaCelda[c]] = id;
+        }
+        cabezaCelda[c] = id;
+    }
+
+    private void desenlazar(int id) {
+        int c = celda[id];
+        if (anterior[id] == NINGUNA) {
+            cabezaCelda[c] = siguiente[id];
+        } else {
+            siguiente[anterior[id]] = siguiente[id];
+        }
+        if (siguiente[id] != NINGUNA) {
+            anterior[siguiente[id]] = anterior[id];
+        }
+    }
+
+    private int celdaDe(int zonaId, float px, float py) {
+        return zonaId * celdasPorLado * celdasPorLado + coordenadaCelda(py) * celdasPorLado + coordenadaCelda(px);
+    }
+
+    private int coordenadaCelda(float valor) {
+        int c = (int) (valor * celdasPorUnidad);
+        return Math.max(0, Math.min(celdasPorLado - 1, c));
+    }
+
+    private void comprobarZona(int zonaId) {
+        if (zonaId < 0 || zonaId >= zonas) {
+            throw new IllegalArgumentException("Zona fuera de rango: " + zonaId);
+        }
+    }
+
+    private void comprobarTipo(int tipoId) {
+        if (tipoId < 0 || tipoId >= tiposEnemigo) {
+            throw new IllegalArgumentException("Tipo de enemigo fuera de rango: " + tipoId);
+        }
+    }
+
+    public static void main(String[] args) {
+        int entidades = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int zonas = 5;
+        int tipos = 5;
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long memoriaAntes = runtime.totalMemory() - runtime.freeMemory();
+
+        IndiceEntidades indice = new IndiceEntidades(entidades, zonas, tipos, 10_000f, 256);
+        SplittableRandom random = new SplittableRandom(7);
+        int[] ids = new int[entidades];
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < entidades; i++) {
+            ids[i] = indice.aparecer(random.nextInt(zonas), random.nextInt(tipos),
+                    (float) random.nextDouble(10_000), (float) random.nextDouble(10_000));
+        }
+        long nanosAlta = System.nanoTime() - inicio;
+        System.gc();
+        long memoriaDespues = runtime.totalMemory() - runtime.freeMemory();
+
+        inicio = System.nanoTime();
+        long enRango = 0;
+        int consultas = 10_000;
+        for (int i = 0; i < consultas; i++) {
+            float cx = (float) random.nextDouble(10_000);
+            float cy = (float) random.nextDouble(10_000);
+            enRango += indice.contarEnRango(random.nextInt(zonas), cx - 100, cy - 100, cx + 100, cy + 100);
+        }
+        long nanosConsulta = System.nanoTime() - inicio;
+
+        System.out.println("=== Índice de entidades: " + entidades + " vivas ===");
+        System.out.println("Lich Supremo en Templo Prohibido: " + indice.poblacion(4, 4));
+        System.out.printf("Alta: %.1f ns/entidad | memoria: %.1f bytes/entidad%n",
+                (double) nanosAlta / entidades, (double) (memoriaDespues - memoriaAntes) / entidades);
+        System.out.printf("Consulta 200x200: %.1f µs media, %.1f entidades por consulta%n",
+                nanosConsulta / 1e3 / consultas, (double) enRango / consultas);
+
+        inicio = System.nanoTime();
+        for (int id : ids) {
+            indice.desaparecer(id);
+        }
+        System.out.printf("Baja: %.1f ns/entidad | población restante: %d%n",
+                (double) (System.nanoTime() - inicio) / entidades, indice.poblacion(0));
+    }
+}
@@ -0,0 +1,533 @@
+package org.docencia.hilos;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Ingesta de registros de combate de la raid directamente desde el fichero
+ * mapeado en memoria. Cada línea es un golpe:
+ *
+ * <pre>marcaMillis,atacante,danoBase,critico,danoFinal</pre>
+ *
+ * <p>con {@code critico} a 0 o 1. El fichero se parte en trozos que empiezan
+ * y acaban en un salto de línea; cada trozo se mapea por separado y se
+ * recorre byte a byte en un {@link ForkJoinPool}, sin crear un
+ * {@code String} por línea: los atacantes se buscan por sus bytes en una
+ * tabla propia del trozo. Después los resultados de los trozos se combinan
+ * por nombre. El contenido del fichero nunca se copia al heap.
+ *
+ * <p>La ingesta es incremental: {@link #actualizar()} solo lee lo añadido
+ * desde la llamada anterior, hasta el último salto de línea, y lo suma a lo
+ * que ya había. Una línea a medio escribir se queda para la siguiente vez.
+ */
+public class IngestaCombate {
+
+    /** Tamaño objetivo de cada trozo; también limita lo que se mapea de una vez. */
+    static final int TROZO_POR_DEFECTO = 64 << 20;
+
+    /**
+     * Totales de un atacante.
+     */
+    static final class Totales {
+        long golpes;
+        long criticos;
+        long danoBase;
+        long danoFinal;
+        long primeraMarca = Long.MAX_VALUE;
+        long ultimaMarca = Long.MIN_VALUE;
+
+        void combinar(Totales otro) {
+            golpes += otro.golpes;
+            criticos += otro.criticos;
+            danoBase += otro.danoBase;
+            danoFinal += otro.danoFinal;
+            primeraMarca = Math.min(primeraMarca, otro.primeraMarca);
+            ultimaMarca = Math.max(ultimaMarca, otro.ultimaMarca);
+        }
+
+        Totales copia() {
+            Totales copia = new Totales();
+            copia.combinar(this);
+            return copia;
+        }
+
+        double tasaCriticos() {
+            return golpes == 0 ? 0 : (double) criticos / golpes;
+        }
+
+        /** Daño por segundo a lo largo de {@code duracionMillis}. */
+        double dps(long duracionMillis) {
+            return duracionMillis <= 0 ? danoFinal : danoFinal * 1000.0 / duracionMillis;
+        }
+    }
+
+    /**
+     * Resultado de uno o varios trozos: totales por atacante y líneas
+     * leídas o descartadas por mal formadas.
+     */
+    static final class ResultadoTrozo {
+        final Map<String, Totales> porAtacante = new TreeMap<>();
+        long registros;
+        long erroneos;
+
+        void combinar(ResultadoTrozo otro) {
+            registros += otro.registros;
+            erroneos += otro.erroneos;
+            otro.porAtacante.forEach((nombre, t) -> porAtacante.computeIfAbsent(nombre, k -> new Totales())
+                    .combinar(t));
+        }
+    }
+
+    private final Path fichero;
+    private final ForkJoinPool pool;
+    private final int tamanoTrozo;
+
+    private final ResultadoTrozo acumulado = new ResultadoTrozo();
+    private long procesado;
+
+    public IngestaCombate(Path fichero) {
+        this(fichero, ForkJoinPool.commonPool(), TROZO_POR_DEFECTO);
+    }
+
+    IngestaCombate(Path fichero, ForkJoinPool pool, int tamanoTrozo) {
+        this.fichero = Objects.requireNonNull(fichero, "fichero");
+        this.pool = Objects.requireNonNull(pool, "pool");
+        if (tamanoTrozo <= 0) {
+            throw new IllegalArgumentException("tamanoTrozo debe ser positivo");
+        }
+        this.tamanoTrozo = tamanoTrozo;
+    }
+
+    /**
+     * Procesa lo que se haya añadido al fichero desde la última llamada.
+     *
+     * @return bytes procesados en esta llamada
+     */
+    public synchronized long actualizar() throws IOException {
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            long limite = finUltimaLinea(canal, procesado, canal.size());
+            if (limite <= procesado) {
+                return 0;
+            }
+            long[] cortes = cortes(canal, procesado, limite);
+            ResultadoTrozo nuevo;
+            try {
+                nuevo = pool.invoke(new TareaTrozos(canal, cortes, 0, cortes.length - 1));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            acumulado.combinar(nuevo);
+            long bytes = limite - procesado;
+            procesado = limite;
+            return bytes;
+        }
+    }
+
+    /**
+     * Posición siguiente al último salto de línea antes de {@code tamano}, o
+     * {@code desde} si no hay ninguno.
+     */
+    private static long finUltimaLinea(FileChannel canal, long desde, long tamano) throws IOException {
+        ByteBuffer ventana = ByteBuffer.allocate(8192);
+        long fin = tamano;
+        while (fin > desde) {
+            long inicio = Math.max(desde, fin - ventana.capacity());
+            ventana.clear().limit((int) (fin - inicio));
+            leerCompleto(canal, ventana, inicio);
+            for (int i = ventana.limit() - 1; i >= 0; i--) {
+                if (ventana.get(i) == '\n') {
+                    return inicio + i + 1;
+                }
+            }
+            fin = inicio;
+        }
+        return desde;
+    }
+
+    /**
+     * Cortes de [{@code desde}, {@code hasta}) en trozos de más o menos
+     * {@link #tamanoTrozo} bytes, movidos hasta justo después de un salto de
+     * línea. El primero es {@code desde} y el último {@code hasta}.
+     */
+    private long[] cortes(FileChannel canal, long desde, long hasta) throws IOException {
+        List<Long> cortes = new ArrayList<>();
+        cortes.add(desde);
+        ByteBuffer ventana = ByteBuffer.allocate(8192);
+        long objetivo = desde + tamanoTrozo;
+        while (objetivo < hasta) {
+            long corte = siguienteLinea(canal, ventana, objetivo, hasta);
+            if (corte >= hasta) {
+                break;
+            }
+            cortes.add(corte);
+            objetivo = corte + tamanoTrozo;
+        }
+        cortes.add(hasta);
+        return cortes.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long siguienteLinea(FileChannel canal, ByteBuffer ventana, long desde, long hasta)
+            throws IOException {
+        long posicion = desde;
+        while (posicion < hasta) {
+            ventana.clear().limit((int) Math.min(ventana.capacity(), hasta - posicion));
+            leerCompleto(canal, ventana, posicion);
+            for (int i = 0; i < ventana.limit(); i++) {
+                if (ventana.get(i) == '\n') {
+                    return posicion + i + 1;
+                }
+            }
+            posicion += ventana.limit();
+        }
+        return hasta;
+    }
+
+    private static void leerCompleto(FileChannel canal, ByteBuffer destino, long posicion) throws IOException {
+        while (destino.hasRemaining()) {
+            if (canal.read(destino, posicion + destino.position()) < 0) {
+                throw new IOException("El fichero se ha acortado durante la lectura");
+            }
+        }
+    }
+
+    private static class TareaTrozos extends RecursiveTask<ResultadoTrozo> {
+        private final FileChannel canal;
+        private final long[] cortes;
+        private final int desde;
+        private final int hasta;
+
+        TareaTrozos(FileChannel canal, long[] cortes, int desde, int hasta) {
+            this.canal = canal;
+            this.cortes = cortes;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected ResultadoTrozo compute() {
+            if (hasta - desde == 1) {
+                try {
+                    MappedByteBuffer datos = canal.map(FileChannel.MapMode.READ_ONLY, cortes[desde],
+                            cortes[hasta] - cortes[desde]);
+                    return new LectorTrozo(datos).leer();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int mitad = (desde + hasta) >>> 1;
+            TareaTrozos izquierda = new TareaTrozos(canal, cortes, desde, mitad);
+            TareaTrozos derecha = new TareaTrozos(canal, cortes, mitad, hasta);
+            izquierda.fork();
+            ResultadoTrozo resultado = derecha.compute();
+            resultado.combinar(izquierda.join());
+            return resultado;
+        }
+    }
+
+    /**
+     * Recorre un trozo mapeado. Los atacantes se identifican por sus bytes
+     * en una tabla de direccionamiento abierto; el nombre solo se decodifica
+     * una vez por atacante, al final.
+     */
+    private static final class LectorTrozo {
+        private static final int ERROR = -1;
+
+        private final ByteBuffer datos;
+        private final int fin;
+        private int pos;
+
+        private int[] huecos = new int[64];
+        private byte[][] nombres = new byte[32][];
+        private int[] hashes = new int[32];
+        private long[][] columnas = new long[6][32];
+        private int atacantes;
+
+        LectorTrozo(ByteBuffer datos) {
+            this.datos = datos;
+            this.fin = datos.limit();
+        }
+
+        ResultadoTrozo leer() {
+            ResultadoTrozo resultado = new ResultadoTrozo();
+            while (pos < fin) {
+                int inicio = pos;
+                if (!leerLinea()) {
+                    resultado.erroneos++;
+                    pos = inicio;
+                    saltarLinea();
+                } else {
+                    resultado.registros++;
+                }
+            }
+            for (int i = 0; i < atacantes; i++) {
+                Totales t = new Totales();
+                t.golpes = columnas[0][i];
+                t.criticos = columnas[1][i];
+                t.danoBase = columnas[2][i];
+                t.danoFinal = columnas[3][i];
+                t.primeraMarca = columnas[4][i];
+                t.ultimaMarca = columnas[5][i];
+                resultado.porAtacante.computeIfAbsent(new String(nombres[i], StandardCharsets.UTF_8),
+                        k -> new Totales()).combinar(t);
+            }
+            return resultado;
+        }
+
+        private boolean leerLinea() {
+            long marca = numero(',');
+            if (marca == ERROR) {
+                return false;
+            }
+            int inicioNombre = pos;
+            int hash = 0;
+            byte b;
+            while (pos < fin && (b = datos.get(pos)) != ',' && b != '\n') {
+                hash = 31 * hash + b;
+                pos++;
+            }
+            if (pos >= fin || datos.get(pos) != ',' || pos == inicioNombre) {
+                return false;
+            }
+            int finNombre = pos++;
+            long base = numero(',');
+            long critico = numero(',');
+            long dano = numero('\n');
+            if (base == ERROR || dano == ERROR || (critico != 0 && critico != 1)) {
+                return false;
+            }
+            int a = atacante(inicioNombre, finNombre, hash);
+            columnas[0][a]++;
+            columnas[1][a] += critico;
+            columnas[2][a] += base;
+            columnas[3][a] += dano;
+            columnas[4][a] = Math.min(columnas[4][a], marca);
+            columnas[5][a] = Math.max(columnas[5][a], marca);
+            return true;
+        }
+
+        /**
+         * Entero no negativo terminado en {@code separador}, que se consume.
+         * Un {@code '\r'} antes del salto de línea se ignora.
+         */
+        private long numero(char separador) {
+            long valor = 0;
+            int digitos = 0;
+            while (pos < fin) {
+                byte b = datos.get(pos++);
+                if (b >= '0' && b <= '9') {
+                    valor = valor * 10 + (b - '0');
+                    if (++digitos > 18) {
+                        return ERROR;
+                    }
+                } else if (b == separador && digitos > 0) {
+                    return valor;
+                } else if (!(b == '\r' && separador == '\n' && digitos > 0)) {
+                    return ERROR;
+                }
+            }
+            // La última línea del trozo siempre acaba en salto de línea.
+            return ERROR;
+        }
+
+        private void saltarLinea() {
+            while (pos < fin && datos.get(pos++) != '\n') {
+                // avanzar
+            }
+        }
+
+        private int atacante(int desde, int hasta, int hash) {
+            int mascara = huecos.length - 1;
+            int h = (hash ^ (hash >>> 16)) & mascara;
+            while (true) {
+                int indice = huecos[h] - 1;
+                if (indice < 0) {
+                    return nuevo(desde, hasta, hash, h);
+                }
+                if (hashes[indice] == hash && iguales(nombres[indice], desde, hasta)) {
+                    return indice;
+                }
+                h = (h + 1) & mascara;
+            }
+        }
+
+        private boolean iguales(byte[] nombre, int desde, int hasta) {
+            if (nombre.length != hasta - desde) {
+                return false;
+            }
+            for (int i = 0; i < nombre.length; i++) {
+                if (nombre[i] != datos.get(desde + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int nuevo(int desde, int hasta, int hash, int hueco) {
+            if (atacantes == nombres.length) {
+                int capacidad = nombres.length * 2;
+                nombres = Arrays.copyOf(nombres, capacidad);
+                hashes = Arrays.copyOf(hashes, capacidad);
+                for (int c = 0; c < columnas.length; c++) {
+                    columnas[c] = Arrays.copyOf(columnas[c], capacidad);
+                }
+            }
+            byte[] nombre = new byte[hasta - desde];
+            datos.get(desde, nombre);
+            int indice = atacantes++;
+            nombres[indice] = nombre;
+            hashes[indice] = hash;
+            columnas[4][indice] = Long.MAX_VALUE;
+            columnas[5][indice] = Long.MIN_VALUE;
+            huecos[hueco] = indice + 1;
+            if (atacantes * 2 > huecos.length) {
+                redimensionar();
+            }
+            return indice;
+        }
+
+        private void redimensionar() {
+            huecos = new int[huecos.length * 2];
+            int mascara = huecos.length - 1;
+            for (int i = 0; i < atacantes; i++) {
+                int h = (hashes[i] ^ (hashes[i] >>> 16)) & mascara;
+                while (huecos[h] != 0) {
+                    h = (h + 1) & mascara;
+                }
+                huecos[h] = i + 1;
+            }
+        }
+    }
+
+    /** Copia de los totales por atacante, ordenados por nombre. */
+    public synchronized Map<String, Totales> getTotales() {
+        Map<String, Totales> copia = new TreeMap<>();
+        acumulado.porAtacante.forEach((nombre, t) -> copia.put(nombre, t.copia()));
+        return Collections.unmodifiableMap(copia);
+    }
+
+    public synchronized long getRegistros() {
+        return acumulado.registros;
+    }
+
+    /** Líneas descartadas por no tener el formato esperado. */
+    public synchronized long getErroneos() {
+        return acumulado.erroneos;
+    }
+
+    /** Bytes del fichero ya procesados; la siguiente actualización empieza aquí. */
+    public synchronized long getProcesado() {
+        return procesado;
+    }
+
+    /** Duración del combate: de la primera a la última marca de todo el registro. */
+    public synchronized long getDuracionMillis() {
+        long primera = Long.MAX_VALUE;
+        long ultima = Long.MIN_VALUE;
+        for (Totales t : acumulado.porAtacante.values()) {
+            primera = Math.min(primera, t.primeraMarca);
+            ultima = Math.max(ultima, t.ultimaMarca);
+        }
+        return primera > ultima ? 0 : ultima - primera;
+    }
+
+    /**
+     * Añade {@code golpes} líneas al registro, repartidas entre los ataques
+     * de {@code plantilla} y separadas {@code pasoMillis}. Los críticos salen
+     * de la misma tirada que usa {@link MotorDanoLote}.
+     */
+    static void generar(Path fichero, CalculadoraDanoCritico.Ataque[] plantilla, long golpes, long primerGolpe,
+            long inicioMillis, long pasoMillis, long semilla) throws IOException {
+        try (Writer salida = new BufferedWriter(Files.newBufferedWriter(fichero, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), 1 << 16)) {
+            StringBuilder linea = new StringBuilder(64);
+            for (long i = primerGolpe; i < primerGolpe + golpes; i++) {
+                CalculadoraDanoCritico.Ataque ataque = plantilla[(int) (i % plantilla.length)];
+                boolean critico = MotorDanoLote.tirada(semilla, i) < ataque.probCritico;
+                int dano = (int) (ataque.danoBase * (critico ? ataque.multiplicadorCritico : 1.0));
+                linea.setLength(0);
+                linea.append(inicioMillis + i * pasoMillis).append(',').append(ataque.atacante).append(',')
+                        .append(ataque.danoBase).append(',').append(critico ? 1 : 0).append(',').append(dano)
+                        .append('\n');
+                salida.append(linea);
+            }
+        }
+    }
+
+    /**
+     * Genera un registro si no existe y lo ingiere. Si lo ha generado, le
+     * añade más golpes y comprueba que la actualización incremental da lo mismo que ingerir el
+     * fichero entero de nuevo.
+     *
+     * <p>Uso: {@code IngestaCombate [fichero] [golpes] [golpesAnadidos]}
+     */
+    public static void main(String[] args) throws IOException {
+        Path fichero = Path.of(args.length > 0 ? args[0] : "combate.log");
+        long golpes = args.length > 1 ? Long.parseLong(args[1]) : 5_000_000L;
+        long anadidos = args.length > 2 ? Long.parseLong(args[2]) : 500_000L;
+        CalculadoraDanoCritico.Ataque[] plantilla = {
+                new CalculadoraDanoCritico.Ataque("Mago del Fuego", 120, 0.30, 2.5),
+                new CalculadoraDanoCritico.Ataque("Guerrero", 150, 0.15, 2.0),
+                new CalculadoraDanoCritico.Ataque("Pícaro", 90, 0.50, 3.0),
+                new CalculadoraDanoCritico.Ataque("Arquera Élfica", 110, 0.35, 2.2),
+                new CalculadoraDanoCritico.Ataque("Invocador", 80, 0.40, 2.8),
+                new CalculadoraDanoCritico.Ataque("Paladín", 130, 0.10, 1.8),
+                new CalculadoraDanoCritico.Ataque("Bárbaro", 160, 0.20, 2.1),
+                new CalculadoraDanoCritico.Ataque("Nigromante", 100, 0.25, 2.3),
+        };
+        long inicioCombate = 1_700_000_000_000L;
+        long semilla = 42L;
+        boolean generado = Files.notExists(fichero);
+        if (generado) {
+            System.out.println("Generando " + golpes + " golpes en " + fichero + "...");
+            generar(fichero, plantilla, golpes, 0, inicioCombate, 10, semilla);
+        }
+
+        IngestaCombate ingesta = new IngestaCombate(fichero);
+        long inicio = System.nanoTime();
+        long bytes = ingesta.actualizar();
+        imprimir("Ingesta inicial", ingesta, bytes, System.nanoTime() - inicio);
+
+        if (generado) {
+            generar(fichero, plantilla, anadidos, golpes, inicioCombate, 10, semilla);
+            inicio = System.nanoTime();
+            bytes = ingesta.actualizar();
+            imprimir("Actualización incremental", ingesta, bytes, System.nanoTime() - inicio);
+
+            IngestaCombate completa = new IngestaCombate(fichero);
+            completa.actualizar();
+            boolean iguales = completa.getRegistros() == ingesta.getRegistros();
+            for (Map.Entry<String, Totales> e : completa.getTotales().entrySet()) {
+                Totales t = ingesta.getTotales().get(e.getKey());
+                iguales &= t != null && t.danoFinal == e.getValue().danoFinal && t.criticos == e.getValue().criticos;
+            }
+            System.out.println("Incremental igual a ingesta completa: " + iguales);
+        }
+    }
+
+    private static void imprimir(String titulo, IngestaCombate ingesta, long bytes, long nanos) {
+        long duracion = ingesta.getDuracionMillis();
+        System.out.printf("=== %s: %,d bytes en %.0f ms (%.0f MB/s), %,d golpes, %d erróneos ===%n", titulo, bytes,
+                nanos / 1e6, bytes / 1e6 / (nanos / 1e9), ingesta.getRegistros(), ingesta.getErroneos());
+        ingesta.getTotales().forEach((nombre, t) -> System.out.printf(
+                "%-16s golpes=%,12d críticos=%5.1f %% daño=%,15d DPS=%,10.1f%n", nombre, t.golpes,
+                100 * t.tasaCriticos(), t.danoFinal, t.dps(duracion)));
+    }
+}
@@ -0,0 +1,52 @@
+package org.docencia.hilos;
+
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limita cuántas preparaciones de mazmorra se ejecutan a la vez. Con hilos
+ * virtuales se pueden lanzar cientos de miles de peticiones simultáneas, pero
+ * los recursos de los que dependen (base de datos, almacenamiento...) no lo
+ * soportan. Los hilos que superan el límite se quedan bloqueados en el
+ * semáforo, lo que con hilos virtuales no ocupa ningún hilo de plataforma.
+ */
+public class LimitadorPreparaciones implements ServidorMazmorras.PreparadorMazmorra {
+
+    private final ServidorMazmorras.PreparadorMazmorra delegado;
+    private final Semaphore permisos;
+    private final AtomicInteger enCurso = new AtomicInteger();
+    private final AtomicInteger maximoEnCurso = new AtomicInteger();
+
+    public LimitadorPreparaciones(ServidorMazmorras.PreparadorMazmorra delegado, int maximoConcurrente) {
+        this.delegado = Objects.requireNonNull(delegado, "delegado");
+        if (maximoConcurrente <= 0) {
+            throw new IllegalArgumentException("maximoConcurrente debe ser positivo");
+        }
+        this.permisos = new Semaphore(maximoConcurrente);
+    }
+
+    @Override
+    public ServidorMazmorras.InstanciaMazmorra preparar(String mazmorra) throws InterruptedException {
+        permisos.acquire();
+        try {
+            maximoEnCurso.accumulateAndGet(enCurso.incrementAndGet(), Math::max);
+            return delegado.preparar(mazmorra);
+        } finally {
+            enCurso.decrementAndGet();
+            permisos.release();
+        }
+    }
+
+    int getEnCurso() {
+        return enCurso.get();
+    }
+
+    int getMaximoEnCurso() {
+        return maximoEnCurso.get();
+    }
+
+    int getEsperando() {
+        return permisos.getQueueLength();
+    }
+}
@@ -0,0 +1,33 @@
+package org.docencia.hilos;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Recibe los eventos de uso de los equipos del laboratorio con sus tiempos: la
+ * espera hasta conseguir equipo y el tiempo que se ha tenido ocupado.
+ */
+public interface MonitorLaboratorio {
+
+    void equipoAdquirido(int equipoId, long esperaNanos);
+
+    void equipoLiberado(int equipoId, long usoNanos);
+
+    /**
+     * Adapta un monitor de actividad ocupado/libre, que no necesita los tiempos.
+     */
+    static MonitorLaboratorio desdeActividad(Consumer<Boolean> activityMonitor) {
+        Objects.requireNonNull(activityMonitor, "activityMonitor");
+        return new MonitorLaboratorio() {
+            @Override
+            public void equipoAdquirido(int equipoId, long esperaNanos) {
+                activityMonitor.accept(true);
+            }
+
+            @Override
+            public void equipoLiberado(int equipoId, long usoNanos) {
+                activityMonitor.accept(false);
+            }
+        };
+    }
+}
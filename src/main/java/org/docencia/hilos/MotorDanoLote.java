@@ -0,0 +1,247 @@
+package org.docencia.hilos;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Motor de daño por lotes. En lugar de enviar un {@code Callable} por ataque y
+ * recoger un {@code Future<Integer>} por golpe, recibe los ataques como arrays
+ * primitivos (struct-of-arrays) y los reparte en trozos de fork-join entre
+ * todos los núcleos. No se crea ningún objeto por ataque: solo un acumulador
+ * por trozo.
+ *
+ * <p>La tirada de crítico se obtiene con un generador sin estado a partir de la
+ * semilla y del índice del ataque, por lo que la versión secuencial y la
+ * paralela devuelven exactamente el mismo resultado para una misma semilla.
+ */
+public class MotorDanoLote {
+
+    static final int UMBRAL_POR_DEFECTO = 8_192;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    /**
+     * Ataques en formato struct-of-arrays. {@code atacante[i]} es el índice
+     * del atacante dentro de {@code nombres}.
+     */
+    static class LoteAtaques {
+        final int[] danoBase;
+        final double[] probCritico;
+        final double[] multiplicadorCritico;
+        final int[] atacante;
+        final String[] nombres;
+
+        LoteAtaques(int[] danoBase, double[] probCritico, double[] multiplicadorCritico,
+                int[] atacante, String[] nombres) {
+            this.danoBase = Objects.requireNonNull(danoBase, "danoBase");
+            this.probCritico = Objects.requireNonNull(probCritico, "probCritico");
+            this.multiplicadorCritico = Objects.requireNonNull(multiplicadorCritico, "multiplicadorCritico");
+            this.atacante = Objects.requireNonNull(atacante, "atacante");
+            this.nombres = Objects.requireNonNull(nombres, "nombres");
+            int n = danoBase.length;
+            if (probCritico.length != n || multiplicadorCritico.length != n || atacante.length != n) {
+                throw new IllegalArgumentException("Todos los arrays del lote deben tener la misma longitud");
+            }
+        }
+
+        int size() {
+            return danoBase.length;
+        }
+
+        static LoteAtaques desde(CalculadoraDanoCritico.Ataque[] ataques) {
+            int n = ataques.length;
+            int[] danoBase = new int[n];
+            double[] probCritico = new double[n];
+            double[] multiplicadorCritico = new double[n];
+            int[] atacante = new int[n];
+            Map<String, Integer> indices = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                CalculadoraDanoCritico.Ataque ataque = ataques[i];
+                danoBase[i] = ataque.danoBase;
+                probCritico[i] = ataque.probCritico;
+                multiplicadorCritico[i] = ataque.multiplicadorCritico;
+                atacante[i] = indices.computeIfAbsent(ataque.atacante, k -> indices.size());
+            }
+            String[] nombres = new String[indices.size()];
+            indices.forEach((nombre, indice) -> nombres[indice] = nombre);
+            return new LoteAtaques(danoBase, probCritico, multiplicadorCritico, atacante, nombres);
+        }
+    }
+
+    /**
+     * Resultado de un lote: total de la raid, daño por atacante y número de
+     * golpes críticos.
+     */
+    static class ResultadoLote {
+        long total;
+        long criticos;
+        final long[] porAtacante;
+
+        ResultadoLote(int atacantes) {
+            this.porAtacante = new long[atacantes];
+        }
+
+        void combinar(ResultadoLote otro) {
+            total += otro.total;
+            criticos += otro.criticos;
+            for (int i = 0; i < porAtacante.length; i++) {
+                porAtacante[i] += otro.porAtacante[i];
+            }
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int umbral;
+
+    public MotorDanoLote() {
+        this(ForkJoinPool.commonPool(), UMBRAL_POR_DEFECTO);
+    }
+
+    MotorDanoLote(ForkJoinPool pool, int umbral) {
+        this.pool = Objects.requireNonNull(pool, "pool");
+        if (umbral <= 0) {
+            throw new IllegalArgumentException("umbral debe ser positivo");
+        }
+        this.umbral = umbral;
+    }
+
+    ResultadoLote calcular(LoteAtaques lote, long semilla) {
+        return pool.invoke(new TareaTrozo(lote, semilla, 0, lote.size(), umbral));
+    }
+
+    static ResultadoLote calcularSecuencial(LoteAtaques lote, long semilla) {
+        ResultadoLote resultado = new ResultadoLote(lote.nombres.length);
+        acumular(lote, semilla, 0, lote.size(), resultado);
+        return resultado;
+    }
+
+    private static void acumular(LoteAtaques lote, long semilla, int desde, int hasta, ResultadoLote resultado) {
+        int[] danoBase = lote.danoBase;
+        double[] probCritico = lote.probCritico;
+        double[] multiplicadorCritico = lote.multiplicadorCritico;
+        int[] atacante = lote.atacante;
+        long[] porAtacante = resultado.porAtacante;
+        long total = 0;
+        long criticos = 0;
+        for (int i = desde; i < hasta; i++) {
+            boolean esCritico = tirada(semilla, i) < probCritico[i];
+            double multiplicador = esCritico ? multiplicadorCritico[i] : 1.0;
+            int danoFinal = (int) (danoBase[i] * multiplicador);
+            total += danoFinal;
+            porAtacante[atacante[i]] += danoFinal;
+            if (esCritico) {
+                criticos++;
+            }
+        }
+        resultado.total += total;
+        resultado.criticos += criticos;
+    }
+
+    /**
+     * Número uniforme en [0, 1) derivado de la semilla y el índice (SplitMix64).
+     */
+    static double tirada(long semilla, long indice) {
+        long z = semilla + (indice + 1) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * DOUBLE_UNIT;
+    }
+
+    private static class TareaTrozo extends RecursiveTask<ResultadoLote> {
+        private final LoteAtaques lote;
+        private final long semilla;
+        private final int desde;
+        private final int hasta;
+        private final int umbral;
+
+        TareaTrozo(LoteAtaques lote, long semilla, int desde, int hasta, int umbral) {
+            this.lote = lote;
+            this.semilla = semilla;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.umbral = umbral;
+        }
+
+        @Override
+        protected ResultadoLote compute() {
+            if (hasta - desde <= umbral) {
+                ResultadoLote resultado = new ResultadoLote(lote.nombres.length);
+                acumular(lote, semilla, desde, hasta, resultado);
+                return resultado;
+            }
+            int mitad = (desde + hasta) >>> 1;
+            TareaTrozo izquierda = new TareaTrozo(lote, semilla, desde, mitad, umbral);
+            TareaTrozo derecha = new TareaTrozo(lote, semilla, mitad, hasta, umbral);
+            izquierda.fork();
+            ResultadoLote resultado = derecha.compute();
+            resultado.combinar(izquierda.join());
+            return resultado;
+        }
+    }
+
+    static LoteAtaques generarLote(int tamano, CalculadoraDanoCritico.Ataque[] plantilla) {
+        int[] danoBase = new int[tamano];
+        double[] probCritico = new double[tamano];
+        double[] multiplicadorCritico = new double[tamano];
+        int[] atacante = new int[tamano];
+        String[] nombres = new String[plantilla.length];
+        for (int j = 0; j < plantilla.length; j++) {
+            nombres[j] = plantilla[j].atacante;
+        }
+        for (int i = 0; i < tamano; i++) {
+            int j = i % plantilla.length;
+            danoBase[i] = plantilla[j].danoBase;
+            probCritico[i] = plantilla[j].probCritico;
+            multiplicadorCritico[i] = plantilla[j].multiplicadorCritico;
+            atacante[i] = j;
+        }
+        return new LoteAtaques(danoBase, probCritico, multiplicadorCritico, atacante, nombres);
+    }
+
+    public static void main(String[] args) {
+        CalculadoraDanoCritico.Ataque[] plantilla = {
+                new CalculadoraDanoCritico.Ataque("Mago del Fuego", 120, 0.30, 2.5),
+                new CalculadoraDanoCritico.Ataque("Guerrero", 150, 0.15, 2.0),
+                new CalculadoraDanoCritico.Ataque("Pícaro", 90, 0.50, 3.0),
+                new CalculadoraDanoCritico.Ataque("Arquera Élfica", 110, 0.35, 2.2),
+                new CalculadoraDanoCritico.Ataque("Invocador", 80, 0.40, 2.8),
+                new CalculadoraDanoCritico.Ataque("Paladín", 130, 0.10, 1.8),
+                new CalculadoraDanoCritico.Ataque("Bárbaro", 160, 0.20, 2.1),
+                new CalculadoraDanoCritico.Ataque("Nigromante", 100, 0.25, 2.3),
+        };
+        int tamano = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        long semilla = 42L;
+        LoteAtaques lote = generarLote(tamano, plantilla);
+        MotorDanoLote motor = new MotorDanoLote();
+
+        System.out.println("=== Motor de daño por lotes: " + tamano + " ataques ===");
+        for (int ronda = 0; ronda < 5; ronda++) {
+            calcularSecuencial(lote, semilla);
+            motor.calcular(lote, semilla);
+        }
+
+        long inicio = System.nanoTime();
+        ResultadoLote secuencial = calcularSecuencial(lote, semilla);
+        long nanosSecuencial = System.nanoTime() - inicio;
+
+        inicio = System.nanoTime();
+        ResultadoLote paralelo = motor.calcular(lote, semilla);
+        long nanosParalelo = System.nanoTime() - inicio;
+
+        if (secuencial.total != paralelo.total || secuencial.criticos != paralelo.criticos) {
+            throw new IllegalStateException("La versión paralela no coincide con la secuencial");
+        }
+
+        for (int j = 0; j < lote.nombres.length; j++) {
+            System.out.println(lote.nombres[j] + " -> " + paralelo.porAtacante[j]);
+        }
+        System.out.println("Daño total de la raid: " + paralelo.total + " (críticos: " + paralelo.criticos + ")");
+        System.out.printf("Secuencial: %.1f ms | Paralelo (%d hilos): %.1f ms | Speedup: %.2fx%n",
+                nanosSecuencial / 1e6, motor.pool.getParallelism(), nanosParalelo / 1e6,
+                (double) nanosSecuencial / nanosParalelo);
+    }
+}
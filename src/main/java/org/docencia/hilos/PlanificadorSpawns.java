@@ -0,0 +1,198 @@
+package org.docencia.hilos;
+
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Ejecución periódica de oleadas de spawn con detección de desbordes. Con
+ * {@code scheduleAtFixedRate}, si la tarea tarda más que el período las
+ * ejecuciones se amontonan o se pierden sin que nadie se entere. Aquí cada
+ * ejecución se reprograma a mano sobre el {@link ScheduledExecutorService},
+ * se mide cuánto tarde empieza y cuánto dura, y los ticks perdidos se tratan
+ * según una {@link PoliticaRetraso}.
+ *
+ * <p>La tarea recibe el número de ticks que representa la ejecución, que solo
+ * es mayor que uno con {@link PoliticaRetraso#AGRUPAR}.
+ */
+public class PlanificadorSpawns {
+
+    enum PoliticaRetraso {
+        /** Se ejecuta una vez y se descartan los ticks perdidos. */
+        SALTAR,
+        /** Se recuperan los ticks perdidos seguidos, hasta una ráfaga máxima. */
+        RECUPERAR,
+        /** Los ticks perdidos se juntan en una única oleada más grande. */
+        AGRUPAR
+    }
+
+    private final ScheduledExecutorService planificador;
+    private final PoliticaRetraso politica;
+    private final int rafagaMaxima;
+    private final LongSupplier nanoClock;
+
+    private final HistogramaLatencias retrasoInicio = new HistogramaLatencias();
+    private final HistogramaLatencias duracion = new HistogramaLatencias();
+    private final LongAdder ejecuciones = new LongAdder();
+    private final LongAdder desbordes = new LongAdder();
+    private final LongAdder ticksSaltados = new LongAdder();
+    private final LongAdder ticksAgrupados = new LongAdder();
+    private final LongAdder ticksRecuperados = new LongAdder();
+
+    public PlanificadorSpawns(ScheduledExecutorService planificador, PoliticaRetraso politica, int rafagaMaxima) {
+        this(planificador, politica, rafagaMaxima, System::nanoTime);
+    }
+
+    PlanificadorSpawns(ScheduledExecutorService planificador, PoliticaRetraso politica, int rafagaMaxima,
+            LongSupplier nanoClock) {
+        this.planificador = Objects.requireNonNull(planificador, "planificador");
+        this.politica = Objects.requireNonNull(politica, "politica");
+        this.nanoClock = Objects.requireNonNull(nanoClock, "nanoClock");
+        if (rafagaMaxima <= 0) {
+            throw new IllegalArgumentException("rafagaMaxima debe ser positiva");
+        }
+        this.rafagaMaxima = rafagaMaxima;
+    }
+
+    /**
+     * Tarea periódica en curso. Solo hay una ejecución a la vez porque la
+     * siguiente se programa cuando termina la anterior.
+     */
+    final class Programacion {
+        private final IntConsumer oleada;
+        private final long periodoNanos;
+        private long vencimientoNanos;
+        private int rafaga;
+        private volatile boolean cancelada;
+        private volatile ScheduledFuture<?> siguiente;
+
+        Programacion(IntConsumer oleada, long primerVencimiento, long periodoNanos) {
+            this.oleada = oleada;
+            this.vencimientoNanos = primerVencimiento;
+            this.periodoNanos = periodoNanos;
+        }
+
+        private void programarSiguiente() {
+            if (cancelada || planificador.isShutdown()) {
+                return;
+            }
+            long espera = Math.max(0, vencimientoNanos - nanoClock.getAsLong());
+            try {
+                siguiente = planificador.schedule(this::ejecutar, espera, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                cancelada = true;
+            }
+        }
+
+        private void ejecutar() {
+            if (cancelada) {
+                return;
+            }
+            long inicio = nanoClock.getAsLong();
+            long retraso = Math.max(0, inicio - vencimientoNanos);
+            long perdidos = retraso / periodoNanos;
+            retrasoInicio.registrar(retraso);
+
+            int ticks = 1;
+            switch (politica) {
+                case SALTAR -> {
+                    ticksSaltados.add(perdidos);
+                    vencimientoNanos += (perdidos + 1) * periodoNanos;
+                }
+                case RECUPERAR -> {
+                    if (perdidos == 0) {
+                        rafaga = 0;
+                        vencimientoNanos += periodoNanos;
+                    } else if (rafaga < rafagaMaxima) {
+                        rafaga++;
+                        ticksRecuperados.increment();
+                        vencimientoNanos += periodoNanos;
+                    } else {
+                        rafaga = 0;
+                        ticksSaltados.add(perdidos);
+                        vencimientoNanos += (perdidos + 1) * periodoNanos;
+                    }
+                }
+                case AGRUPAR -> {
+                    ticks = (int) Math.min(Integer.MAX_VALUE, perdidos + 1);
+                    ticksAgrupados.add(perdidos);
+                    vencimientoNanos += (perdidos + 1) * periodoNanos;
+                }
+            }
+
+            try {
+                oleada.accept(ticks);
+            } finally {
+                long duracionNanos = nanoClock.getAsLong() - inicio;
+                duracion.registrar(duracionNanos);
+                ejecuciones.increment();
+                if (duracionNanos > periodoNanos) {
+                    desbordes.increment();
+                }
+                programarSiguiente();
+            }
+        }
+
+        void cancelar() {
+            cancelada = true;
+            ScheduledFuture<?> pendiente = siguiente;
+            if (pendiente != null) {
+                pendiente.cancel(false);
+            }
+        }
+    }
+
+    Programacion programar(IntConsumer oleada, long retardoInicial, long periodo, TimeUnit unidad) {
+        Objects.requireNonNull(oleada, "oleada");
+        long periodoNanos = unidad.toNanos(periodo);
+        if (periodoNanos <= 0) {
+            throw new IllegalArgumentException("periodo debe ser positivo");
+        }
+        Programacion programacion = new Programacion(oleada,
+                nanoClock.getAsLong() + unidad.toNanos(Math.max(0, retardoInicial)), periodoNanos);
+        programacion.programarSiguiente();
+        return programacion;
+    }
+
+    HistogramaLatencias getRetrasoInicio() {
+        return retrasoInicio;
+    }
+
+    HistogramaLatencias getDuracion() {
+        return duracion;
+    }
+
+    long getEjecuciones() {
+        return ejecuciones.sum();
+    }
+
+    long getDesbordes() {
+        return desbordes.sum();
+    }
+
+    long getTicksSaltados() {
+        return ticksSaltados.sum();
+    }
+
+    long getTicksRecuperados() {
+        return ticksRecuperados.sum();
+    }
+
+    long getTicksAgrupados() {
+        return ticksAgrupados.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "política=" + politica + " ejecuciones=" + ejecuciones.sum() + " desbordes=" + desbordes.sum()
+                + " saltados=" + ticksSaltados.sum() + " recuperados=" + ticksRecuperados.sum()
+                + " agrupados=" + ticksAgrupados.sum()
+                + "\n  retraso al empezar: " + retrasoInicio.resumenMillis()
+                + "\n  duración:           " + duracion.resumenMillis();
+    }
+}
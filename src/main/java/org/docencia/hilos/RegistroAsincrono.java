@@ -0,0 +1,313 @@
+package org.docencia.hilos;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Registro de eventos asíncrono. Los hilos que registran no formatean ni
+ * escriben: guardan el evento (un {@link Formato} y unos pocos campos
+ * primitivos o referencias ya existentes) en un búfer circular reservado de
+ * antemano y siguen con lo suyo. Un único hilo consumidor formatea los eventos
+ * en lotes y los escribe de una vez, así que la contención por la salida
+ * estándar desaparece de las rutas calientes.
+ *
+ * <p>Varios productores reservan posición con un contador atómico y publican el
+ * evento marcando su secuencia en la posición. Cuando el búfer está lleno se
+ * aplica una {@link PoliticaLleno}. Quien reserva justo cuando se está
+ * cerrando el registro publica la posición vacía, para que el consumidor no
+ * la espere, y el evento cuenta como descartado.
+ *
+ * <p>También es un {@code Consumer<String>}, de modo que los ganchos de log
+ * existentes (por ejemplo el logger de {@link Estudiante}) pueden apuntar
+ * aquí directamente.
+ */
+public class RegistroAsincrono implements Consumer<String>, AutoCloseable {
+
+    enum PoliticaLleno {
+        /** Se descarta el evento y se cuenta; quien registra nunca espera. */
+        DESCARTAR,
+        /** Quien registra espera a que el consumidor libere sitio. */
+        BLOQUEAR
+    }
+
+    /**
+     * Convierte un evento en texto. Se ejecuta en el hilo consumidor; las
+     * implementaciones habituales son constantes sin captura.
+     */
+    @FunctionalInterface
+    interface Formato {
+        void escribir(StringBuilder destino, Evento evento);
+    }
+
+    /**
+     * Vista del evento que se está formateando. El consumidor reutiliza la
+     * misma instancia para todos los eventos.
+     */
+    static final class Evento {
+        long marcaMillis;
+        Object texto;
+        Object texto2;
+        long a;
+        long b;
+    }
+
+    /** Formato de los mensajes ya construidos que llegan por {@link #accept(String)}. */
+    static final Formato TEXTO = (destino, evento) -> destino.append(evento.texto);
+
+    private static final int LOTE_MAXIMO = 512;
+    private static final long ESPERA_NANOS = 200_000;
+    private static final String SALTO = System.lineSeparator();
+
+    private final int capacidad;
+    private final int mascara;
+    private final Formato[] formatos;
+    private final Object[] textos;
+    private final Object[] textos2;
+    private final long[] marcas;
+    private final long[] valoresA;
+    private final long[] valoresB;
+    private final AtomicLongArray publicados;
+    private final AtomicLong reservados = new AtomicLong();
+    private final AtomicLong consumidos = new AtomicLong();
+    private final PoliticaLleno politica;
+    private final Writer destino;
+    private final Thread consumidor;
+    private volatile boolean cerrado;
+
+    private final LongAdder descartados = new LongAdder();
+    private final LongAdder esperasLleno = new LongAdder();
+    private final LongAdder lotes = new LongAdder();
+    private final LongAdder erroresEscritura = new LongAdder();
+
+    /**
+     * @param capacidad número de eventos del búfer; se redondea a potencia de dos
+     * @param destino   salida de los lotes; se vacía tras cada lote pero no se cierra
+     */
+    public RegistroAsincrono(int capacidad, PoliticaLleno politica, Writer destino) {
+        if (capacidad <= 0) {
+            throw new IllegalArgumentException("capacidad debe ser positiva");
+        }
+        this.politica = Objects.requireNonNull(politica, "politica");
+        this.destino = Objects.requireNonNull(destino, "destino");
+        int potencia = Integer.highestOneBit(capacidad);
+        this.capacidad = potencia == capacidad ? capacidad : potencia << 1;
+        this.mascara = this.capacidad - 1;
+        this.formatos = new Formato[this.capacidad];
+        this.textos = new Object[this.capacidad];
+        this.textos2 = new Object[this.capacidad];
+        this.marcas = new long[this.capacidad];
+        this.valoresA = new long[this.capacidad];
+        this.valoresB = new long[this.capacidad];
+        this.publicados = new AtomicLongArray(this.capacidad);
+        for (int i = 0; i < this.capacidad; i++) {
+            publicados.set(i, -1);
+        }
+        this.consumidor = new Thread(this::consumir, "registro-asincrono");
+        consumidor.setDaemon(true);
+        consumidor.start();
+    }
+
+    private static final class Global {
+        static final RegistroAsincrono INSTANCIA = crear();
+
+        private static RegistroAsincrono crear() {
+            RegistroAsincrono registro = new RegistroAsincrono(1 << 16, PoliticaLleno.BLOQUEAR,
+                    new OutputStreamWriter(System.out, System.out.charset()));
+            Runtime.getRuntime().addShutdownHook(new Thread(registro::close, "registro-asincrono-cierre"));
+            return registro;
+        }
+    }
+
+    /**
+     * Registro compartido que escribe en la salida estándar. Bloquea cuando se
+     * llena para no perder mensajes y se vacía al terminar la JVM.
+     */
+    public static RegistroAsincrono global() {
+        return Global.INSTANCIA;
+    }
+
+    @Override
+    public void accept(String mensaje) {
+        publicar(TEXTO, mensaje, null, 0, 0);
+    }
+
+    public boolean publicar(Formato formato, Object texto) {
+        return publicar(formato, texto, null, 0, 0);
+    }
+
+    /**
+     * Registra un evento sin formatearlo. Las referencias no deben cambiar
+     * después de registrarlas, porque se leen más tarde desde el consumidor.
+     *
+     * @return {@code false} si el evento se ha descartado
+     */
+    public boolean publicar(Formato formato, Object texto, Object texto2, long a, long b) {
+        Objects.requireNonNull(formato, "formato");
+        long secuencia = reservar();
+        if (secuencia < 0) {
+            descartados.increment();
+            return false;
+        }
+        int i = (int) secuencia & mascara;
+        if (cerrado) {
+            // close() pudo comprobar que no quedaba nada pendiente antes de esta
+            // reserva; el consumidor salta las posiciones sin formato.
+            formatos[i] = null;
+            publicados.set(i, secuencia);
+            descartados.increment();
+            return false;
+        }
+        formatos[i] = formato;
+        textos[i] = texto;
+        textos2[i] = texto2;
+        valoresA[i] = a;
+        valoresB[i] = b;
+        marcas[i] = System.currentTimeMillis();
+        publicados.set(i, secuencia);
+        return true;
+    }
+
+    private long reservar() {
+        if (politica == PoliticaLleno.DESCARTAR) {
+            while (true) {
+                long actual = reservados.get();
+                if (cerrado || actual - consumidos.get() >= capacidad) {
+                    return -1;
+                }
+                if (reservados.compareAndSet(actual, actual + 1)) {
+                    return actual;
+                }
+            }
+        }
+        if (cerrado) {
+            return -1;
+        }
+        long secuencia = reservados.getAndIncrement();
+        if (secuencia - consumidos.get() >= capacidad) {
+            esperasLleno.increment();
+            do {
+                if (!consumidor.isAlive()) {
+                    return -1;
+                }
+                LockSupport.parkNanos(ESPERA_NANOS);
+            } while (secuencia - consumidos.get() >= capacidad);
+        }
+        return secuencia;
+    }
+
+    private void consumir() {
+        StringBuilder lote = new StringBuilder(32 * 1024);
+        Evento evento = new Evento();
+        long siguiente = 0;
+        while (true) {
+            int n = 0;
+            while (n < LOTE_MAXIMO) {
+                int i = (int) siguiente & mascara;
+                if (publicados.get(i) != siguiente) {
+                    break;
+                }
+                Formato formato = formatos[i];
+                if (formato != null) {
+                    evento.marcaMillis = marcas[i];
+                    evento.texto = textos[i];
+                    evento.texto2 = textos2[i];
+                    evento.a = valoresA[i];
+                    evento.b = valoresB[i];
+                    try {
+                        formato.escribir(lote, evento);
+                    } catch (RuntimeException e) {
+                        lote.append("<error de formato: ").append(e).append('>');
+                    }
+                    lote.append(SALTO);
+                    formatos[i] = null;
+                    textos[i] = null;
+                    textos2[i] = null;
+                }
+                siguiente++;
+                n++;
+            }
+            if (n > 0) {
+                if (lote.length() > 0) {
+                    escribir(lote);
+                    lote.setLength(0);
+                }
+                consumidos.set(siguiente);
+                continue;
+            }
+            if (cerrado && siguiente == reservados.get()) {
+                return;
+            }
+            LockSupport.parkNanos(ESPERA_NANOS);
+        }
+    }
+
+    private void escribir(StringBuilder lote) {
+        try {
+            destino.append(lote);
+            destino.flush();
+            lotes.increment();
+        } catch (IOException e) {
+            erroresEscritura.increment();
+        }
+    }
+
+    /**
+     * Espera a que todo lo registrado hasta ahora esté escrito. Sirve para que
+     * los mensajes que se imprimen directamente no se adelanten a los del
+     * registro.
+     */
+    public void vaciar() {
+        long objetivo = reservados.get();
+        while (consumidos.get() < objetivo && consumidor.isAlive()) {
+            LockSupport.parkNanos(ESPERA_NANOS);
+        }
+    }
+
+    /**
+     * Deja de admitir eventos, escribe los pendientes y espera al consumidor.
+     */
+    @Override
+    public void close() {
+        cerrado = true;
+        LockSupport.unpark(consumidor);
+        try {
+            consumidor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    public long getDescartados() {
+        return descartados.sum();
+    }
+
+    public long getEsperasLleno() {
+        return esperasLleno.sum();
+    }
+
+    public long getLotes() {
+        return lotes.sum();
+    }
+
+    public long getErroresEscritura() {
+        return erroresEscritura.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "política=" + politica + " capacidad=" + capacidad + " escritos=" + consumidos.get()
+                + " lotes=" + lotes.sum() + " descartados=" + descartados.sum()
+                + " esperas por lleno=" + esperasLleno.sum() + " errores=" + erroresEscritura.sum();
+    }
+}
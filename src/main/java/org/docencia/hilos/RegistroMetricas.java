@@ -0,0 +1,337 @@
+package org.docencia.hilos;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Métricas de ejecución con nombre: contadores, medidores y histogramas de
+ * latencia. Está pensado para rutas calientes: los contadores son
+ * {@link LongAdder} (repartidos entre celdas, así que varios hilos no se
+ * pisan) y los histogramas son {@link HistogramaLatencias} de memoria fija.
+ * Quien registra guarda la métrica en un campo y solo la consulta al mapa una
+ * vez.
+ *
+ * <p>Las lecturas se aplanan en pares nombre/valor. Los histogramas dan
+ * {@code .total}, {@code .media_ns}, {@code .p50_ns}, {@code .p99_ns} y
+ * {@code .max_ns}. Se pueden ver por JMX como un {@link DynamicMBean} (con
+ * jconsole, por ejemplo) o volcar periódicamente a un fichero de texto.
+ *
+ * <p>El registro {@link #global()} se exporta por JMX al crearse. Si se
+ * arranca la JVM con {@code -Dhilos.metricas.fichero=ruta}, además escribe
+ * una instantánea en ese fichero cada {@code hilos.metricas.periodo} segundos
+ * (10 por defecto) y otra al terminar.
+ */
+public class RegistroMetricas implements AutoCloseable {
+
+    private final Map<String, Object> metricas = new ConcurrentHashMap<>();
+    private final LongAdder erroresInstantanea = new LongAdder();
+    private ScheduledExecutorService instantaneas;
+    private ObjectName exportado;
+
+    /**
+     * Contador con ese nombre; se crea la primera vez.
+     *
+     * @throws IllegalArgumentException si el nombre ya es de otro tipo de métrica
+     */
+    public LongAdder contador(String nombre) {
+        return obtener(nombre, LongAdder.class, LongAdder::new);
+    }
+
+    /**
+     * Histograma de latencias en nanosegundos con ese nombre; se crea la
+     * primera vez.
+     *
+     * @throws IllegalArgumentException si el nombre ya es de otro tipo de métrica
+     */
+    public HistogramaLatencias histograma(String nombre) {
+        return obtener(nombre, HistogramaLatencias.class, HistogramaLatencias::new);
+    }
+
+    /**
+     * Registra un medidor: un valor que se calcula al leerlo. Sustituye al
+     * medidor anterior con el mismo nombre.
+     *
+     * @throws IllegalArgumentException si el nombre ya es de otro tipo de métrica
+     */
+    public void medidor(String nombre, LongSupplier valor) {
+        Objects.requireNonNull(valor, "valor");
+        metricas.compute(Objects.requireNonNull(nombre, "nombre"), (k, anterior) -> {
+            if (anterior != null && !(anterior instanceof LongSupplier)) {
+                throw new IllegalArgumentException("La métrica " + nombre + " ya existe y no es un medidor");
+            }
+            return valor;
+        });
+    }
+
+    /**
+     * Medidores de hilos activos, tareas en cola, completadas y tamaño del
+     * pool, si {@code ejecutor} es un {@link ThreadPoolExecutor}. Con otros
+     * ejecutores no hace nada: un ejecutor de un hilo por tarea, como el de
+     * hilos virtuales, no lleva la cuenta de lo que tiene en marcha, así que
+     * son las propias tareas las que deben publicar un medidor de las que
+     * están en curso.
+     */
+    public void medirEjecutor(String prefijo, ExecutorService ejecutor) {
+        if (ejecutor instanceof ThreadPoolExecutor pool) {
+            medidor(prefijo + ".activos", pool::getActiveCount);
+            medidor(prefijo + ".cola", () -> pool.getQueue().size());
+            medidor(prefijo + ".completadas", pool::getCompletedTaskCount);
+            medidor(prefijo + ".hilos", pool::getPoolSize);
+        }
+    }
+
+    public void eliminar(String nombre) {
+        metricas.remove(nombre);
+    }
+
+    private <T> T obtener(String nombre, Class<T> tipo, Supplier<T> nueva) {
+        Object metrica = metricas.get(Objects.requireNonNull(nombre, "nombre"));
+        if (metrica == null) {
+            metrica = metricas.computeIfAbsent(nombre, k -> nueva.get());
+        }
+        if (!tipo.isInstance(metrica)) {
+            throw new IllegalArgumentException("La métrica " + nombre + " ya existe y no es de tipo "
+                    + tipo.getSimpleName());
+        }
+        return tipo.cast(metrica);
+    }
+
+    /**
+     * Convierte un texto libre (un nombre de zona, por ejemplo) en una parte
+     * de nombre de métrica: sin tildes, en minúsculas y con {@code _} en lugar
+     * de espacios y signos.
+     */
+    static String normalizar(String texto) {
+        String sinTildes = Normalizer.normalize(texto, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return sinTildes.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_").replaceAll("^_|_$", "");
+    }
+
+    /**
+     * Lectura de todas las métricas, ordenadas por nombre.
+     */
+    public SortedMap<String, Number> valores() {
+        SortedMap<String, Number> valores = new TreeMap<>();
+        metricas.forEach((nombre, metrica) -> {
+            if (metrica instanceof LongAdder contador) {
+                valores.put(nombre, contador.sum());
+            } else if (metrica instanceof LongSupplier medidor) {
+                try {
+                    valores.put(nombre, medidor.getAsLong());
+                } catch (RuntimeException e) {
+                    // Un medidor roto no debe impedir leer el resto.
+                }
+            } else if (metrica instanceof HistogramaLatencias h) {
+                valores.put(nombre + ".total", h.getTotal());
+                valores.put(nombre + ".media_ns", h.getMedia());
+                valores.put(nombre + ".p50_ns", h.percentil(0.50));
+                valores.put(nombre + ".p99_ns", h.percentil(0.99));
+                valores.put(nombre + ".max_ns", h.getMaximo());
+            }
+        });
+        return valores;
+    }
+
+    /**
+     * Escribe todas las métricas en {@code fichero}, una por línea
+     * ({@code nombre valor}). Se escribe en un temporal y se renombra, así que
+     * quien lea el fichero nunca ve una instantánea a medias.
+     */
+    public void escribirInstantanea(Path fichero) throws IOException {
+        Path temporal = fichero.resolveSibling(fichero.getFileName() + ".tmp");
+        try (Writer salida = Files.newBufferedWriter(temporal, StandardCharsets.UTF_8)) {
+            salida.write("# " + Instant.now() + "\n");
+            for (Map.Entry<String, Number> e : valores().entrySet()) {
+                salida.write(e.getKey() + " " + e.getValue() + "\n");
+            }
+        }
+        try {
+            Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Vuelca una instantánea en {@code fichero} cada {@code periodo} desde un
+     * hilo daemon propio. Los fallos de escritura se cuentan en
+     * {@link #getErroresInstantanea()} y no detienen los volcados siguientes.
+     */
+    public synchronized ScheduledFuture<?> programarInstantaneas(Path fichero, long periodo, TimeUnit unidad) {
+        Objects.requireNonNull(fichero, "fichero");
+        if (instantaneas == null) {
+            instantaneas = Executors.newSingleThreadScheduledExecutor(tarea -> {
+                Thread hilo = new Thread(tarea, "metricas-instantaneas");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+        }
+        return instantaneas.scheduleAtFixedRate(() -> {
+            try {
+                escribirInstantanea(fichero);
+            } catch (IOException | RuntimeException e) {
+                erroresInstantanea.increment();
+            }
+        }, periodo, periodo, unidad);
+    }
+
+    public long getErroresInstantanea() {
+        return erroresInstantanea.sum();
+    }
+
+    /**
+     * Publica el registro en el servidor de MBeans de la plataforma como
+     * {@code org.docencia.hilos:type=Metricas,name=<nombre>}. Cada métrica
+     * aplanada es un atributo de solo lectura.
+     */
+    public synchronized ObjectName exportarJmx(String nombre) throws JMException {
+        if (exportado != null) {
+            return exportado;
+        }
+        ObjectName objeto = new ObjectName("org.docencia.hilos:type=Metricas,name=" + ObjectName.quote(nombre));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new VistaJmx(), objeto);
+        exportado = objeto;
+        return objeto;
+    }
+
+    /**
+     * Para los volcados periódicos y retira el registro de JMX.
+     */
+    @Override
+    public synchronized void close() {
+        if (instantaneas != null) {
+            instantaneas.shutdownNow();
+            instantaneas = null;
+        }
+        if (exportado != null) {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            try {
+                servidor.unregisterMBean(exportado);
+            } catch (JMException e) {
+                // Ya no estaba registrado.
+            }
+            exportado = null;
+        }
+    }
+
+    /** Vista JMX; las métricas se leen en cada petición. */
+    private final class VistaJmx implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String atributo) throws AttributeNotFoundException {
+            Number valor = valores().get(atributo);
+            if (valor == null) {
+                throw new AttributeNotFoundException(atributo);
+            }
+            return valor;
+        }
+
+        @Override
+        public void setAttribute(Attribute atributo) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Las métricas son de solo lectura: " + atributo.getName());
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] atributos) {
+            SortedMap<String, Number> valores = valores();
+            AttributeList lista = new AttributeList();
+            for (String atributo : atributos) {
+                Number valor = valores.get(atributo);
+                if (valor != null) {
+                    lista.add(new Attribute(atributo, valor));
+                }
+            }
+            return lista;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList atributos) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String accion, Object[] parametros, String[] firma) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(accion));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            SortedMap<String, Number> valores = valores();
+            MBeanAttributeInfo[] atributos = new MBeanAttributeInfo[valores.size()];
+            int i = 0;
+            for (Map.Entry<String, Number> e : valores.entrySet()) {
+                String tipo = e.getValue() instanceof Double ? "java.lang.Double" : "java.lang.Long";
+                atributos[i++] = new MBeanAttributeInfo(e.getKey(), tipo, e.getKey(), true, false, false);
+            }
+            return new MBeanInfo(RegistroMetricas.class.getName(), "Métricas de las simulaciones", atributos,
+                    null, null, null);
+        }
+    }
+
+    private static final class Global {
+        static final RegistroMetricas INSTANCIA = crear();
+
+        private static RegistroMetricas crear() {
+            RegistroMetricas registro = new RegistroMetricas();
+            try {
+                registro.exportarJmx("global");
+            } catch (JMException | SecurityException e) {
+                // Sin JMX las métricas siguen disponibles por valores().
+            }
+            String fichero = System.getProperty("hilos.metricas.fichero");
+            if (fichero != null && !fichero.isBlank()) {
+                Path ruta = Path.of(fichero);
+                long periodo = Long.getLong("hilos.metricas.periodo", 10);
+                registro.programarInstantaneas(ruta, periodo, TimeUnit.SECONDS);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        registro.escribirInstantanea(ruta);
+                    } catch (IOException e) {
+                        registro.erroresInstantanea.increment();
+                    }
+                }, "metricas-cierre"));
+            }
+            return registro;
+        }
+    }
+
+    /**
+     * Registro compartido por todas las simulaciones del proceso.
+     */
+    public static RegistroMetricas global() {
+        return Global.INSTANCIA;
+    }
+}
@@ -0,0 +1,466 @@
+package org.docencia.hilos;
+
+import java.util.Objects;
+import java.util.concurrent.Exchanger;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Forma de pasar el turno entre los hilos de una carrera, uno por corredor.
+ * Cada corredor llama a {@link #esperarTurno(int)}, da su paso y llama a
+ * {@link #cederTurno(int)}. Todas las variantes garantizan que solo un
+ * corredor tiene el turno a la vez y que lo escrito antes de cederlo es
+ * visible para quien lo recibe; las que además garantizan el orden estricto
+ * 0, 1, ..., n-1, 0, ... lo indican con {@link Tipo#garantizaAlternancia()}.
+ *
+ * <p>Se crean con {@link #crear(Tipo, int)}. El corredor 0 empieza con el
+ * turno.
+ */
+public abstract class RelevoTurno {
+
+    public enum Tipo {
+        /** Un {@link Semaphore} por corredor, como {@link SaiyanRaceSemaphore}. */
+        SEMAFOROS(true),
+        /** Un {@link ReentrantLock} con una {@link Condition} por corredor. */
+        CERROJO_CONDICION(true),
+        /** Turno en un campo volátil; quien espera se aparca con {@link LockSupport}. */
+        PARK_UNPARK(true),
+        /** Una {@link SynchronousQueue} por corredor: ceder es entregar en mano. */
+        SYNCHRONOUS_QUEUE(true),
+        /** Un {@link Exchanger} entre cada corredor y el siguiente. */
+        EXCHANGER(true),
+        /** Como {@link #PARK_UNPARK}, pero antes de aparcarse gira un rato acotado. */
+        GIRO_Y_PARK(true),
+        /**
+         * Un único {@link Semaphore} justo, como {@link SaiyanRaceSemaphoreOne}:
+         * exclusión mutua en orden de llegada, sin alternancia garantizada.
+         */
+        SEMAFORO_JUSTO(false);
+
+        private final boolean alternancia;
+
+        Tipo(boolean alternancia) {
+            this.alternancia = alternancia;
+        }
+
+        /** Si el turno pasa siempre al corredor siguiente en orden. */
+        public boolean garantizaAlternancia() {
+            return alternancia;
+        }
+    }
+
+    /**
+     * Vueltas de espera activa antes de aparcarse en {@link Tipo#GIRO_Y_PARK}.
+     * Con un solo núcleo girar solo retrasa al que tiene que ceder el turno.
+     */
+    static final int GIROS = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 10 : 0;
+
+    final int corredores;
+    private volatile boolean detenido;
+
+    RelevoTurno(int corredores) {
+        if (corredores <= 0) {
+            throw new IllegalArgumentException("hace falta al menos un corredor");
+        }
+        this.corredores = corredores;
+    }
+
+    public static RelevoTurno crear(Tipo tipo, int corredores) {
+        return switch (Objects.requireNonNull(tipo, "tipo")) {
+            case SEMAFOROS -> new Semaforos(corredores);
+            case CERROJO_CONDICION -> new CerrojoCondicion(corredores);
+            case PARK_UNPARK -> new Aparcamiento(corredores, 0);
+            case SYNCHRONOUS_QUEUE -> new ColasSincronas(corredores);
+            case EXCHANGER -> new Intercambios(corredores);
+            case GIRO_Y_PARK -> new Aparcamiento(corredores, GIROS);
+            case SEMAFORO_JUSTO -> new SemaforoJusto(corredores);
+        };
+    }
+
+    public abstract Tipo getTipo();
+
+    /**
+     * Bloquea hasta que {@code corredor} tiene el turno.
+     *
+     * @return {@code false} si el relevo se detuvo; entonces no se tiene el
+     *         turno y no hay que cederlo
+     */
+    public abstract boolean esperarTurno(int corredor) throws InterruptedException;
+
+    /**
+     * Pasa el turno que tiene {@code corredor} al siguiente. Solo puede
+     * llamarlo quien tiene el turno. Las variantes de entrega en mano esperan
+     * a que el siguiente lo recoja.
+     */
+    public abstract void cederTurno(int corredor) throws InterruptedException;
+
+    /**
+     * Detiene el relevo: quien espera turno se despierta con {@code false} y
+     * las esperas posteriores no bloquean.
+     */
+    public void detener() {
+        detenido = true;
+        despertarTodos();
+    }
+
+    public boolean isDetenido() {
+        return detenido;
+    }
+
+    public int getCorredores() {
+        return corredores;
+    }
+
+    abstract void despertarTodos();
+
+    final int siguiente(int corredor) {
+        return corredor + 1 == corredores ? 0 : corredor + 1;
+    }
+
+    private static final class Semaforos extends RelevoTurno {
+        private final Semaphore[] turnos;
+
+        Semaforos(int corredores) {
+            super(corredores);
+            turnos = new Semaphore[corredores];
+            for (int i = 0; i < corredores; i++) {
+                turnos[i] = new Semaphore(i == 0 ? 1 : 0);
+            }
+        }
+
+        @Override
+        public Tipo getTipo() {
+            return Tipo.SEMAFOROS;
+        }
+
+        @Override
+        public boolean esperarTurno(int corredor) throws InterruptedException {
+            if (isDetenido()) {
+                return false;
+            }
+            turnos[corredor].acquire();
+            return !isDetenido();
+        }
+
+        @Override
+        public void cederTurno(int corredor) {
+            turnos[siguiente(corredor)].release();
+        }
+
+        @Override
+        void despertarTodos() {
+            for (Semaphore turno : turnos) {
+                turno.release();
+            }
+        }
+    }
+
+    private static final class SemaforoJusto extends RelevoTurno {
+        private final Semaphore turno = new Semaphore(1, true);
+
+        SemaforoJusto(int corredores) {
+            super(corredores);
+        }
+
+        @Override
+        public Tipo getTipo() {
+            return Tipo.SEMAFORO_JUSTO;
+        }
+
+        @Override
+        public boolean esperarTurno(int corredor) throws InterruptedException {
+            if (isDetenido()) {
+                return false;
+            }
+            turno.acquire();
+            if (isDetenido()) {
+                turno.release();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void cederTurno(int corredor) {
+            turno.release();
+        }
+
+        @Override
+        void despertarTodos() {
+            turno.release(corredores);
+        }
+    }
+
+    private static final class CerrojoCondicion extends RelevoTurno {
+        private final ReentrantLock cerrojo = new ReentrantLock();
+        private final Condition[] turnos;
+        /** Corredor con el turno; protegido por {@link #cerrojo}. */
+        private int turno;
+
+        CerrojoCondicion(int corredores) {
+            super(corredores);
+            turnos = new Condition[corredores];
+            for (int i = 0; i < corredores; i++) {
+                turnos[i] = cerrojo.newCondition();
+            }
+        }
+
+        @Override
+        public Tipo getTipo() {
+            return Tipo.CERROJO_CONDICION;
+        }
+
+        @Override
+        public boolean esperarTurno(int corredor) throws InterruptedException {
+            cerrojo.lockInterruptibly();
+            try {
+                while (turno != corredor && !isDetenido()) {
+                    turnos[corredor].await();
+                }
+                return !isDetenido();
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+
+        @Override
+        public void cederTurno(int corredor) {
+            cerrojo.lock();
+            try {
+                turno = siguiente(corredor);
+                turnos[turno].signal();
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+
+        @Override
+        void despertarTodos() {
+            cerrojo.lock();
+            try {
+                for (Condition condicion : turnos) {
+                    condicion.signalAll();
+                }
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+    }
+
+    /**
+     * El turno vive en un campo volátil. Quien espera se apunta como aparcado
+     * y vuelve a mirar el turno antes de aparcarse; quien cede escribe el
+     * turno y después mira si el siguiente está aparcado. Con ambos accesos
+     * volátiles al menos uno de los dos ve al otro, así que no se pierde
+     * ningún aviso y solo se llama a {@code unpark} cuando hace falta.
+     */
+    private static final class Aparcamiento extends RelevoTurno {
+        private final int giros;
+        private final AtomicReferenceArray<Thread> hilos;
+        private final AtomicIntegerArray aparcados;
+        private volatile int turno;
+
+        Aparcamiento(int corredores, int giros) {
+            super(corredores);
+            this.giros = giros;
+            this.hilos = new AtomicReferenceArray<>(corredores);
+            this.aparcados = new AtomicIntegerArray(corredores);
+        }
+
+        @Override
+        public Tipo getTipo() {
+            return giros > 0 ? Tipo.GIRO_Y_PARK : Tipo.PARK_UNPARK;
+        }
+
+        @Override
+        public boolean esperarTurno(int corredor) throws InterruptedException {
+            for (int i = 0; i < giros && turno != corredor; i++) {
+                Thread.onSpinWait();
+            }
+            if (turno != corredor) {
+                hilos.set(corredor, Thread.currentThread());
+                aparcados.set(corredor, 1);
+                try {
+                    while (turno != corredor && !isDetenido()) {
+                        LockSupport.park(this);
+                        if (Thread.interrupted()) {
+                            throw new InterruptedException();
+                        }
+                    }
+                } finally {
+                    aparcados.set(corredor, 0);
+                }
+            }
+            return !isDetenido();
+        }
+
+        @Override
+        public void cederTurno(int corredor) {
+            int siguiente = siguiente(corredor);
+            turno = siguiente;
+            if (aparcados.get(siguiente) != 0) {
+                LockSupport.unpark(hilos.get(siguiente));
+            }
+        }
+
+        @Override
+        void despertarTodos() {
+            for (int i = 0; i < corredores; i++) {
+                Thread hilo = hilos.get(i);
+                if (hilo != null) {
+                    LockSupport.unpark(hilo);
+                }
+            }
+        }
+    }
+
+    /**
+     * Variantes de entrega en mano: ceder no termina hasta que el siguiente
+     * recoge el turno. Sus esperas no atienden a {@code unpark}, así que
+     * detener interrumpe a los hilos que estén bloqueados en ellas.
+     */
+    private abstract static class Cita extends RelevoTurno {
+        private final AtomicReferenceArray<Thread> bloqueados;
+        /** El corredor 0 empieza con el turno sin recogerlo de nadie. */
+        private volatile boolean salidaPendiente = true;
+
+        Cita(int corredores) {
+            super(corredores);
+            this.bloqueados = new AtomicReferenceArray<>(corredores);
+        }
+
+        abstract void recibir(int corredor) throws InterruptedException;
+
+        abstract void entregar(int destino) throws InterruptedException;
+
+        @Override
+        public boolean esperarTurno(int corredor) throws InterruptedException {
+            if (corredor == 0 && salidaPendiente) {
+                salidaPendiente = false;
+                return !isDetenido();
+            }
+            if (isDetenido()) {
+                return false;
+            }
+            try {
+                bloquear(corredor, true);
+                // detener() pudo pasar antes de apuntarse y no interrumpir a nadie.
+                if (isDetenido()) {
+                    return false;
+                }
+                recibir(corredor);
+            } catch (InterruptedException e) {
+                if (isDetenido()) {
+                    return false;
+                }
+                throw e;
+            } finally {
+                bloquear(corredor, false);
+            }
+            return !isDetenido();
+        }
+
+        @Override
+        public void cederTurno(int corredor) throws InterruptedException {
+            if (siguiente(corredor) == corredor) {
+                // Con un solo corredor no hay nadie a quien entregarlo.
+                salidaPendiente = true;
+                return;
+            }
+            try {
+                bloquear(corredor, true);
+                if (isDetenido()) {
+                    return;
+                }
+                entregar(siguiente(corredor));
+            } catch (InterruptedException e) {
+                if (!isDetenido()) {
+                    throw e;
+                }
+            } finally {
+                bloquear(corredor, false);
+            }
+        }
+
+        private void bloquear(int corredor, boolean bloqueado) {
+            bloqueados.set(corredor, bloqueado ? Thread.currentThread() : null);
+            if (!bloqueado && isDetenido()) {
+                // La interrupción de detener() puede llegar justo al salir;
+                // es nuestra y no debe afectar a lo que haga el hilo después.
+                Thread.interrupted();
+            }
+        }
+
+        @Override
+        void despertarTodos() {
+            for (int i = 0; i < corredores; i++) {
+                Thread hilo = bloqueados.get(i);
+                if (hilo != null) {
+                    hilo.interrupt();
+                }
+            }
+        }
+    }
+
+    private static final class ColasSincronas extends Cita {
+        private final SynchronousQueue<Boolean>[] buzones;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ColasSincronas(int corredores) {
+            super(corredores);
+            buzones = new SynchronousQueue[corredores];
+            for (int i = 0; i < corredores; i++) {
+                buzones[i] = new SynchronousQueue<>();
+            }
+        }
+
+        @Override
+        public Tipo getTipo() {
+            return Tipo.SYNCHRONOUS_QUEUE;
+        }
+
+        @Override
+        void recibir(int corredor) throws InterruptedException {
+            buzones[corredor].take();
+        }
+
+        @Override
+        void entregar(int destino) throws InterruptedException {
+            buzones[destino].put(Boolean.TRUE);
+        }
+    }
+
+    private static final class Intercambios extends Cita {
+        /** El punto {@code i} une al corredor {@code i} con el anterior. */
+        private final Exchanger<Boolean>[] puntos;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Intercambios(int corredores) {
+            super(corredores);
+            puntos = new Exchanger[corredores];
+            for (int i = 0; i < corredores; i++) {
+                puntos[i] = new Exchanger<>();
+            }
+        }
+
+        @Override
+        public Tipo getTipo() {
+            return Tipo.EXCHANGER;
+        }
+
+        @Override
+        void recibir(int corredor) throws InterruptedException {
+            puntos[corredor].exchange(Boolean.FALSE);
+        }
+
+        @Override
+        void entregar(int destino) throws InterruptedException {
+            puntos[destino].exchange(Boolean.TRUE);
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package org.docencia.hilos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Planificador basado en una rueda de tiempo jerárquica (hashed hierarchical
+ * timing wheel). El heap de {@code ScheduledThreadPoolExecutor} cuesta
+ * O(log n) por alta y baja y todos los hilos compiten por el mismo cerrojo;
+ * con millones de temporizadores de respawn eso se nota.
+ *
+ * <p>Aquí programar y cancelar es O(1): los hilos productores solo encolan el
+ * temporizador en una cola sin bloqueo y un único hilo "tic" lo coloca en la
+ * casilla que le corresponde. Hay {@value #NIVELES} ruedas de
+ * {@value #CASILLAS} casillas; cuando una rueda da la vuelta, la casilla
+ * correspondiente de la rueda superior se redistribuye en la inferior. La
+ * resolución del tic es configurable y las tareas vencidas se ejecutan en un
+ * {@link Executor} aparte para no retrasar el tic.
+ *
+ * <p>Al apagarse se descartan los temporizadores que aún no han vencido, igual
+ * que con {@code setExecuteExistingDelayedTasksAfterShutdownPolicy(false)}.
+ */
+public class RuedaTemporizadores extends AbstractExecutorService implements ScheduledExecutorService {
+
+    static final int NIVELES = 4;
+    static final int BITS_POR_NIVEL = 8;
+    static final int CASILLAS = 1 << BITS_POR_NIVEL;
+    private static final int MASCARA = CASILLAS - 1;
+
+    private static final class Casilla {
+        Temporizador<?> cabeza;
+        Temporizador<?> cola;
+
+        void anadir(Temporizador<?> t) {
+            t.casilla = this;
+            t.anterior = cola;
+            t.siguiente = null;
+            if (cola == null) {
+                cabeza = t;
+            } else {
+                cola.siguiente = t;
+            }
+            cola = t;
+        }
+
+        void quitar(Temporizador<?> t) {
+            if (t.anterior == null) {
+                cabeza = t.siguiente;
+            } else {
+                t.anterior.siguiente = t.siguiente;
+            }
+            if (t.siguiente == null) {
+                cola = t.anterior;
+            } else {
+                t.siguiente.anterior = t.anterior;
+            }
+            t.casilla = null;
+            t.anterior = null;
+            t.siguiente = null;
+        }
+
+        Temporizador<?> vaciar() {
+            Temporizador<?> lista = cabeza;
+            cabeza = null;
+            cola = null;
+            return lista;
+        }
+    }
+
+    /**
+     * Temporizador programado. Los enlaces de la lista y la casilla solo los
+     * toca el hilo tic.
+     */
+    private final class Temporizador<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+        private final long secuencia = secuencias.getAndIncrement();
+        /** 0 si se ejecuta una vez, positivo para tasa fija, negativo para retardo fijo. */
+        private final long periodoNanos;
+        private volatile long vencimientoNanos;
+        Casilla casilla;
+        Temporizador<?> anterior;
+        Temporizador<?> siguiente;
+
+        Temporizador(Callable<V> tarea, long vencimientoNanos) {
+            super(tarea);
+            this.vencimientoNanos = vencimientoNanos;
+            this.periodoNanos = 0;
+        }
+
+        Temporizador(Runnable tarea, long vencimientoNanos, long periodoNanos) {
+            super(tarea, null);
+            this.vencimientoNanos = vencimientoNanos;
+            this.periodoNanos = periodoNanos;
+        }
+
+        long ticVencimiento() {
+            long relativo = vencimientoNanos - inicioNanos;
+            return relativo <= 0 ? 0 : (relativo + nanosPorTic - 1) / nanosPorTic;
+        }
+
+        @Override
+        public void run() {
+            if (periodoNanos == 0) {
+                super.run();
+            } else if (runAndReset()) {
+                vencimientoNanos = periodoNanos > 0
+                        ? vencimientoNanos + periodoNanos
+                        : System.nanoTime() - periodoNanos;
+                encolar(this);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelado = super.cancel(mayInterruptIfRunning);
+            if (cancelado) {
+                cancelados.offer(this);
+            }
+            return cancelado;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(vencimientoNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed otro) {
+            if (otro == this) {
+                return 0;
+            }
+            if (otro instanceof RuedaTemporizadores.Temporizador<?> t) {
+                int c = Long.compare(vencimientoNanos - t.vencimientoNanos, 0);
+                return c != 0 ? c : Long.compare(secuencia, t.secuencia);
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), otro.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return periodoNanos != 0;
+        }
+    }
+
+    private final Casilla[][] ruedas = new Casilla[NIVELES][CASILLAS];
+    private final Queue<Temporizador<?>> pendientes = new ConcurrentLinkedQueue<>();
+    private final Queue<Temporizador<?>> cancelados = new ConcurrentLinkedQueue<>();
+    private final AtomicLong secuencias = new AtomicLong();
+    private final AtomicLong programados = new AtomicLong();
+    private final long nanosPorTic;
+    private final long inicioNanos;
+    private final Executor ejecutor;
+    private final ExecutorService ejecutorPropio;
+    private final Thread hiloTic;
+    private volatile boolean apagado;
+    private long ticActual;
+
+    /**
+     * Crea una rueda con la resolución indicada cuyas tareas se ejecutan en un
+     * pool propio de {@code hilos} hilos.
+     */
+    public RuedaTemporizadores(long resolucion, TimeUnit unidad, int hilos) {
+        this(unidad.toNanos(resolucion), Executors.newFixedThreadPool(hilos), true);
+    }
+
+    /**
+     * Crea una rueda cuyas tareas se ejecutan en {@code ejecutor}, que no se
+     * apaga junto con la rueda. Con {@code Runnable::run} las tareas corren en
+     * el propio hilo tic.
+     */
+    public RuedaTemporizadores(long resolucion, TimeUnit unidad, Executor ejecutor) {
+        this(unidad.toNanos(resolucion), ejecutor, false);
+    }
+
+    private RuedaTemporizadores(long nanosPorTic, Executor ejecutor, boolean propio) {
+        if (nanosPorTic <= 0) {
+            throw new IllegalArgumentException("La resolución debe ser positiva");
+        }
+        this.nanosPorTic = nanosPorTic;
+        this.ejecutor = Objects.requireNonNull(ejecutor, "ejecutor");
+        this.ejecutorPropio = propio ? (ExecutorService) ejecutor : null;
+        for (int nivel = 0; nivel < NIVELES; nivel++) {
+            for (int i = 0; i < CASILLAS; i++) {
+                ruedas[nivel][i] = new Casilla();
+            }
+        }
+        this.inicioNanos = System.nanoTime();
+        this.hiloTic = new Thread(this::bucleTic, "rueda-temporizadores");
+        this.hiloTic.setDaemon(true);
+        this.hiloTic.start();
+    }
+
+    private void encolar(Temporizador<?> t) {
+        if (apagado) {
+            t.cancel(false);
+            return;
+        }
+        programados.incrementAndGet();
+        pendientes.offer(t);
+    }
+
+    private <T extends Temporizador<?>> T programar(T t) {
+        if (apagado) {
+            throw new RejectedExecutionException("La rueda de temporizadores está apagada");
+        }
+        encolar(t);
+        return t;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        Objects.requireNonNull(command, "command");
+        return programar(new Temporizador<>(command, vencimiento(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        Objects.requireNonNull(callable, "callable");
+        return programar(new Temporizador<>(callable, vencimiento(delay, unit)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        Objects.requireNonNull(command, "command");
+        if (period <= 0) {
+            throw new IllegalArgumentException("period debe ser positivo");
+        }
+        return programar(new Temporizador<>(command, vencimiento(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        Objects.requireNonNull(command, "command");
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay debe ser positivo");
+        }
+        return programar(new Temporizador<>(command, vencimiento(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    private static long vencimiento(long retardo, TimeUnit unidad) {
+        return System.nanoTime() + unidad.toNanos(Math.max(0, retardo));
+    }
+
+    private void bucleTic() {
+        List<Temporizador<?>> vencidos = new ArrayList<>();
+        try {
+            while (!apagado) {
+                esperarTic();
+                quitarCancelados();
+                colocarPendientes(vencidos);
+                avanzar(vencidos);
+                for (Temporizador<?> t : vencidos) {
+                    programados.decrementAndGet();
+                    despachar(t);
+                }
+                vencidos.clear();
+                ticActual++;
+            }
+        } finally {
+            descartarTodo();
+            if (ejecutorPropio != null) {
+                ejecutorPropio.shutdown();
+            }
+        }
+    }
+
+    private void esperarTic() {
+        long objetivo = inicioNanos + ticActual * nanosPorTic;
+        long restante;
+        while (!apagado && (restante = objetivo - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, restante);
+        }
+    }
+
+    private void quitarCancelados() {
+        Temporizador<?> t;
+        while ((t = cancelados.poll()) != null) {
+            if (t.casilla != null) {
+                t.casilla.quitar(t);
+                programados.decrementAndGet();
+            }
+        }
+    }
+
+    private void colocarPendientes(List<Temporizador<?>> vencidos) {
+        Temporizador<?> t;
+        while ((t = pendientes.poll()) != null) {
+            if (t.isCancelled()) {
+                programados.decrementAndGet();
+                continue;
+            }
+            colocar(t, vencidos);
+        }
+    }
+
+    private void colocar(Temporizador<?> t, List<Temporizador<?>> vencidos) {
+        long tic = t.ticVencimiento();
+        long delta = tic - ticActual;
+        if (delta < 0) {
+            vencidos.add(t);
+            return;
+        }
+        for (int nivel = 0; nivel < NIVELES; nivel++) {
+            if (nivel == NIVELES - 1 || delta < 1L << (BITS_POR_NIVEL * (nivel + 1))) {
+                int indice = (int) ((tic >>> (BITS_POR_NIVEL * nivel)) & MASCARA);
+                ruedas[nivel][indice].anadir(t);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Procesa el tic actual: baja a la rueda inferior las casillas de las ruedas
+     * superiores que empiezan ahora y recoge la casilla vencida del nivel 0.
+     */
+    private void avanzar(List<Temporizador<?>> vencidos) {
+        for (int nivel = NIVELES - 1; nivel >= 1; nivel--) {
+            long mascaraInferior = (1L << (BITS_POR_NIVEL * nivel)) - 1;
+            if ((ticActual & mascaraInferior) == 0) {
+                int indice = (int) ((ticActual >>> (BITS_POR_NIVEL * nivel)) & MASCARA);
+                recolocar(ruedas[nivel][indice].vaciar(), vencidos);
+            }
+        }
+        Temporizador<?> t = ruedas[0][(int) (ticActual & MASCARA)].vaciar();
+        while (t != null) {
+            Temporizador<?> siguiente = t.siguiente;
+            desenlazar(t);
+            if (t.ticVencimiento() <= ticActual) {
+                vencidos.add(t);
+            } else {
+                colocar(t, vencidos);
+            }
+            t = siguiente;
+        }
+    }
+
+    private void recolocar(Temporizador<?> lista, List<Temporizador<?>> vencidos) {
+        Temporizador<?> t = lista;
+        while (t != null) {
+            Temporizador<?> siguiente = t.siguiente;
+            desenlazar(t);
+            colocar(t, vencidos);
+            t = siguiente;
+        }
+    }
+
+    private static void desenlazar(Temporizador<?> t) {
+        t.casilla = null;
+        t.anterior = null;
+        t.siguiente = null;
+    }
+
+    private void despachar(Temporizador<?> t) {
+        if (t.isCancelled()) {
+            return;
+        }
+        try {
+            ejecutor.execute(t);
+        } catch (RejectedExecutionException e) {
+            t.cancel(false);
+        }
+    }
+
+    private void descartarTodo() {
+        Temporizador<?> t;
+        while ((t = pendientes.poll()) != null) {
+            t.cancel(false);
+        }
+        for (Casilla[] rueda : ruedas) {
+            for (Casilla casilla : rueda) {
+                t = casilla.vaciar();
+                while (t != null) {
+                    Temporizador<?> siguiente = t.siguiente;
+                    desenlazar(t);
+                    t.cancel(false);
+                    t = siguiente;
+                }
+            }
+        }
+        cancelados.clear();
+        programados.set(0);
+    }
+
+    /**
+     * Número aproximado de temporizadores pendientes de vencer.
+     */
+    long getProgramados() {
+        return programados.get();
+    }
+
+    @Override
+    public void shutdown() {
+        apagado = true;
+        LockSupport.unpark(hiloTic);
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        if (ejecutorPropio != null) {
+            return ejecutorPropio.shutdownNow();
+        }
+        return List.of();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return apagado;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return apagado && !hiloTic.isAlive() && (ejecutorPropio == null || ejecutorPropio.isTerminated());
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long limite = System.nanoTime() + unit.toNanos(timeout);
+        TimeUnit.NANOSECONDS.timedJoin(hiloTic, Math.max(0, limite - System.nanoTime()));
+        if (hiloTic.isAlive()) {
+            return false;
+        }
+        if (ejecutorPropio != null) {
+            return ejecutorPropio.awaitTermination(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        return true;
+    }
+}
@@ -34,7 +34,7 @@ public class SaiyanRaceSemaphore implements Runnable {
                 name,
                 () -> ThreadLocalRandom.current().nextInt(1, 11),
                 () -> ThreadLocalRandom.current().nextLong(200, 401),
-                System.out::println);
+                RegistroAsincrono.global());
     }
 
     SaiyanRaceSemaphore(
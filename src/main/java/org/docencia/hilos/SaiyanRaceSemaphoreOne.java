@@ -32,7 +32,7 @@ public class SaiyanRaceSemaphoreOne implements Runnable {
                 name,
                 () -> ThreadLocalRandom.current().nextInt(1, 11),
                 () -> ThreadLocalRandom.current().nextLong(200, 401),
-                System.out::println);
+                RegistroAsincrono.global());
     }
 
     SaiyanRaceSemaphoreOne(
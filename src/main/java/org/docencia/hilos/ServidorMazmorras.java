@@ -2,6 +2,10 @@ package org.docencia.hilos;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 /*
  * @author franciscorodalf
  * @version 1.0
@@ -26,36 +30,237 @@ import java.util.concurrent.Executors;
 
 public class ServidorMazmorras {
 
+    /**
+     * Mazmorra ya preparada y lista para recibir jugadores.
+     */
+    static class InstanciaMazmorra {
+        final String nombre;
+        final long preparadaNanos;
+
+        InstanciaMazmorra(String nombre, long preparadaNanos) {
+            this.nombre = nombre;
+            this.preparadaNanos = preparadaNanos;
+        }
+    }
+
+    @FunctionalInterface
+    interface PreparadorMazmorra {
+        InstanciaMazmorra preparar(String mazmorra) throws InterruptedException;
+    }
+
+    static InstanciaMazmorra prepararDesdeCero(String mazmorra) throws InterruptedException {
+        Thread.sleep(1000 + (int) (Math.random() * 1000));
+        return new InstanciaMazmorra(mazmorra, System.nanoTime());
+    }
+
+    /**
+     * Forma de ejecutar las peticiones: pool fijo de GM bots (el original), pool
+     * de hilos de plataforma bajo demanda o un hilo virtual por petición.
+     */
+    enum ModoEjecucion {
+        FIJO,
+        CACHEADO,
+        VIRTUAL
+    }
+
+    /**
+     * Los hilos virtuales no tienen nombre por defecto; se les da uno para
+     * que los mensajes digan qué GM bot atiende cada petición.
+     */
+    static ExecutorService crearGmBots(ModoEjecucion modo, int hilos) {
+        return switch (modo) {
+            case FIJO -> Executors.newFixedThreadPool(hilos);
+            case CACHEADO -> Executors.newCachedThreadPool();
+            case VIRTUAL -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("gm-bot-", 0).factory());
+        };
+    }
+
+    /**
+     * En modo {@link ModoEjecucion#VIRTUAL} no hay pool que limite cuántas
+     * preparaciones van a la vez, así que se envuelve {@code preparador} en un
+     * {@link LimitadorPreparaciones} de {@code limite} permisos. En los demás
+     * modos el propio pool ya hace de límite.
+     */
+    static PreparadorMazmorra crearPreparador(ModoEjecucion modo, int limite, PreparadorMazmorra preparador) {
+        return modo == ModoEjecucion.VIRTUAL ? new LimitadorPreparaciones(preparador, limite) : preparador;
+    }
+
     static class PeticionMazmorra implements Runnable {
+        private static final RegistroAsincrono.Formato PREPARANDO = (destino, e) -> {
+            PeticionMazmorra p = (PeticionMazmorra) e.texto2;
+            destino.append('[').append(e.texto).append("] Preparando mazmorra '").append(p.mazmorra)
+                    .append("' para el jugador ").append(p.nombreJugador);
+        };
+        private static final RegistroAsincrono.Formato INTERRUMPIDA = (destino, e) ->
+                destino.append('[').append(e.texto).append("] Petición de ")
+                        .append(((PeticionMazmorra) e.texto2).nombreJugador).append(" interrumpida");
+        private static final RegistroAsincrono.Formato LISTA = (destino, e) -> {
+            PeticionMazmorra p = (PeticionMazmorra) e.texto2;
+            destino.append('[').append(e.texto).append("] Mazmorra '").append(p.mazmorra)
+                    .append("' lista para ").append(p.nombreJugador).append(" 🎮");
+        };
+
+        private static final LongAdder SERVIDAS = RegistroMetricas.global().contador("mazmorras.peticiones.servidas");
+        private static final LongAdder INTERRUMPIDAS =
+                RegistroMetricas.global().contador("mazmorras.peticiones.interrumpidas");
+        private static final HistogramaLatencias PREPARACION =
+                RegistroMetricas.global().histograma("mazmorras.preparacion.latencia");
+        /** Peticiones empezadas y no terminadas; sirve con cualquier ejecutor. */
+        private static final LongAdder EN_CURSO = new LongAdder();
+
+        static {
+            RegistroMetricas.global().medidor("mazmorras.peticiones.en_curso", EN_CURSO::sum);
+        }
+
         private final String nombreJugador;
         private final String mazmorra;
+        private final PreparadorMazmorra preparador;
+        private final RegistroAsincrono registro;
 
         public PeticionMazmorra(String nombreJugador, String mazmorra) {
+            this(nombreJugador, mazmorra, ServidorMazmorras::prepararDesdeCero);
+        }
+
+        PeticionMazmorra(String nombreJugador, String mazmorra, PreparadorMazmorra preparador) {
+            this(nombreJugador, mazmorra, preparador, RegistroAsincrono.global());
+        }
+
+        /**
+         * @param registro destino de los mensajes; si es {@code null} no se
+         *                 publica nada
+         */
+        PeticionMazmorra(String nombreJugador, String mazmorra, PreparadorMazmorra preparador,
+                RegistroAsincrono registro) {
             this.nombreJugador = nombreJugador;
             this.mazmorra = mazmorra;
+            this.preparador = preparador;
+            this.registro = registro;
+        }
+
+        String getNombreJugador() {
+            return nombreJugador;
+        }
+
+        String getMazmorra() {
+            return mazmorra;
+        }
+
+        /**
+         * La misma petición, con el mismo registro, pero preparada con
+         * {@code otro}; así quien agrupa peticiones puede servirles una
+         * instancia ya preparada.
+         */
+        PeticionMazmorra conPreparador(PreparadorMazmorra otro) {
+            return new PeticionMazmorra(nombreJugador, mazmorra, otro, registro);
+        }
+
+        /**
+         * Da la petición por interrumpida sin llegar a atenderla, para quien la
+         * tenía retenida y ya no puede entregarla a un GM bot.
+         */
+        void interrumpir() {
+            INTERRUMPIDAS.increment();
+            publicar(INTERRUMPIDA, registro != null ? Thread.currentThread().getName() : null);
         }
 
         @Override
         public void run() {
-            String hilo = Thread.currentThread().getName();
-            System.out.println("[" + hilo + "] Preparando mazmorra '" + mazmorra +
-                    "' para el jugador " + nombreJugador);
+            EN_CURSO.increment();
+            try {
+                atender();
+            } finally {
+                EN_CURSO.decrement();
+            }
+        }
+
+        private void atender() {
+            String hilo = registro != null ? Thread.currentThread().getName() : null;
+            publicar(PREPARANDO, hilo);
+            long inicio = System.nanoTime();
             try {
-                Thread.sleep(1000 + (int) (Math.random() * 1000));
+                preparador.preparar(mazmorra);
             } catch (InterruptedException e) {
-                System.out.println("[" + hilo + "] Petición de " + nombreJugador + " interrumpida");
+                INTERRUMPIDAS.increment();
+                publicar(INTERRUMPIDA, hilo);
                 Thread.currentThread().interrupt();
                 return;
             }
-            System.out.println("[" + hilo + "] Mazmorra '" + mazmorra +
-                    "' lista para " + nombreJugador + " 🎮");
+            PREPARACION.registrar(System.nanoTime() - inicio);
+            SERVIDAS.increment();
+            publicar(LISTA, hilo);
+        }
+
+        private void publicar(RegistroAsincrono.Formato formato, String hilo) {
+            if (registro != null) {
+                registro.publicar(formato, hilo, this, 0, 0);
+            }
         }
     }
 
-    public static void main(String[] args) {
+    /**
+     * {@code args}: {@code [modo] [politica] [ventanaMs tamanoMaximo]}. En
+     * modo {@link ModoEjecucion#FIJO} los GM bots están detrás de una
+     * {@link AdmisionMazmorras} con cola acotada y la {@code politica} de
+     * sobrecarga indicada; los otros modos no encolan. Con ventana las
+     * peticiones pasan antes por un {@link AgrupadorPartidas}.
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        ModoEjecucion modo = args.length > 0 ? ModoEjecucion.valueOf(args[0]) : ModoEjecucion.FIJO;
+        AdmisionMazmorras.PoliticaSobrecarga politica = args.length > 1
+                ? AdmisionMazmorras.PoliticaSobrecarga.valueOf(args[1])
+                : AdmisionMazmorras.PoliticaSobrecarga.EJECUTAR_EN_LLAMANTE;
+        long ventanaMs = args.length > 2 ? Long.parseLong(args[2]) : -1;
+        int tamanoMaximo = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        int hilos = 3;
+        PreparadorMazmorra preparador = crearPreparador(modo, hilos, ServidorMazmorras::prepararDesdeCero);
+        if (preparador instanceof LimitadorPreparaciones limitador) {
+            RegistroMetricas.global().medidor("mazmorras.preparaciones.en_curso", limitador::getEnCurso);
+            RegistroMetricas.global().medidor("mazmorras.preparaciones.esperando", limitador::getEsperando);
+        }
 
-        ExecutorService gmBots = Executors.newFixedThreadPool(3);
+        System.out.println("=== Iniciando Servidor de Mazmorras (" + modo
+                + (modo == ModoEjecucion.FIJO ? ", " + politica : "")
+                + (ventanaMs >= 0 ? ", partidas de hasta " + tamanoMaximo + " en " + ventanaMs + " ms" : "")
+                + ") ===");
 
+        AgrupadorPartidas agrupador;
+        if (modo == ModoEjecucion.FIJO) {
+            AdmisionMazmorras admision = new AdmisionMazmorras(hilos, 2 * hilos, politica);
+            RegistroMetricas.global().medidor("mazmorras.admision.en_cola", admision::getProfundidadCola);
+            agrupador = enviarPeticiones(admision::enviar, preparador, ventanaMs, tamanoMaximo);
+            admision.shutdown();
+            admision.awaitTermination(1, TimeUnit.MINUTES);
+            RegistroAsincrono.global().vaciar();
+            admision.getMetricas().forEach((nombre, m) -> System.out.println("Servidor: " + nombre + " -> " + m));
+        } else {
+            // close() espera a que terminen todas: los hilos virtuales son daemon
+            // y la JVM no los esperaría.
+            try (ExecutorService gmBots = crearGmBots(modo, hilos)) {
+                RegistroMetricas.global().medirEjecutor("mazmorras.gmbots", gmBots);
+                agrupador = enviarPeticiones((mazmorra, tarea, siDescartada) -> gmBots.execute(tarea), preparador,
+                        ventanaMs, tamanoMaximo);
+            }
+            RegistroAsincrono.global().vaciar();
+        }
+
+        System.out.println("Servidor: todas las peticiones han sido atendidas.");
+        if (agrupador != null) {
+            System.out.printf("Servidor: preparaciones por jugador %.2f, espera de ventana media=%.1f ms max=%.1f ms,"
+                    + " grupos fallidos=%d%n",
+                    agrupador.getPreparacionesPorJugador(), agrupador.getEsperaVentanaMediaMillis(),
+                    agrupador.getEsperaVentanaMaximaMillis(), agrupador.getGruposFallidos());
+        }
+    }
+
+    /**
+     * Envía las peticiones de la demo a {@code gmBots}, agrupadas si
+     * {@code ventanaMs} no es negativa.
+     *
+     * @return el agrupador usado, o {@code null} si no se agrupó
+     */
+    private static AgrupadorPartidas enviarPeticiones(AgrupadorPartidas.Despacho gmBots,
+            PreparadorMazmorra preparador, long ventanaMs, int tamanoMaximo) throws InterruptedException {
         String[] jugadores = {
                 "Link", "Zelda", "Geralt", "Yennefer", "Gandalf",
                 "Frodo", "Aragorn", "Leia", "Luke", "DarthVader"
@@ -65,16 +270,32 @@ public class ServidorMazmorras {
                 "Estrella de la Muerte", "Nido de Dragón"
         };
 
-        System.out.println("=== Iniciando Servidor de Mazmorras ===");
-
+        ScheduledExecutorService temporizador = Executors.newSingleThreadScheduledExecutor();
+        AgrupadorPartidas agrupador = ventanaMs < 0 ? null
+                : new AgrupadorPartidas(gmBots, temporizador, preparador, TimeUnit.MILLISECONDS.toNanos(ventanaMs),
+                        tamanoMaximo, System::nanoTime);
         for (int i = 0; i < jugadores.length; i++) {
-            String jugador = jugadores[i];
-            String dungeon = mazmorras[i % mazmorras.length];
-            gmBots.execute(new PeticionMazmorra(jugador, dungeon));
+            PeticionMazmorra peticion = new PeticionMazmorra(jugadores[i], mazmorras[i % mazmorras.length],
+                    preparador);
+            if (agrupador != null) {
+                agrupador.enviar(peticion);
+                continue;
+            }
+            try {
+                gmBots.enviar(peticion.getMazmorra(), peticion, peticion::interrumpir);
+            } catch (RejectedExecutionException e) {
+                System.out.println("Servidor: " + e.getMessage());
+                peticion.interrumpir();
+            }
         }
-
-        gmBots.shutdown();
+        if (agrupador != null) {
+            // Los grupos abiertos se despachan ya; un cierre por ventana que
+            // siga en marcha tiene que terminar antes de cerrar los GM bots.
+            agrupador.vaciar();
+        }
+        temporizador.shutdownNow();
+        temporizador.awaitTermination(1, TimeUnit.SECONDS);
         System.out.println("Servidor: todas las peticiones han sido enviadas a los GM bots.");
-
+        return agrupador;
     }
 }
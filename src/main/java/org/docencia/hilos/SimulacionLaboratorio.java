@@ -0,0 +1,157 @@
+package org.docencia.hilos;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Simulación de capacidad del laboratorio con cientos de miles o millones de
+ * estudiantes. En lugar de un hilo de plataforma por estudiante, cada
+ * {@link TareaEstudiante} se ejecuta en un hilo virtual o en un pool acotado.
+ *
+ * <p>Todos los estudiantes llegan a la vez, pero solo hay un número limitado de
+ * tareas creadas al mismo tiempo (la ventana en vuelo), de modo que la memoria
+ * no crece con el total. La espera de cada estudiante se mide desde su
+ * llegada, así que la ventana no altera los resultados.
+ */
+public class SimulacionLaboratorio {
+
+    enum Modo {
+        VIRTUAL,
+        POOL
+    }
+
+    /**
+     * Resultado de una simulación: makespan, utilización de los equipos y
+     * distribución de la espera hasta conseguir equipo.
+     */
+    static class Resultado {
+        final long makespanNanos;
+        final double utilizacion;
+        final HistogramaLatencias esperas;
+        final long picoHeapBytes;
+
+        Resultado(long makespanNanos, double utilizacion, HistogramaLatencias esperas, long picoHeapBytes) {
+            this.makespanNanos = makespanNanos;
+            this.utilizacion = utilizacion;
+            this.esperas = esperas;
+            this.picoHeapBytes = picoHeapBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("makespan=%.2f s | utilización=%.1f%% | espera media=%.2f ms p99=%.2f ms | "
+                    + "pico heap=%.0f MB", makespanNanos / 1e9, utilizacion * 100,
+                    esperas.getMedia() / 1e6, esperas.percentil(0.99) / 1e6, picoHeapBytes / 1e6);
+        }
+    }
+
+    /**
+     * Monitor de actividad que mide la espera y el tiempo de uso de un
+     * estudiante a partir de los avisos de ocupado/libre.
+     */
+    private static final class Medicion implements Consumer<Boolean> {
+        private final long llegadaNanos;
+        private final HistogramaLatencias esperas;
+        private final LongAdder ocupadoNanos;
+        private long inicioUso;
+
+        Medicion(long llegadaNanos, HistogramaLatencias esperas, LongAdder ocupadoNanos) {
+            this.llegadaNanos = llegadaNanos;
+            this.esperas = esperas;
+            this.ocupadoNanos = ocupadoNanos;
+        }
+
+        @Override
+        public void accept(Boolean ocupado) {
+            long ahora = System.nanoTime();
+            if (ocupado) {
+                inicioUso = ahora;
+                esperas.registrar(ahora - llegadaNanos);
+            } else {
+                ocupadoNanos.add(ahora - inicioUso);
+            }
+        }
+    }
+
+    private final Modo modo;
+    private final int hilosPool;
+    private final int enVuelo;
+
+    public SimulacionLaboratorio(Modo modo, int hilosPool, int enVuelo) {
+        this.modo = Objects.requireNonNull(modo, "modo");
+        if (hilosPool <= 0 || enVuelo <= 0) {
+            throw new IllegalArgumentException("hilosPool y enVuelo deben ser positivos");
+        }
+        this.hilosPool = hilosPool;
+        this.enVuelo = enVuelo;
+    }
+
+    Resultado simular(int estudiantes, AsignadorEquipos laboratorio, LongSupplier usoMillisSupplier)
+            throws InterruptedException {
+        HistogramaLatencias esperas = new HistogramaLatencias();
+        LongAdder ocupadoNanos = new LongAdder();
+        Semaphore ventana = new Semaphore(enVuelo);
+        ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        ExecutorService ejecutor = modo == Modo.VIRTUAL
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(hilosPool);
+        long llegada = System.nanoTime();
+        try {
+            for (int i = 0; i < estudiantes; i++) {
+                ventana.acquire();
+                TareaEstudiante tarea = new TareaEstudiante(laboratorio, usoMillisSupplier,
+                        new Medicion(llegada, esperas, ocupadoNanos));
+                ejecutor.execute(() -> {
+                    try {
+                        tarea.run();
+                    } finally {
+                        ventana.release();
+                    }
+                });
+            }
+        } finally {
+            ejecutor.shutdown();
+        }
+        ejecutor.awaitTermination(1, TimeUnit.DAYS);
+        long makespan = System.nanoTime() - llegada;
+        double utilizacion = (double) ocupadoNanos.sum() / ((double) laboratorio.getEquipos() * makespan);
+        return new Resultado(makespan, utilizacion, esperas, picoHeap());
+    }
+
+    private static long picoHeap() {
+        long pico = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pico += pool.getPeakUsage().getUsed();
+            }
+        }
+        return pico;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int estudiantes = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int equipos = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        long usoMinMs = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        long usoMaxMs = args.length > 3 ? Long.parseLong(args[3]) : 3;
+        LongSupplier uso = () -> ThreadLocalRandom.current().nextLong(usoMinMs, usoMaxMs + 1);
+
+        System.out.println("=== Simulación de laboratorio: " + estudiantes + " estudiantes, " + equipos
+                + " equipos, uso " + usoMinMs + "-" + usoMaxMs + " ms ===");
+        for (Modo modo : Modo.values()) {
+            SimulacionLaboratorio simulacion = new SimulacionLaboratorio(modo, equipos, 20_000);
+            Resultado resultado = simulacion.simular(estudiantes, new AsignadorEquipos(equipos), uso);
+            System.out.printf("%-8s %s%n", modo, resultado);
+        }
+    }
+}
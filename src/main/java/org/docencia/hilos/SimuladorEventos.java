@@ -0,0 +1,347 @@
+package org.docencia.hilos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Planificador de eventos discretos con reloj virtual. Implementa
+ * {@link ScheduledExecutorService}, así que el mismo código que en producción
+ * programa sobre el reloj de pared puede ejecutarse aquí sin esperar: el
+ * tiempo no pasa solo, sino que salta directamente al siguiente evento cuando
+ * se llama a {@link #avanzar(long, TimeUnit)}, {@link #ejecutarSiguiente()} o
+ * {@link #dormir(long)}.
+ *
+ * <p>No hay hilos propios: los eventos se ejecutan en el hilo que hace avanzar
+ * el reloj, en orden de vencimiento y, a igualdad, en orden de programación.
+ * Así una simulación da siempre el mismo resultado. Los relojes del código
+ * simulado se enlazan con {@link #nanoTime()}.
+ */
+public class SimuladorEventos extends AbstractExecutorService implements ScheduledExecutorService {
+
+    /**
+     * Evento programado. Los cancelados se quedan en la cola y se descartan
+     * al salir.
+     */
+    private final class Evento<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+        /** Orden de programación; lo asigna {@link #programar(Evento)} bajo el cerrojo. */
+        private long secuencia;
+        /** 0 si se ejecuta una vez, positivo para tasa fija, negativo para retardo fijo. */
+        private final long periodoNanos;
+        private long vencimientoNanos;
+
+        Evento(Callable<V> tarea, long vencimientoNanos) {
+            super(tarea);
+            this.vencimientoNanos = vencimientoNanos;
+            this.periodoNanos = 0;
+        }
+
+        Evento(Runnable tarea, long vencimientoNanos, long periodoNanos) {
+            super(tarea, null);
+            this.vencimientoNanos = vencimientoNanos;
+            this.periodoNanos = periodoNanos;
+        }
+
+        @Override
+        public void run() {
+            if (periodoNanos == 0) {
+                super.run();
+            } else if (runAndReset()) {
+                synchronized (SimuladorEventos.this) {
+                    vencimientoNanos = periodoNanos > 0 ? vencimientoNanos + periodoNanos : ahoraNanos - periodoNanos;
+                    if (!apagado) {
+                        cola.add(this);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(vencimientoNanos - nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed otro) {
+            if (otro == this) {
+                return 0;
+            }
+            if (otro instanceof SimuladorEventos.Evento<?> e) {
+                int c = Long.compare(vencimientoNanos, e.vencimientoNanos);
+                return c != 0 ? c : Long.compare(secuencia, e.secuencia);
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), otro.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return periodoNanos != 0;
+        }
+    }
+
+    private final PriorityQueue<Evento<?>> cola = new PriorityQueue<>();
+    private long secuencias;
+    private long ahoraNanos;
+    private long ejecutados;
+    private boolean apagado;
+
+    public SimuladorEventos() {
+        this(0);
+    }
+
+    public SimuladorEventos(long inicioNanos) {
+        this.ahoraNanos = inicioNanos;
+    }
+
+    /**
+     * Hora virtual en nanosegundos; sustituye a {@code System.nanoTime()} en
+     * el código simulado.
+     */
+    public synchronized long nanoTime() {
+        return ahoraNanos;
+    }
+
+    /**
+     * Ejecuta en orden todos los eventos que vencen dentro de {@code duracion}
+     * y deja el reloj al final del intervalo.
+     *
+     * @return número de eventos ejecutados
+     */
+    public long avanzar(long duracion, TimeUnit unidad) {
+        long objetivo;
+        synchronized (this) {
+            objetivo = ahoraNanos + unidad.toNanos(Math.max(0, duracion));
+        }
+        long antes = getEjecutados();
+        Evento<?> evento;
+        while ((evento = siguienteHasta(objetivo)) != null) {
+            evento.run();
+        }
+        synchronized (this) {
+            ahoraNanos = Math.max(ahoraNanos, objetivo);
+            return ejecutados - antes;
+        }
+    }
+
+    /**
+     * Salta al siguiente evento y lo ejecuta.
+     *
+     * @return {@code false} si no quedaba ninguno
+     */
+    public boolean ejecutarSiguiente() {
+        Evento<?> evento = siguienteHasta(Long.MAX_VALUE);
+        if (evento == null) {
+            return false;
+        }
+        evento.run();
+        return true;
+    }
+
+    /**
+     * Equivalente simulado de {@code Thread.sleep}: el tiempo avanza
+     * ejecutando los eventos que vencen mientras tanto. Respeta la interrupción
+     * igual que un {@code sleep} real.
+     */
+    public void dormir(long millis) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        avanzar(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized Evento<?> siguienteHasta(long objetivo) {
+        Evento<?> evento;
+        while ((evento = cola.peek()) != null && evento.vencimientoNanos <= objetivo) {
+            cola.poll();
+            if (!evento.isCancelled()) {
+                ahoraNanos = Math.max(ahoraNanos, evento.vencimientoNanos);
+                ejecutados++;
+                return evento;
+            }
+        }
+        return null;
+    }
+
+    private synchronized <V> Evento<V> programar(Evento<V> evento) {
+        if (apagado) {
+            throw new RejectedExecutionException("El simulador de eventos está apagado");
+        }
+        evento.secuencia = secuencias++;
+        cola.add(evento);
+        return evento;
+    }
+
+    private synchronized long vencimiento(long retardo, TimeUnit unidad) {
+        return ahoraNanos + unidad.toNanos(Math.max(0, retardo));
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        Objects.requireNonNull(command, "command");
+        return programar(new Evento<>(command, vencimiento(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        Objects.requireNonNull(callable, "callable");
+        return programar(new Evento<>(callable, vencimiento(delay, unit)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        Objects.requireNonNull(command, "command");
+        if (period <= 0) {
+            throw new IllegalArgumentException("period debe ser positivo");
+        }
+        return programar(new Evento<>(command, vencimiento(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        Objects.requireNonNull(command, "command");
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay debe ser positivo");
+        }
+        return programar(new Evento<>(command, vencimiento(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized long getEjecutados() {
+        return ejecutados;
+    }
+
+    public synchronized int getPendientes() {
+        return cola.size();
+    }
+
+    /**
+     * Deja de aceptar eventos. Como {@code ScheduledThreadPoolExecutor} por
+     * defecto, los eventos únicos ya programados siguen en la cola y se
+     * ejecutan cuando el reloj avance hasta ellos; los periódicos se cancelan.
+     */
+    @Override
+    public synchronized void shutdown() {
+        apagado = true;
+        cola.removeIf(evento -> {
+            if (evento.isPeriodic()) {
+                evento.cancel(false);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Deja de aceptar eventos y devuelve, sin ejecutarlos, todos los que
+     * quedaban pendientes.
+     */
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        apagado = true;
+        List<Runnable> pendientes = new ArrayList<>(cola.size());
+        for (Evento<?> evento : cola) {
+            if (!evento.isCancelled()) {
+                pendientes.add(evento);
+            }
+        }
+        cola.clear();
+        return pendientes;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return apagado;
+    }
+
+    /**
+     * Apagado y sin eventos por ejecutar; los cancelados no cuentan.
+     */
+    @Override
+    public synchronized boolean isTerminated() {
+        if (!apagado) {
+            return false;
+        }
+        for (Evento<?> evento : cola) {
+            if (!evento.isCancelled()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * El tiempo es virtual y no pasa solo, así que no hay nada que esperar:
+     * los eventos que quedan tras {@link #shutdown()} solo se ejecutan al
+     * hacer avanzar el reloj. Devuelve si ya ha terminado.
+     */
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return isTerminated();
+    }
+
+    /**
+     * Demostración: un {@link ColorSemaforo} durante años simulados y una
+     * ciudad de {@link ControladorCruces} durante días, dos veces, para
+     * comprobar que la secuencia de cambios es idéntica.
+     *
+     * <p>Uso: {@code SimuladorEventos [años] [cruces] [días]}
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int anos = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        int cruces = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int dias = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        SimuladorEventos simulador = new SimuladorEventos();
+        long[] cambios = new long[1];
+        ColorSemaforo semaforo = new ColorSemaforo(color -> cambios[0]++, LightColor.ROJO.getDurationMillis(),
+                LightColor.VERDE.getDurationMillis(), LightColor.AMBAR.getDurationMillis(), simulador::dormir);
+        simulador.schedule(semaforo::stopSimulation, 365L * anos, TimeUnit.DAYS);
+        long inicio = System.nanoTime();
+        semaforo.run();
+        Thread.interrupted();
+        System.out.printf("ColorSemaforo: %d año(s) simulados, %,d cambios de color en %.0f ms%n",
+                anos, cambios[0], (System.nanoTime() - inicio) / 1e6);
+
+        long primera = simularCiudad(cruces, dias);
+        long segunda = simularCiudad(cruces, dias);
+        System.out.println("Deterministas: " + (primera == segunda) + " (huella " + Long.toHexString(primera) + ")");
+    }
+
+    /**
+     * Simula la ciudad y devuelve una huella de la secuencia de cambios
+     * (instante virtual, cruce y color de cada uno).
+     */
+    private static long simularCiudad(int cruces, int dias) {
+        SimuladorEventos simulador = new SimuladorEventos();
+        ControladorCruces controlador = new ControladorCruces(List.of(simulador), simulador::nanoTime);
+        long[] huella = {1125899906842597L};
+        for (int i = 0; i < cruces; i++) {
+            int cruce = i;
+            controlador.agregar(color -> huella[0] = 31 * (31 * (31 * huella[0] + simulador.nanoTime()) + cruce)
+                            + color.ordinal(),
+                    LightColor.ROJO.getDurationMillis() + i % 5 * 500, LightColor.VERDE.getDurationMillis(),
+                    LightColor.AMBAR.getDurationMillis(), i * 37L % 7_000);
+        }
+        long inicio = System.nanoTime();
+        simulador.avanzar(dias, TimeUnit.DAYS);
+        controlador.shutdown();
+        System.out.printf("ControladorCruces: %d cruces, %d día(s) simulados, %,d cambios en %.0f ms "
+                        + "(retraso sobre el vencimiento: max %d ns)%n", cruces, dias, controlador.getCambios(),
+                (System.nanoTime() - inicio) / 1e6, controlador.getRetrasos().getMaximo());
+        return huella[0];
+    }
+}
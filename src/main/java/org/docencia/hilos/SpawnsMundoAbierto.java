@@ -1,9 +1,12 @@
 package org.docencia.hilos;
 
+import java.time.Instant;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /*
  * @author franciscorodalf
@@ -28,7 +31,7 @@ public class SpawnsMundoAbierto {
 
     static class SpawnTarea implements Runnable {
 
-        private final String[] zonas = {
+        static final String[] zonas = {
                 "Bosque Maldito",
                 "Ruinas Antiguas",
                 "Pantano Radiactivo",
@@ -36,7 +39,7 @@ public class SpawnsMundoAbierto {
                 "Templo Prohibido"
         };
 
-        private final String[] enemigos = {
+        static final String[] enemigos = {
                 "Slime Mutante",
                 "Esqueleto Guerrero",
                 "Mecha-Dragón",
@@ -44,29 +47,163 @@ public class SpawnsMundoAbierto {
                 "Lich Supremo"
         };
 
+        private static final RegistroAsincrono.Formato ZONA_LLENA = (destino, e) ->
+                marca(destino, e).append(zonas[(int) e.a]).append(" está llena, no aparece ")
+                        .append(enemigos[(int) e.b]);
+        private static final RegistroAsincrono.Formato SPAWN = (destino, e) ->
+                marca(destino, e).append("Spawn de ").append(enemigos[(int) (e.b >>> 32)]).append(" en ")
+                        .append(zonas[(int) e.a]).append(" (población: ").append((int) e.b).append(')');
+
+        /** Spawns por zona, en el mismo orden que {@link #zonas}. */
+        private static final LongAdder[] SPAWNS_ZONA = new LongAdder[zonas.length];
+        private static final LongAdder ZONA_LLENA_TOTAL = RegistroMetricas.global().contador("spawns.zona_llena");
+
+        static {
+            for (int z = 0; z < zonas.length; z++) {
+                SPAWNS_ZONA[z] = RegistroMetricas.global().contador("spawns.zona."
+                        + RegistroMetricas.normalizar(zonas[z]));
+            }
+        }
+
+        private final IndiceEntidades indice;
+        private final int limitePorZona;
+        private final RegistroAsincrono registro;
+        private final DiarioEventos diario;
+        private final int[] zonasDiario;
+        private final int[] enemigosDiario;
+        private final long pausaMillis;
+
+        SpawnTarea() {
+            this(new IndiceEntidades(1 << 16, zonas.length, enemigos.length, 1_000f, 32), 50,
+                    RegistroAsincrono.global());
+        }
+
+        SpawnTarea(IndiceEntidades indice, int limitePorZona, RegistroAsincrono registro) {
+            this(indice, limitePorZona, registro, 500);
+        }
+
+        /**
+         * @param registro    destino de los mensajes; si es {@code null} no se
+         *                    publica nada
+         * @param pausaMillis pausa tras una oleada con algún spawn; con 0 no
+         *                    se duerme
+         */
+        SpawnTarea(IndiceEntidades indice, int limitePorZona, RegistroAsincrono registro, long pausaMillis) {
+            this(indice, limitePorZona, registro, DiarioEventos.global(), pausaMillis);
+        }
+
+        /**
+         * @param diario diario binario donde anotar cada intento de spawn; si
+         *               es {@code null} no se anota
+         */
+        SpawnTarea(IndiceEntidades indice, int limitePorZona, RegistroAsincrono registro, DiarioEventos diario,
+                long pausaMillis) {
+            this.indice = indice;
+            this.limitePorZona = limitePorZona;
+            this.registro = registro;
+            this.diario = diario;
+            this.zonasDiario = new int[zonas.length];
+            this.enemigosDiario = new int[enemigos.length];
+            if (diario != null) {
+                for (int z = 0; z < zonas.length; z++) {
+                    zonasDiario[z] = diario.nombre(zonas[z]);
+                }
+                for (int e = 0; e < enemigos.length; e++) {
+                    enemigosDiario[e] = diario.nombre(enemigos[e]);
+                }
+            }
+            this.pausaMillis = pausaMillis;
+        }
+
+        private static StringBuilder marca(StringBuilder destino, RegistroAsincrono.Evento e) {
+            LocalTime hora = LocalTime.ofInstant(Instant.ofEpochMilli(e.marcaMillis), ZoneId.systemDefault());
+            return destino.append('[').append(hora).append("][").append(e.texto).append("] ");
+        }
+
+        IndiceEntidades getIndice() {
+            return indice;
+        }
+
         @Override
         public void run() {
-            String hilo = Thread.currentThread().getName();
-            String zona = zonas[(int) (Math.random() * zonas.length)];
-            String enemigo = enemigos[(int) (Math.random() * enemigos.length)];
+            generarOleada(1);
+        }
 
-            System.out.println("[" + LocalTime.now() + "][" + hilo + "] Spawn de " +
-                    enemigo + " en " + zona);
+        /**
+         * Genera {@code cantidad} enemigos de una vez. Una oleada agrupada
+         * cuesta el mismo trabajo fijo que un spawn suelto.
+         */
+        void generarOleada(int cantidad) {
+            boolean alguno = false;
+            for (int i = 0; i < cantidad; i++) {
+                alguno |= generarEnemigo() >= 0;
+            }
+            if (!alguno || pausaMillis <= 0) {
+                return;
+            }
 
             try {
-                Thread.sleep(500);
+                Thread.sleep(pausaMillis);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
+
+        /**
+         * Intenta un spawn en una zona al azar.
+         *
+         * @return id de la entidad creada, o {@code -1} si la zona estaba llena
+         */
+        int generarEnemigo() {
+            String hilo = registro != null ? Thread.currentThread().getName() : null;
+            int zonaId = (int) (Math.random() * zonas.length);
+            int enemigoId = (int) (Math.random() * enemigos.length);
+
+            float tamano = indice.getTamanoZona();
+            int id = indice.aparecer(zonaId, enemigoId,
+                    (float) (Math.random() * tamano), (float) (Math.random() * tamano), limitePorZona);
+            if (id < 0) {
+                ZONA_LLENA_TOTAL.increment();
+            } else {
+                SPAWNS_ZONA[zonaId].increment();
+            }
+            if (diario != null) {
+                if (id < 0) {
+                    diario.zonaLlena(zonasDiario[zonaId], enemigosDiario[enemigoId]);
+                } else {
+                    diario.spawn(zonasDiario[zonaId], enemigosDiario[enemigoId], id);
+                }
+            }
+            if (registro == null) {
+                return id;
+            }
+            if (id < 0) {
+                registro.publicar(ZONA_LLENA, hilo, null, zonaId, enemigoId);
+            } else {
+                registro.publicar(SPAWN, hilo, null, zonaId, (long) enemigoId << 32 | indice.poblacion(zonaId));
+            }
+            return id;
+        }
     }
 
     public static void main(String[] args) throws InterruptedException {
-        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        ScheduledExecutorService scheduler = args.length > 0 && "rueda".equalsIgnoreCase(args[0])
+                ? new RuedaTemporizadores(10, TimeUnit.MILLISECONDS, 2)
+                : Executors.newScheduledThreadPool(2);
 
         System.out.println("=== Iniciando Sistema de Spawns ===");
 
-        scheduler.scheduleAtFixedRate(new SpawnTarea(), 0, 2, TimeUnit.SECONDS);
+        PlanificadorSpawns.PoliticaRetraso politica = args.length > 1
+                ? PlanificadorSpawns.PoliticaRetraso.valueOf(args[1])
+                : PlanificadorSpawns.PoliticaRetraso.RECUPERAR;
+        PlanificadorSpawns planificador = new PlanificadorSpawns(scheduler, politica, 3);
+        SpawnTarea spawns = new SpawnTarea();
+        for (int z = 0; z < SpawnTarea.zonas.length; z++) {
+            int zona = z;
+            RegistroMetricas.global().medidor("spawns.poblacion." + RegistroMetricas.normalizar(SpawnTarea.zonas[z]),
+                    () -> spawns.getIndice().poblacion(zona));
+        }
+        planificador.programar(spawns::generarOleada, 0, 2, TimeUnit.SECONDS);
 
         Thread.sleep(12000);
 
@@ -76,6 +213,11 @@ public class SpawnsMundoAbierto {
             System.out.println("Forzando parada de spawns.");
             scheduler.shutdownNow();
         }
+        RegistroAsincrono.global().vaciar();
+        for (int z = 0; z < SpawnTarea.zonas.length; z++) {
+            System.out.println(SpawnTarea.zonas[z] + ": " + spawns.getIndice().poblacion(z) + " enemigos vivos");
+        }
+        System.out.println("Planificador: " + planificador);
         System.out.println("Servidor de mundo abierto detenido.");
     }
 }
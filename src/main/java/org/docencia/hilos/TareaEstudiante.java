@@ -0,0 +1,72 @@
+package org.docencia.hilos;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Comportamiento de un estudiante en el laboratorio, separado de
+ * {@link Thread}: reservar un equipo, usarlo durante un tiempo y liberarlo.
+ * Como es un simple {@link Runnable}, se puede ejecutar en un hilo propio
+ * (como hace {@link Estudiante}), en un pool acotado o en un hilo virtual.
+ */
+public class TareaEstudiante implements Runnable {
+
+    private static final IntConsumer SIN_LOG = equipoId -> {};
+
+    private final AsignadorEquipos laboratorio;
+    private final LongSupplier usoMillisSupplier;
+    private final MonitorLaboratorio monitor;
+    private final IntConsumer alEmpezar;
+    private final IntConsumer alTerminar;
+
+    public TareaEstudiante(AsignadorEquipos laboratorio, LongSupplier usoMillisSupplier,
+            Consumer<Boolean> activityMonitor) {
+        this(laboratorio, usoMillisSupplier, MonitorLaboratorio.desdeActividad(activityMonitor), SIN_LOG, SIN_LOG);
+    }
+
+    public TareaEstudiante(AsignadorEquipos laboratorio, LongSupplier usoMillisSupplier,
+            MonitorLaboratorio monitor) {
+        this(laboratorio, usoMillisSupplier, monitor, SIN_LOG, SIN_LOG);
+    }
+
+    TareaEstudiante(
+        AsignadorEquipos laboratorio,
+        LongSupplier usoMillisSupplier,
+        MonitorLaboratorio monitor,
+        IntConsumer alEmpezar,
+        IntConsumer alTerminar
+    ) {
+        this.laboratorio = Objects.requireNonNull(laboratorio, "laboratorio");
+        this.usoMillisSupplier = Objects.requireNonNull(usoMillisSupplier, "usoMillisSupplier");
+        this.monitor = Objects.requireNonNull(monitor, "monitor");
+        this.alEmpezar = Objects.requireNonNull(alEmpezar, "alEmpezar");
+        this.alTerminar = Objects.requireNonNull(alTerminar, "alTerminar");
+    }
+
+    @Override
+    public void run() {
+        int equipoId = -1;
+        long inicioUso = 0;
+        try {
+            long inicioEspera = System.nanoTime();
+            equipoId = laboratorio.adquirir();
+            inicioUso = System.nanoTime();
+            monitor.equipoAdquirido(equipoId, inicioUso - inicioEspera);
+            alEmpezar.accept(equipoId);
+            long uso = Math.max(0, usoMillisSupplier.getAsLong());
+            if (uso > 0) {
+                Thread.sleep(uso);
+            }
+            alTerminar.accept(equipoId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (equipoId > 0) {
+                monitor.equipoLiberado(equipoId, System.nanoTime() - inicioUso);
+                laboratorio.liberar(equipoId);
+            }
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package org.docencia.hilos;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Torneo sin cabeza: millones de carreras Goku contra Vegeta para estimar la
+ * probabilidad de victoria de cada uno según su distribución de pasos.
+ *
+ * <p>Cada carrera sigue las reglas de {@link SaiyanRaceSemaphore} (y de
+ * {@link CarreraSaiyan} con {@link CarreraSaiyan.Turnos#ROUND_ROBIN}): Goku
+ * sale primero, los turnos alternan estrictamente, cada paso avanza al menos
+ * un metro y gana el primero que llega a la meta. Como el turno solo pasa de
+ * uno a otro, no hace falta ningún hilo ni relevo: la carrera es un bucle
+ * sin mensajes ni pausas.
+ *
+ * <p>Las carreras se reparten en un {@link ForkJoinPool}. Cada lote recibe
+ * su propio {@link SplittableRandom} partido del de su padre y el árbol de
+ * lotes solo depende del número de carreras, así que con la misma semilla el
+ * resultado es el mismo con cualquier número de hilos.
+ */
+public class TorneoSaiyan {
+
+    /** Carreras por lote indivisible. */
+    private static final int LOTE = 1 << 14;
+
+    /**
+     * Distribución discreta de la longitud de un paso.
+     */
+    static final class Distribucion {
+        private final int[] valores;
+        /** Pesos acumulados; {@code null} si todos los valores pesan lo mismo. */
+        private final long[] acumulados;
+        private final String descripcion;
+
+        private Distribucion(int[] valores, long[] acumulados, String descripcion) {
+            this.valores = valores;
+            this.acumulados = acumulados;
+            this.descripcion = descripcion;
+        }
+
+        /** Entero uniforme entre {@code min} y {@code max}, ambos incluidos. */
+        static Distribucion uniforme(int min, int max) {
+            if (min > max) {
+                throw new IllegalArgumentException("min no puede ser mayor que max");
+            }
+            int[] valores = new int[max - min + 1];
+            for (int i = 0; i < valores.length; i++) {
+                valores[i] = min + i;
+            }
+            return new Distribucion(valores, null, min + "-" + max);
+        }
+
+        /**
+         * Lee una distribución: {@code "1-10"} (uniforme), {@code "5"}
+         * (constante) o {@code "2:1,5:3,9:1"} (valor:peso).
+         */
+        static Distribucion parsear(String texto) {
+            String t = Objects.requireNonNull(texto, "texto").trim();
+            if (t.indexOf(':') < 0) {
+                int guion = t.indexOf('-', 1);
+                return guion < 0
+                        ? uniforme(Integer.parseInt(t), Integer.parseInt(t))
+                        : uniforme(Integer.parseInt(t.substring(0, guion)), Integer.parseInt(t.substring(guion + 1)));
+            }
+            String[] partes = t.split(",");
+            int[] valores = new int[partes.length];
+            long[] acumulados = new long[partes.length];
+            long total = 0;
+            for (int i = 0; i < partes.length; i++) {
+                String[] par = partes[i].split(":");
+                valores[i] = Integer.parseInt(par[0].trim());
+                long peso = Long.parseLong(par[1].trim());
+                if (peso <= 0) {
+                    throw new IllegalArgumentException("Los pesos deben ser positivos: " + partes[i]);
+                }
+                total += peso;
+                acumulados[i] = total;
+            }
+            return new Distribucion(valores, acumulados, t);
+        }
+
+        int muestra(SplittableRandom aleatorio) {
+            if (acumulados == null) {
+                return valores[aleatorio.nextInt(valores.length)];
+            }
+            long r = aleatorio.nextLong(acumulados[acumulados.length - 1]);
+            int i = Arrays.binarySearch(acumulados, r + 1);
+            return valores[i >= 0 ? i : -i - 1];
+        }
+
+        @Override
+        public String toString() {
+            return descripcion;
+        }
+    }
+
+    /**
+     * Resultado agregado de un conjunto de carreras. Los lotes se combinan
+     * con {@link #sumar(Resumen)}.
+     */
+    static final class Resumen {
+        private final long[] victorias = new long[2];
+        /** Carreras terminadas en {@code i} pasos, contando los de ambos. */
+        private final long[] longitudes;
+        private long carreras;
+
+        Resumen(int meta) {
+            // Con pasos de al menos un metro nadie necesita más de meta pasos.
+            this.longitudes = new long[2 * meta + 1];
+        }
+
+        void registrar(int ganador, int pasos) {
+            victorias[ganador]++;
+            longitudes[pasos]++;
+            carreras++;
+        }
+
+        Resumen sumar(Resumen otro) {
+            for (int i = 0; i < victorias.length; i++) {
+                victorias[i] += otro.victorias[i];
+            }
+            for (int i = 0; i < longitudes.length; i++) {
+                longitudes[i] += otro.longitudes[i];
+            }
+            carreras += otro.carreras;
+            return this;
+        }
+
+        long getCarreras() {
+            return carreras;
+        }
+
+        long getVictorias(int corredor) {
+            return victorias[corredor];
+        }
+
+        double probabilidad(int corredor) {
+            return carreras == 0 ? 0 : (double) victorias[corredor] / carreras;
+        }
+
+        /**
+         * Intervalo de Wilson para la probabilidad de victoria; se comporta
+         * bien incluso con probabilidades cercanas a 0 o 1.
+         *
+         * @param z cuantil normal, 1.96 para el 95 %
+         * @return {@code {inferior, superior}}
+         */
+        double[] intervalo(int corredor, double z) {
+            if (carreras == 0) {
+                return new double[] {0, 1};
+            }
+            double p = probabilidad(corredor);
+            double n = carreras;
+            double z2 = z * z;
+            double centro = (p + z2 / (2 * n)) / (1 + z2 / n);
+            double radio = z * Math.sqrt(p * (1 - p) / n + z2 / (4 * n * n)) / (1 + z2 / n);
+            return new double[] {Math.max(0, centro - radio), Math.min(1, centro + radio)};
+        }
+
+        long[] getLongitudes() {
+            return longitudes.clone();
+        }
+
+        double mediaPasos() {
+            double suma = 0;
+            for (int i = 0; i < longitudes.length; i++) {
+                suma += (double) i * longitudes[i];
+            }
+            return carreras == 0 ? 0 : suma / carreras;
+        }
+
+        double desviacionPasos() {
+            double media = mediaPasos();
+            double suma = 0;
+            for (int i = 0; i < longitudes.length; i++) {
+                suma += (i - media) * (i - media) * longitudes[i];
+            }
+            return carreras == 0 ? 0 : Math.sqrt(suma / carreras);
+        }
+
+        /** Número de pasos por debajo del cual queda la fracción {@code q} de carreras. */
+        int percentilPasos(double q) {
+            long objetivo = (long) Math.ceil(q * carreras);
+            long acumulado = 0;
+            for (int i = 0; i < longitudes.length; i++) {
+                acumulado += longitudes[i];
+                if (acumulado >= Math.max(1, objetivo)) {
+                    return i;
+                }
+            }
+            return longitudes.length - 1;
+        }
+    }
+
+    private final Distribucion goku;
+    private final Distribucion vegeta;
+    private final int meta;
+
+    TorneoSaiyan(Distribucion goku, Distribucion vegeta, int meta) {
+        if (meta <= 0) {
+            throw new IllegalArgumentException("meta debe ser positiva");
+        }
+        this.goku = Objects.requireNonNull(goku, "goku");
+        this.vegeta = Objects.requireNonNull(vegeta, "vegeta");
+        this.meta = meta;
+    }
+
+    /**
+     * Corre una carrera.
+     *
+     * @return ganador (0 Goku, 1 Vegeta) en el bit bajo y el número total de
+     *         pasos en el resto
+     */
+    int correr(SplittableRandom aleatorio) {
+        int dGoku = 0;
+        int dVegeta = 0;
+        int pasos = 0;
+        while (true) {
+            dGoku += Math.max(1, goku.muestra(aleatorio));
+            pasos++;
+            if (dGoku >= meta) {
+                return pasos << 1;
+            }
+            dVegeta += Math.max(1, vegeta.muestra(aleatorio));
+            pasos++;
+            if (dVegeta >= meta) {
+                return pasos << 1 | 1;
+            }
+        }
+    }
+
+    /**
+     * Corre {@code carreras} carreras en {@code pool}.
+     */
+    Resumen jugar(long carreras, long semilla, ForkJoinPool pool) {
+        return pool.invoke(new Lote(carreras, new SplittableRandom(semilla)));
+    }
+
+    private final class Lote extends RecursiveTask<Resumen> {
+        private final long carreras;
+        private final SplittableRandom aleatorio;
+
+        Lote(long carreras, SplittableRandom aleatorio) {
+            this.carreras = carreras;
+            this.aleatorio = aleatorio;
+        }
+
+        @Override
+        protected Resumen compute() {
+            if (carreras <= LOTE) {
+                Resumen resumen = new Resumen(meta);
+                for (long i = 0; i < carreras; i++) {
+                    int r = correr(aleatorio);
+                    resumen.registrar(r & 1, r >>> 1);
+                }
+                return resumen;
+            }
+            long mitad = carreras / 2;
+            Lote izquierda = new Lote(mitad, aleatorio.split());
+            Lote derecha = new Lote(carreras - mitad, aleatorio);
+            izquierda.fork();
+            Resumen resumen = derecha.compute();
+            return resumen.sumar(izquierda.join());
+        }
+    }
+
+    /**
+     * Comprueba la equivalencia con el motor de carreras con turnos: corre
+     * las mismas carreras aquí y en {@link CarreraSaiyan} con la misma
+     * secuencia aleatoria.
+     *
+     * @return carreras con el mismo ganador y el mismo número de pasos
+     */
+    int verificar(int carreras, long semilla) throws Exception {
+        int coincidencias = 0;
+        SplittableRandom semillas = new SplittableRandom(semilla);
+        for (int i = 0; i < carreras; i++) {
+            long s = semillas.nextLong();
+            int rapido = correr(new SplittableRandom(s));
+            SplittableRandom aleatorio = new SplittableRandom(s);
+            int[] turno = {0};
+            // Con turno estricto las peticiones de paso alternan Goku, Vegeta, ...
+            CarreraSaiyan carrera = new CarreraSaiyan(List.of("Goku", "Vegeta"),
+                    CarreraSaiyan.Turnos.ROUND_ROBIN, meta,
+                    () -> (turno[0]++ & 1) == 0 ? goku.muestra(aleatorio) : vegeta.muestra(aleatorio), () -> 0, null);
+            CarreraSaiyan.Resultado resultado = carrera.iniciar(Runnable::run).get();
+            if (resultado.ganador == (rapido & 1) && resultado.pasos == rapido >>> 1) {
+                coincidencias++;
+            }
+        }
+        return coincidencias;
+    }
+
+    /**
+     * Uso: {@code TorneoSaiyan [carreras] [pasosGoku] [pasosVegeta] [meta] [hilos] [semilla]}
+     *
+     * <p>Por ejemplo {@code TorneoSaiyan 10000000 1-10 2:1,6:2,10:1}.
+     */
+    public static void main(String[] args) throws Exception {
+        long carreras = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+        Distribucion goku = Distribucion.parsear(args.length > 1 ? args[1] : "1-10");
+        Distribucion vegeta = Distribucion.parsear(args.length > 2 ? args[2] : "1-10");
+        int meta = args.length > 3 ? Integer.parseInt(args[3]) : CarreraSaiyan.META;
+        int hilos = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        long semilla = args.length > 5 ? Long.parseLong(args[5]) : 42;
+
+        TorneoSaiyan torneo = new TorneoSaiyan(goku, vegeta, meta);
+        int comprobadas = 1_000;
+        System.out.println("Equivalencia con CarreraSaiyan: " + torneo.verificar(comprobadas, semilla) + "/"
+                + comprobadas + " carreras idénticas");
+
+        ForkJoinPool pool = new ForkJoinPool(hilos);
+        try {
+            torneo.jugar(Math.min(carreras, 1_000_000), semilla, pool);
+            long inicio = System.nanoTime();
+            Resumen resumen = torneo.jugar(carreras, semilla, pool);
+            long nanos = System.nanoTime() - inicio;
+
+            System.out.printf("=== Torneo: %,d carreras, meta %d, Goku %s contra Vegeta %s, %d hilos ===%n",
+                    resumen.getCarreras(), meta, goku, vegeta, hilos);
+            String[] nombres = {"Goku", "Vegeta"};
+            for (int i = 0; i < nombres.length; i++) {
+                double[] ic = resumen.intervalo(i, 1.96);
+                System.out.printf("%-6s gana el %.4f %% (IC 95 %%: %.4f - %.4f %%)%n", nombres[i],
+                        100 * resumen.probabilidad(i), 100 * ic[0], 100 * ic[1]);
+            }
+            System.out.printf("Pasos por carrera: media %.2f, desviación %.2f, min %d, p50 %d, p90 %d, p99 %d, "
+                            + "max %d%n", resumen.mediaPasos(), resumen.desviacionPasos(), resumen.percentilPasos(0),
+                    resumen.percentilPasos(0.50), resumen.percentilPasos(0.90), resumen.percentilPasos(0.99),
+                    resumen.percentilPasos(1.0));
+            imprimirHistograma(resumen);
+            System.out.printf("Tiempo: %.0f ms (%,.0f carreras/s)%n", nanos / 1e6,
+                    resumen.getCarreras() / (nanos / 1e9));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void imprimirHistograma(Resumen resumen) {
+        long[] longitudes = resumen.getLongitudes();
+        long maximo = Arrays.stream(longitudes).max().orElse(0);
+        int desde = resumen.percentilPasos(0.0005);
+        int hasta = resumen.percentilPasos(0.9995);
+        for (int pasos = desde; pasos <= hasta; pasos++) {
+            int ancho = maximo == 0 ? 0 : (int) (50 * longitudes[pasos] / maximo);
+            System.out.printf("%4d | %-50s %6.3f %%%n", pasos, "#".repeat(ancho),
+                    100.0 * longitudes[pasos] / resumen.getCarreras());
+        }
+    }
+}
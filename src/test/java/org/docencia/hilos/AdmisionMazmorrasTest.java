@@ -0,0 +1,145 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+@Timeout(10)
+class AdmisionMazmorrasTest {
+
+    private static final long ESPERA_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final AtomicLong reloj = new AtomicLong();
+    private final CountDownLatch ocupado = new CountDownLatch(1);
+    private final CountDownLatch liberar = new CountDownLatch(1);
+    private final List<String> atendidos = new CopyOnWriteArrayList<>();
+
+    private ServidorMazmorras.PeticionMazmorra peticion(String jugador) {
+        return new ServidorMazmorras.PeticionMazmorra(jugador, "Moria", mazmorra -> {
+            atendidos.add(jugador + "@" + Thread.currentThread().getName());
+            return new ServidorMazmorras.InstanciaMazmorra(mazmorra, 0);
+        }, null);
+    }
+
+    /**
+     * Un único GM bot ocupado con "Link" y la cola de dos llena con "Zelda" y
+     * "Geralt".
+     */
+    private AdmisionMazmorras llenar(AdmisionMazmorras.PoliticaSobrecarga politica) throws InterruptedException {
+        AdmisionMazmorras admision = new AdmisionMazmorras(1, 2, politica, reloj::get);
+        admision.enviar(new ServidorMazmorras.PeticionMazmorra("Link", "Moria", mazmorra -> {
+            ocupado.countDown();
+            liberar.await();
+            return new ServidorMazmorras.InstanciaMazmorra(mazmorra, 0);
+        }, null));
+        assertTrue(ocupado.await(5, TimeUnit.SECONDS));
+        admision.enviar(peticion("Zelda"));
+        admision.enviar(peticion("Geralt"));
+
+        AdmisionMazmorras.MetricasMazmorra m = admision.getMetricas().get("Moria");
+        assertEquals(2, admision.getProfundidadCola());
+        assertEquals(2, m.enCola.get());
+        assertEquals(3, m.admitidas.sum());
+        return admision;
+    }
+
+    /** Las peticiones encoladas esperan {@link #ESPERA_NANOS} hasta que el bot queda libre. */
+    private AdmisionMazmorras.MetricasMazmorra drenar(AdmisionMazmorras admision) throws InterruptedException {
+        reloj.addAndGet(ESPERA_NANOS);
+        liberar.countDown();
+        admision.shutdown();
+        assertTrue(admision.awaitTermination(5, TimeUnit.SECONDS));
+        AdmisionMazmorras.MetricasMazmorra m = admision.getMetricas().get("Moria");
+        assertEquals(0, admision.getProfundidadCola());
+        assertEquals(0, m.enCola.get());
+        assertEquals(5.0, m.esperaMaximaNanos.get() / 1e6, 1e-9);
+        return m;
+    }
+
+    @Test
+    void rechazarLanzaYCuentaElRechazo() throws Exception {
+        AdmisionMazmorras admision = llenar(AdmisionMazmorras.PoliticaSobrecarga.RECHAZAR);
+
+        RejectedExecutionException e = assertThrows(RejectedExecutionException.class,
+                () -> admision.enviar(peticion("Yennefer")));
+        assertTrue(e.getMessage().contains("Moria"), e.getMessage());
+        AdmisionMazmorras.MetricasMazmorra m = admision.getMetricas().get("Moria");
+        assertEquals(2, m.enCola.get());
+        assertEquals(1, m.rechazadas.sum());
+        assertEquals(3, m.admitidas.sum());
+
+        drenar(admision);
+        assertEquals(3, m.atendidas.sum());
+        assertEquals(10.0 / 3, m.esperaMediaMillis(), 1e-9);
+        assertEquals(0, m.descartadas.sum());
+        assertEquals(0, m.ejecutadasEnLlamante.sum());
+        assertEquals(2, atendidos.size());
+    }
+
+    @Test
+    void ejecutarEnLlamanteAtiendeEnElHiloQueEnvia() throws Exception {
+        AdmisionMazmorras admision = llenar(AdmisionMazmorras.PoliticaSobrecarga.EJECUTAR_EN_LLAMANTE);
+
+        admision.enviar(peticion("Yennefer"));
+        AdmisionMazmorras.MetricasMazmorra m = admision.getMetricas().get("Moria");
+        assertEquals(List.of("Yennefer@" + Thread.currentThread().getName()), atendidos);
+        assertEquals(1, m.ejecutadasEnLlamante.sum());
+        assertEquals(2, m.enCola.get());
+        assertEquals(4, m.admitidas.sum());
+
+        drenar(admision);
+        assertEquals(4, m.atendidas.sum());
+        assertEquals(10.0 / 4, m.esperaMediaMillis(), 1e-9);
+        assertEquals(0, m.rechazadas.sum());
+        assertEquals(0, m.descartadas.sum());
+    }
+
+    @Test
+    void descartarAntiguaSacaLaMasViejaYLaAvisa() throws Exception {
+        LongAdder interrumpidas = RegistroMetricas.global().contador("mazmorras.peticiones.interrumpidas");
+        long antes = interrumpidas.sum();
+        AdmisionMazmorras admision = llenar(AdmisionMazmorras.PoliticaSobrecarga.DESCARTAR_ANTIGUA);
+
+        admision.enviar(peticion("Yennefer"));
+        AdmisionMazmorras.MetricasMazmorra m = admision.getMetricas().get("Moria");
+        assertEquals(1, m.descartadas.sum());
+        assertEquals(1, interrumpidas.sum() - antes, "Zelda recibe su aviso");
+        assertEquals(2, admision.getProfundidadCola());
+        assertEquals(2, m.enCola.get());
+        assertEquals(4, m.admitidas.sum());
+
+        drenar(admision);
+        assertEquals(3, m.atendidas.sum());
+        assertEquals(2, atendidos.size());
+        assertTrue(atendidos.stream().noneMatch(a -> a.startsWith("Zelda")), atendidos.toString());
+        assertEquals(0, m.rechazadas.sum());
+        assertEquals(0, m.ejecutadasEnLlamante.sum());
+    }
+
+    @Test
+    void trasElApagadoSeRechazaConCualquierPolitica() throws Exception {
+        for (AdmisionMazmorras.PoliticaSobrecarga politica : AdmisionMazmorras.PoliticaSobrecarga.values()) {
+            AdmisionMazmorras admision = new AdmisionMazmorras(1, 2, politica, reloj::get);
+            admision.shutdown();
+
+            assertThrows(RejectedExecutionException.class, () -> admision.enviar(peticion("Frodo")),
+                    politica.toString());
+            AdmisionMazmorras.MetricasMazmorra m = admision.getMetricas().get("Moria");
+            assertEquals(1, m.rechazadas.sum(), politica.toString());
+            assertEquals(0, m.enCola.get(), politica.toString());
+            assertEquals(0, m.admitidas.sum(), politica.toString());
+        }
+        assertTrue(atendidos.isEmpty());
+    }
+}
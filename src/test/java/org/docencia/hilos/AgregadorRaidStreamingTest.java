@@ -0,0 +1,96 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AgregadorRaidStreamingTest {
+
+    private static final CalculadoraDanoCritico.Ataque[] ATAQUES = {
+            new CalculadoraDanoCritico.Ataque("Guerrero", 150, 0.0, 2.0),
+            new CalculadoraDanoCritico.Ataque("Paladín", 130, 0.0, 1.8),
+    };
+
+    /** La tarea real, sin pausa, sin mensajes y sin diario. */
+    private static final Function<CalculadoraDanoCritico.Ataque, Callable<CalculadoraDanoCritico.Golpe>> TAREAS =
+            ataque -> new CalculadoraDanoCritico.TareaCalcularDano(ataque, null, null, () -> 0)::calcularGolpe;
+
+    private ExecutorService pool;
+    private final AtomicLong reloj = new AtomicLong(1_000);
+
+    @BeforeEach
+    void arrancar() {
+        pool = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void parar() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void antesDeCalcularElResumenEstaVacio() {
+        AgregadorRaidStreaming agregador = new AgregadorRaidStreaming(pool, reloj::get, golpe -> {}, TAREAS, null);
+
+        AgregadorRaidStreaming.ResumenRaid resumen = agregador.resumen();
+
+        assertEquals(0, resumen.total);
+        assertEquals(0.0, resumen.dps);
+        assertFalse(resumen.completo);
+        assertTrue(resumen.porAtacante.isEmpty());
+    }
+
+    @Test
+    void elResumenNoCambiaTrasTerminarNiConOtraRaid() throws InterruptedException {
+        AgregadorRaidStreaming agregador = new AgregadorRaidStreaming(pool, () -> reloj.addAndGet(1_000_000),
+                golpe -> {}, TAREAS, null);
+
+        AgregadorRaidStreaming.ResumenRaid primero = agregador.calcular(ATAQUES, 1, TimeUnit.DAYS);
+        assertTrue(primero.completo);
+        assertEquals(280, primero.total);
+        assertEquals(1, primero.porAtacante.get("Guerrero").golpes());
+
+        double dps = agregador.resumen().dps;
+        reloj.addAndGet(TimeUnit.HOURS.toNanos(1));
+        assertEquals(dps, agregador.resumen().dps, "el DPS no debe decaer cuando la raid ha terminado");
+
+        AgregadorRaidStreaming.ResumenRaid segundo = agregador.calcular(ATAQUES, 1, TimeUnit.DAYS);
+        assertEquals(280, segundo.total, "cada cálculo empieza de cero");
+        assertEquals(2, segundo.golpes);
+        assertEquals(1, primero.porAtacante.get("Guerrero").golpes(), "el primer resumen es una copia");
+    }
+
+    @Test
+    void losAtaquesFallidosSeCuentanYSePublican() throws Exception {
+        StringWriter salida = new StringWriter();
+        AgregadorRaidStreaming.ResumenRaid resumen;
+        try (RegistroAsincrono registro = new RegistroAsincrono(16, RegistroAsincrono.PoliticaLleno.BLOQUEAR,
+                salida)) {
+            AgregadorRaidStreaming agregador = new AgregadorRaidStreaming(pool, () -> reloj.addAndGet(1_000_000),
+                    golpe -> {}, ataque -> "Paladín".equals(ataque.atacante)
+                            ? () -> { throw new IllegalStateException("sin maná"); }
+                            : TAREAS.apply(ataque), registro);
+
+            resumen = agregador.calcular(ATAQUES, 1, TimeUnit.DAYS);
+        }
+
+        assertTrue(resumen.completo);
+        assertEquals(1, resumen.fallidos);
+        assertEquals(1, resumen.golpes);
+        assertEquals(150, resumen.total);
+        assertTrue(salida.toString().contains("Error calculando daño para Paladín"), salida.toString());
+        assertTrue(salida.toString().contains("sin maná"), salida.toString());
+    }
+}
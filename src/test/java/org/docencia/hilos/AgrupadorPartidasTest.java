@@ -0,0 +1,146 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+class AgrupadorPartidasTest {
+
+    private final SimuladorEventos simulador = new SimuladorEventos();
+    private final List<String> preparadas = new ArrayList<>();
+
+    private ServidorMazmorras.InstanciaMazmorra preparar(String mazmorra) {
+        preparadas.add(mazmorra);
+        return new ServidorMazmorras.InstanciaMazmorra(mazmorra, simulador.nanoTime());
+    }
+
+    /** El simulador hace de GM bots, de temporizador y de reloj. */
+    private AgrupadorPartidas agrupador(long ventanaMs, int tamanoMaximo) {
+        return new AgrupadorPartidas(simulador, simulador, this::preparar,
+                TimeUnit.MILLISECONDS.toNanos(ventanaMs), tamanoMaximo, simulador::nanoTime);
+    }
+
+    private static ServidorMazmorras.PeticionMazmorra peticion(String jugador, String mazmorra,
+            RegistroAsincrono registro) {
+        return new ServidorMazmorras.PeticionMazmorra(jugador, mazmorra, m -> {
+            throw new AssertionError("la instancia la prepara el agrupador");
+        }, registro);
+    }
+
+    @Test
+    void elGrupoSeCierraAlVencerLaVentana() {
+        AgrupadorPartidas agrupador = agrupador(100, 4);
+
+        agrupador.enviar(peticion("Link", "Moria", null));
+        simulador.avanzar(50, TimeUnit.MILLISECONDS);
+        agrupador.enviar(peticion("Zelda", "Moria", null));
+        simulador.avanzar(49, TimeUnit.MILLISECONDS);
+        assertTrue(preparadas.isEmpty(), "la ventana sigue abierta");
+
+        simulador.avanzar(1, TimeUnit.MILLISECONDS);
+        assertEquals(List.of("Moria"), preparadas);
+        assertArrayEquals(new long[] {0, 0, 1, 0, 0}, agrupador.getDistribucionTamanos());
+        assertEquals(0.5, agrupador.getPreparacionesPorJugador());
+        assertEquals(75.0, agrupador.getEsperaVentanaMediaMillis(), 1e-9);
+        assertEquals(100.0, agrupador.getEsperaVentanaMaximaMillis(), 1e-9);
+    }
+
+    @Test
+    void elGrupoSeCierraAlLlegarAlTamanoMaximo() {
+        AgrupadorPartidas agrupador = agrupador(1_000, 3);
+
+        for (int i = 0; i < 7; i++) {
+            agrupador.enviar(peticion("Jugador" + i, "Moria", null));
+        }
+        simulador.avanzar(0, TimeUnit.MILLISECONDS);
+        assertEquals(2, preparadas.size(), "dos partidas llenas sin esperar a la ventana");
+        assertEquals(0.0, agrupador.getEsperaVentanaMaximaMillis());
+
+        simulador.avanzar(1, TimeUnit.SECONDS);
+        assertEquals(3, preparadas.size(), "el rezagado sale al vencer la ventana");
+        assertArrayEquals(new long[] {0, 1, 0, 2}, agrupador.getDistribucionTamanos());
+        assertEquals(3.0 / 7, agrupador.getPreparacionesPorJugador(), 1e-9);
+    }
+
+    @Test
+    void laDistribucionSeparaMazmorrasYVentanas() {
+        AgrupadorPartidas agrupador = agrupador(100, 4);
+        String[] llegadas = {"Moria", "Torre Oscura", "Moria", "Moria", "Torre Oscura"};
+
+        for (String mazmorra : llegadas) {
+            agrupador.enviar(peticion("Jugador", mazmorra, null));
+            simulador.avanzar(10, TimeUnit.MILLISECONDS);
+        }
+        simulador.avanzar(100, TimeUnit.MILLISECONDS);
+        agrupador.enviar(peticion("Tarde", "Moria", null));
+        agrupador.vaciar();
+        simulador.avanzar(1, TimeUnit.SECONDS);
+
+        assertEquals(List.of("Moria", "Torre Oscura", "Moria"), preparadas);
+        assertArrayEquals(new long[] {0, 1, 1, 1, 0}, agrupador.getDistribucionTamanos());
+
+        AgrupadorPartidas sinVentana = agrupador(0, 4);
+        for (String mazmorra : llegadas) {
+            sinVentana.enviar(peticion("Jugador", mazmorra, null));
+        }
+        assertArrayEquals(new long[] {0, 5, 0, 0, 0}, sinVentana.getDistribucionTamanos());
+    }
+
+    @Test
+    void unaPreparacionInterrumpidaAvisaATodoElGrupo() throws Exception {
+        LongAdder interrumpidas = RegistroMetricas.global().contador("mazmorras.peticiones.interrumpidas");
+        long antes = interrumpidas.sum();
+        StringWriter salida = new StringWriter();
+        AgrupadorPartidas agrupador = new AgrupadorPartidas(simulador, simulador, mazmorra -> {
+            throw new InterruptedException();
+        }, TimeUnit.MILLISECONDS.toNanos(100), 4, simulador::nanoTime);
+
+        try (RegistroAsincrono registro = new RegistroAsincrono(16, RegistroAsincrono.PoliticaLleno.BLOQUEAR,
+                salida)) {
+            agrupador.enviar(peticion("Link", "Moria", registro));
+            agrupador.enviar(peticion("Zelda", "Moria", registro));
+            simulador.avanzar(100, TimeUnit.MILLISECONDS);
+            assertTrue(Thread.interrupted(), "se conserva la interrupción");
+        }
+
+        assertEquals(1, agrupador.getGruposFallidos());
+        assertEquals(0.0, agrupador.getPreparacionesPorJugador());
+        assertEquals(2, interrumpidas.sum() - antes);
+        assertTrue(salida.toString().contains("Petición de Link interrumpida"), salida.toString());
+        assertTrue(salida.toString().contains("Petición de Zelda interrumpida"), salida.toString());
+    }
+
+    @Test
+    void unGrupoRechazadoPorLosGmBotsAvisaATodoElGrupo() throws Exception {
+        LongAdder interrumpidas = RegistroMetricas.global().contador("mazmorras.peticiones.interrumpidas");
+        long antes = interrumpidas.sum();
+        StringWriter salida = new StringWriter();
+        ExecutorService detenido = Executors.newSingleThreadExecutor();
+        detenido.shutdown();
+        AgrupadorPartidas agrupador = new AgrupadorPartidas(detenido, simulador, this::preparar,
+                TimeUnit.MILLISECONDS.toNanos(100), 2, simulador::nanoTime);
+
+        try (RegistroAsincrono registro = new RegistroAsincrono(16, RegistroAsincrono.PoliticaLleno.BLOQUEAR,
+                salida)) {
+            agrupador.enviar(peticion("Geralt", "Torre Oscura", registro));
+            agrupador.enviar(peticion("Yennefer", "Torre Oscura", registro));
+        }
+
+        assertTrue(preparadas.isEmpty());
+        assertEquals(1, agrupador.getGruposFallidos());
+        assertArrayEquals(new long[] {0, 0, 1}, agrupador.getDistribucionTamanos());
+        assertEquals(2, interrumpidas.sum() - antes);
+        assertTrue(salida.toString().contains("Petición de Geralt interrumpida"), salida.toString());
+        assertTrue(salida.toString().contains("Petición de Yennefer interrumpida"), salida.toString());
+    }
+}
@@ -0,0 +1,128 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class AsignadorEquiposTest {
+
+    /**
+     * Muchos estudiantes compiten por pocos equipos durante varias rondas.
+     * Cada equipo lleva una marca de ocupación con CAS: si dos estudiantes lo
+     * tienen a la vez, alguno de los CAS falla.
+     */
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void nuncaAsignaElMismoEquipoADosEstudiantes() throws InterruptedException {
+        for (AsignadorEquipos.ModoAdmision modo : AsignadorEquipos.ModoAdmision.values()) {
+            int equipos = 16;
+            int estudiantes = 200;
+            int rondas = 200;
+            AsignadorEquipos laboratorio = new AsignadorEquipos(equipos, modo, 2);
+            AtomicIntegerArray ocupacion = new AtomicIntegerArray(equipos + 1);
+            LongAdder violaciones = new LongAdder();
+            LongAdder usos = new LongAdder();
+            CountDownLatch salida = new CountDownLatch(1);
+            List<Thread> hilos = new ArrayList<>(estudiantes);
+
+            for (int e = 0; e < estudiantes; e++) {
+                int estudiante = e + 1;
+                Thread hilo = new Thread(() -> {
+                    try {
+                        salida.await();
+                        for (int r = 0; r < rondas; r++) {
+                            int equipo = laboratorio.adquirir();
+                            if (!ocupacion.compareAndSet(equipo, 0, estudiante)) {
+                                violaciones.increment();
+                            }
+                            Thread.onSpinWait();
+                            if (!ocupacion.compareAndSet(equipo, estudiante, 0)) {
+                                violaciones.increment();
+                            }
+                            laboratorio.liberar(equipo);
+                            usos.increment();
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, "Estudiante-" + estudiante);
+                hilos.add(hilo);
+                hilo.start();
+            }
+            salida.countDown();
+            for (Thread hilo : hilos) {
+                hilo.join();
+            }
+
+            assertEquals(0, violaciones.sum(), "equipos asignados dos veces en modo " + modo);
+            assertEquals((long) estudiantes * rondas, usos.sum(), "modo " + modo);
+            assertEquals(equipos, laboratorio.getLibres(), "modo " + modo);
+        }
+    }
+
+    @Test
+    void entregaIdentificadoresDistintosHastaAgotarLosEquipos() {
+        AsignadorEquipos laboratorio = new AsignadorEquipos(4);
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            ids.add(laboratorio.intentarAdquirir());
+        }
+        assertEquals(Set.of(1, 2, 3, 4), ids);
+        assertEquals(-1, laboratorio.intentarAdquirir());
+    }
+
+    @Test
+    void liberarDosVecesElMismoEquipoFalla() {
+        AsignadorEquipos laboratorio = new AsignadorEquipos(2);
+        int equipo = laboratorio.intentarAdquirir();
+        laboratorio.liberar(equipo);
+
+        assertThrows(IllegalStateException.class, () -> laboratorio.liberar(equipo));
+        assertEquals(2, laboratorio.getLibres());
+    }
+
+    @Test
+    void liberarUnEquipoQueNadieTeniaFalla() {
+        AsignadorEquipos laboratorio = new AsignadorEquipos(2);
+
+        assertThrows(IllegalStateException.class, () -> laboratorio.liberar(2));
+        assertThrows(IllegalArgumentException.class, () -> laboratorio.liberar(3));
+        assertEquals(2, laboratorio.getLibres());
+    }
+
+    @Test
+    void trasUnaLiberacionRepetidaNoSeDuplicanEquipos() {
+        AsignadorEquipos laboratorio = new AsignadorEquipos(2);
+        int primero = laboratorio.intentarAdquirir();
+        laboratorio.liberar(primero);
+        assertThrows(IllegalStateException.class, () -> laboratorio.liberar(primero));
+
+        int a = laboratorio.intentarAdquirir();
+        int b = laboratorio.intentarAdquirir();
+        assertEquals(Set.of(1, 2), Set.of(a, b));
+        assertEquals(-1, laboratorio.intentarAdquirir());
+    }
+
+    @Test
+    void elMismoSemaforoComparteAsignador() {
+        Semaphore semaforo = new Semaphore(3, true);
+        AsignadorEquipos asignador = AsignadorEquipos.sobreSemaforo(semaforo);
+
+        assertSame(asignador, AsignadorEquipos.sobreSemaforo(semaforo));
+        assertEquals(3, asignador.getEquipos());
+        assertEquals(AsignadorEquipos.ModoAdmision.JUSTO, asignador.getModo());
+    }
+}
@@ -0,0 +1,58 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class CacheMazmorrasTest {
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void unErrorAlPrepararDespiertaALosQueEsperanYNoQuedaEnCache() throws Exception {
+        CountDownLatch esperando = new CountDownLatch(1);
+        CountDownLatch fallar = new CountDownLatch(1);
+        AtomicInteger preparaciones = new AtomicInteger();
+        CacheMazmorras cache = new CacheMazmorras(mazmorra -> {
+            if (preparaciones.incrementAndGet() == 1) {
+                esperando.countDown();
+                fallar.await();
+                throw new AssertionError("fallo al preparar");
+            }
+            return new ServidorMazmorras.InstanciaMazmorra(mazmorra, 0);
+        }, 4, Long.MAX_VALUE, System::nanoTime);
+
+        ExecutorService hilos = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> propietario = hilos.submit(() -> cache.obtener("Moria"));
+            esperando.await();
+            Future<?> espera = hilos.submit(() -> cache.obtener("Moria"));
+            while (cache.getEsperasEnVuelo() == 0) {
+                Thread.onSpinWait();
+            }
+            fallar.countDown();
+
+            Throwable error = assertThrows(Exception.class, propietario::get).getCause();
+            assertInstanceOf(AssertionError.class, error);
+            Throwable enEspera = assertThrows(Exception.class, espera::get).getCause();
+            assertInstanceOf(IllegalStateException.class, enEspera);
+            assertInstanceOf(AssertionError.class, enEspera.getCause());
+        } finally {
+            hilos.shutdownNow();
+        }
+
+        assertEquals(0, cache.size());
+        assertNotNull(cache.obtener("Moria"));
+        assertEquals(2, preparaciones.get());
+    }
+}
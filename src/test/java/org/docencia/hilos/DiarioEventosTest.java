@@ -0,0 +1,135 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+class DiarioEventosTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void variosProductoresNoPierdenEventosAlCambiarDeSegmento() throws Exception {
+        int productores = 4;
+        int eventos = 5_000;
+        long[] danoPorAtacante = new long[productores];
+        long[] golpesPorAtacante = new long[productores];
+        try (DiarioEventos diario = new DiarioEventos(directorio, 1_000)) {
+            int[] atacantes = new int[productores];
+            for (int a = 0; a < productores; a++) {
+                atacantes[a] = diario.nombre("Atacante " + a);
+            }
+            List<Thread> hilos = new ArrayList<>();
+            for (int a = 0; a < productores; a++) {
+                int atacante = a;
+                hilos.add(Thread.ofPlatform().start(() -> {
+                    for (int i = 0; i < eventos; i++) {
+                        diario.golpe(atacantes[atacante], i, (i & 7) == 0);
+                    }
+                }));
+            }
+            for (Thread hilo : hilos) {
+                hilo.join();
+            }
+        }
+
+        DiarioEventos.Lector lector = new DiarioEventos.Lector(directorio);
+        long leidos = lector.recorrer((marca, tipo, critico, zona, sujeto, valor) -> {
+            int atacante = Integer.parseInt(lector.nombre(sujeto).substring("Atacante ".length()));
+            golpesPorAtacante[atacante]++;
+            danoPorAtacante[atacante] += valor;
+        });
+
+        assertEquals((long) productores * eventos, leidos);
+        for (int a = 0; a < productores; a++) {
+            assertEquals(eventos, golpesPorAtacante[a]);
+            assertEquals((long) eventos * (eventos - 1) / 2, danoPorAtacante[a]);
+        }
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            assertTrue(ficheros.filter(f -> f.toString().endsWith(".diario")).count() >= productores * eventos / 1_000);
+        }
+    }
+
+    @Test
+    void reabrirConservaLosNombresYSigueEnUnSegmentoNuevo() throws Exception {
+        int zona;
+        int slime;
+        try (DiarioEventos diario = new DiarioEventos(directorio, 16)) {
+            zona = diario.nombre("Bosque Maldito");
+            slime = diario.nombre("Slime Mutante");
+            diario.spawn(zona, slime, 42);
+        }
+        try (DiarioEventos diario = new DiarioEventos(directorio, 16)) {
+            assertEquals(zona, diario.nombre("Bosque Maldito"));
+            assertEquals(slime, diario.nombre("Slime Mutante"));
+            diario.zonaLlena(zona, slime);
+            diario.golpe(diario.nombre("Guerrero"), 150, false);
+        }
+
+        List<String> leidos = new ArrayList<>();
+        DiarioEventos.Lector lector = new DiarioEventos.Lector(directorio);
+        lector.recorrer((marca, tipo, critico, z, sujeto, valor) -> leidos.add(
+                tipo + " " + (z < 0 ? "-" : lector.nombre(z)) + " " + lector.nombre(sujeto) + " " + valor));
+
+        assertEquals(List.of(
+                "SPAWN Bosque Maldito Slime Mutante 42",
+                "ZONA_LLENA Bosque Maldito Slime Mutante -1",
+                "GOLPE - Guerrero 150"), leidos);
+    }
+
+    @Test
+    void anotarTrasCerrarFalla() throws Exception {
+        DiarioEventos diario = new DiarioEventos(directorio, 16);
+        int guerrero = diario.nombre("Guerrero");
+        diario.close();
+
+        assertThrows(IllegalStateException.class, () -> diario.golpe(guerrero, 1, false));
+    }
+
+    @Test
+    void unNombreConSaltosDeLineaSeRechaza() throws Exception {
+        try (DiarioEventos diario = new DiarioEventos(directorio, 16)) {
+            assertThrows(IllegalArgumentException.class, () -> diario.nombre("dos\nlíneas"));
+        }
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void unLectorConcurrenteSoloVeRegistrosCompletos() throws Exception {
+        try (DiarioEventos diario = new DiarioEventos(directorio, 1 << 16)) {
+            int guerrero = diario.nombre("Guerrero");
+            int eventos = 50_000;
+            Thread escritor = Thread.ofPlatform().start(() -> {
+                for (int i = 1; i <= eventos; i++) {
+                    diario.golpe(guerrero, i, (i & 7) == 0);
+                }
+            });
+            long[] incompletos = new long[1];
+            DiarioEventos.Lector lector = new DiarioEventos.Lector(directorio);
+            do {
+                lector.recorrer((marca, tipo, critico, zona, sujeto, valor) -> {
+                    if (sujeto != guerrero || valor <= 0 || critico != ((valor & 7) == 0)) {
+                        incompletos[0]++;
+                    }
+                });
+            } while (escritor.isAlive());
+            escritor.join();
+
+            assertEquals(0, incompletos[0]);
+            assertEquals(eventos, lector.recorrer((marca, tipo, critico, zona, sujeto, valor) -> { }));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+class EstimadorDanoEsperadoTest {
+
+    @Test
+    void elValorExactoSeMarcaComoTalYNoTieneIntervalo() {
+        EstimadorDanoEsperado.Estimacion exacta = EstimadorDanoEsperado.exacto(
+                new CalculadoraDanoCritico.Ataque("Guerrero", 150, 0.15, 2.0));
+
+        assertTrue(exacta.exacta);
+        assertEquals(172.5, exacta.media, 1e-9);
+        assertEquals(0.0, exacta.errorEstandar());
+        assertEquals(exacta.media, exacta.inferior());
+    }
+
+    @Test
+    void losDanosEnormesNoDesbordanLaVarianza() {
+        CalculadoraDanoCritico.Ataque ataque = new CalculadoraDanoCritico.Ataque("Titán", 1_000_000_000, 0.5, 2.0);
+        EstimadorDanoEsperado estimador = new EstimadorDanoEsperado(new ForkJoinPool(2), 1_000);
+
+        EstimadorDanoEsperado.Estimacion simulada = estimador.estimar(ataque, 100_000, 7);
+        EstimadorDanoEsperado.Estimacion exacta = EstimadorDanoEsperado.exacto(ataque);
+
+        assertFalse(simulada.exacta);
+        assertEquals(exacta.varianza, simulada.varianza, exacta.varianza * 0.01);
+        assertTrue(EstimadorDanoEsperado.concuerda(simulada, exacta, 4.0));
+    }
+
+    @Test
+    void laMismaSemillaDaElMismoResultadoConCualquierNumeroDeHilos() {
+        CalculadoraDanoCritico.Ataque ataque = new CalculadoraDanoCritico.Ataque("Pícaro", 90, 0.50, 3.0);
+
+        EstimadorDanoEsperado.Estimacion uno = new EstimadorDanoEsperado(new ForkJoinPool(1), 4_096)
+                .estimar(ataque, 50_000, 2024);
+        EstimadorDanoEsperado.Estimacion cuatro = new EstimadorDanoEsperado(new ForkJoinPool(4), 4_096)
+                .estimar(ataque, 50_000, 2024);
+
+        assertEquals(uno.media, cuatro.media);
+        assertEquals(uno.varianza, cuatro.varianza);
+    }
+}
@@ -0,0 +1,42 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class FaseSemaforoTest {
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void unPlazoEnormeNoVenceAntesDeTiempo() throws Exception {
+        FaseSemaforo semaforo = new FaseSemaforo(LightColor.ROJO);
+        CompletableFuture<Long> version = CompletableFuture.supplyAsync(() -> {
+            try {
+                return semaforo.esperar(LightColor.VERDE, Long.MAX_VALUE - 1, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(version.isDone(), "el plazo venció sin esperar");
+
+        assertTrue(semaforo.avanzar(LightColor.ROJO));
+
+        assertEquals(1L, version.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void unPlazoCortoVenceSinAlcanzarLaFase() throws Exception {
+        FaseSemaforo semaforo = new FaseSemaforo(LightColor.ROJO);
+
+        assertEquals(-1L, semaforo.esperar(LightColor.AMBAR, 20, TimeUnit.MILLISECONDS));
+        assertEquals(LightColor.ROJO, semaforo.getFase());
+    }
+}
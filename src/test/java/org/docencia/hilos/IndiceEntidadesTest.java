@@ -0,0 +1,57 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class IndiceEntidadesTest {
+
+    @Test
+    void laPoblacionPorTipoRechazaTiposFueraDeRango() {
+        IndiceEntidades indice = new IndiceEntidades(16, 2, 3, 100f, 4);
+        indice.aparecer(1, 2, 10f, 10f);
+
+        assertEquals(1, indice.poblacion(1, 2));
+        assertThrows(IllegalArgumentException.class, () -> indice.poblacion(1, 3));
+        assertThrows(IllegalArgumentException.class, () -> indice.poblacion(1, -1));
+    }
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void elVisitantePuedeDarDeBajaLasEntidadesQueRecorre() {
+        IndiceEntidades indice = new IndiceEntidades(64, 1, 1, 100f, 4);
+        for (int i = 0; i < 40; i++) {
+            indice.aparecer(0, 0, i, i);
+        }
+
+        int visitadas = indice.enRango(0, 0f, 0f, 100f, 100f, indice::desaparecer);
+
+        assertEquals(40, visitadas);
+        assertEquals(0, indice.poblacion(0));
+        assertEquals(0, indice.contarEnRango(0, 0f, 0f, 100f, 100f));
+    }
+
+    @Test
+    @Timeout(value = 20, unit = TimeUnit.SECONDS)
+    void devuelveTantasComoVisitaAunqueAparezcanDuranteLaConsulta() throws Exception {
+        IndiceEntidades indice = new IndiceEntidades(200_000, 1, 1, 100f, 4);
+        Thread generador = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < 200_000; i++) {
+                indice.aparecer(0, 0, i % 100, (i / 100) % 100);
+            }
+        });
+        try {
+            while (generador.isAlive()) {
+                int[] visitadas = new int[1];
+                int devueltas = indice.enRango(0, 0f, 0f, 100f, 100f, id -> visitadas[0]++);
+                assertEquals(devueltas, visitadas[0]);
+            }
+        } finally {
+            generador.join();
+        }
+    }
+}
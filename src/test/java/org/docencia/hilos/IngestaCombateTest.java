@@ -0,0 +1,115 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IngestaCombateTest {
+
+    private static final CalculadoraDanoCritico.Ataque[] PLANTILLA = {
+            new CalculadoraDanoCritico.Ataque("Mago del Fuego", 120, 0.30, 2.5),
+            new CalculadoraDanoCritico.Ataque("Pícaro", 90, 0.50, 3.0),
+            new CalculadoraDanoCritico.Ataque("Arquera Élfica", 110, 0.25, 2.2),
+    };
+
+    @TempDir
+    Path directorio;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void cerrar() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void losTrozosPequenosDanLoMismoQueLeerLineaALinea() throws Exception {
+        Path registro = directorio.resolve("raid.log");
+        IngestaCombate.generar(registro, PLANTILLA, 5_000, 0, 1_000, 7, 2024);
+        IngestaCombate ingesta = new IngestaCombate(registro, pool, 256);
+
+        assertEquals(Files.size(registro), ingesta.actualizar());
+
+        assertEquals(5_000, ingesta.getRegistros());
+        assertEquals(0, ingesta.getErroneos());
+        assertEquals(4_999 * 7, ingesta.getDuracionMillis());
+        assertEquals(lineaALinea(registro), resumen(ingesta));
+    }
+
+    @Test
+    void unaLineaAMedioEscribirEsperaALaSiguienteActualizacion() throws Exception {
+        Path registro = directorio.resolve("raid.log");
+        IngestaCombate.generar(registro, PLANTILLA, 1_000, 0, 0, 5, 7);
+        IngestaCombate ingesta = new IngestaCombate(registro, pool, 512);
+        ingesta.actualizar();
+
+        anadir(registro, "99999,Guerrero,150,");
+        long antes = ingesta.getProcesado();
+        assertEquals(0, ingesta.actualizar());
+        assertEquals(antes, ingesta.getProcesado());
+
+        anadir(registro, "1,300\n");
+        IngestaCombate.generar(registro, PLANTILLA, 1_000, 1_000, 0, 5, 7);
+        ingesta.actualizar();
+
+        assertEquals(2_001, ingesta.getRegistros());
+        assertEquals(Files.size(registro), ingesta.getProcesado());
+        assertEquals(lineaALinea(registro), resumen(ingesta));
+    }
+
+    @Test
+    void lasLineasMalFormadasSeCuentanYNoSuman() throws Exception {
+        Path registro = directorio.resolve("raid.log");
+        anadir(registro, "10,Guerrero,150,0,150\n"
+                + "sin comas\n"
+                + "20,Guerrero,150,x,150\n"
+                + "30,Guerrero,150,1,300\n");
+        IngestaCombate ingesta = new IngestaCombate(registro, pool, 16);
+        ingesta.actualizar();
+
+        assertEquals(2, ingesta.getRegistros());
+        assertEquals(2, ingesta.getErroneos());
+        IngestaCombate.Totales guerrero = ingesta.getTotales().get("Guerrero");
+        assertEquals(2, guerrero.golpes);
+        assertEquals(1, guerrero.criticos);
+        assertEquals(450, guerrero.danoFinal);
+    }
+
+    private static void anadir(Path fichero, String texto) throws Exception {
+        Files.writeString(fichero, texto, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    /** golpes/criticos/danoBase/danoFinal por atacante. */
+    private static Map<String, String> resumen(IngestaCombate ingesta) {
+        Map<String, String> resumen = new TreeMap<>();
+        ingesta.getTotales().forEach((nombre, t) -> resumen.put(nombre,
+                t.golpes + "/" + t.criticos + "/" + t.danoBase + "/" + t.danoFinal));
+        return resumen;
+    }
+
+    private static Map<String, String> lineaALinea(Path fichero) throws Exception {
+        Map<String, long[]> totales = new TreeMap<>();
+        for (String linea : Files.readAllLines(fichero, StandardCharsets.UTF_8)) {
+            String[] campos = linea.split(",");
+            long[] t = totales.computeIfAbsent(campos[1], k -> new long[4]);
+            t[0]++;
+            t[1] += Long.parseLong(campos[3]);
+            t[2] += Long.parseLong(campos[2]);
+            t[3] += Long.parseLong(campos[4]);
+        }
+        Map<String, String> resumen = new TreeMap<>();
+        totales.forEach((nombre, t) -> resumen.put(nombre, t[0] + "/" + t[1] + "/" + t[2] + "/" + t[3]));
+        return resumen;
+    }
+}
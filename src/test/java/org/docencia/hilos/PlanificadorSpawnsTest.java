@@ -0,0 +1,102 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class PlanificadorSpawnsTest {
+
+    private static final long PERIODO_MS = 100;
+
+    private final SimuladorEventos simulador = new SimuladorEventos();
+    private final List<Long> inicios = new ArrayList<>();
+    private final List<Integer> ticks = new ArrayList<>();
+
+    /**
+     * Programa una oleada cada {@link #PERIODO_MS} desde el instante 0. La
+     * primera ejecución dura {@code primeraMs} de tiempo simulado y el resto
+     * 10 ms.
+     */
+    private PlanificadorSpawns.Programacion programar(PlanificadorSpawns planificador, long primeraMs) {
+        return planificador.programar(n -> {
+            inicios.add(TimeUnit.NANOSECONDS.toMillis(simulador.nanoTime()));
+            ticks.add(n);
+            simulador.avanzar(inicios.size() == 1 ? primeraMs : 10, TimeUnit.MILLISECONDS);
+        }, 0, PERIODO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private PlanificadorSpawns planificador(PlanificadorSpawns.PoliticaRetraso politica, int rafagaMaxima) {
+        return new PlanificadorSpawns(simulador, politica, rafagaMaxima, simulador::nanoTime);
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Test
+    void saltarDescartaLosTicksPerdidos() {
+        PlanificadorSpawns planificador = planificador(PlanificadorSpawns.PoliticaRetraso.SALTAR, 3);
+        PlanificadorSpawns.Programacion programacion = programar(planificador, 250);
+
+        simulador.avanzar(1, TimeUnit.SECONDS);
+        programacion.cancelar();
+        simulador.avanzar(1, TimeUnit.SECONDS);
+
+        // El tick de 200 ms se pierde; el de 100 ms sale tarde, en 250 ms.
+        assertEquals(List.of(0L, 250L, 300L, 400L, 500L, 600L, 700L, 800L, 900L, 1000L), inicios);
+        assertEquals(List.of(1, 1, 1, 1, 1, 1, 1, 1, 1, 1), ticks);
+        assertEquals(1, planificador.getTicksSaltados());
+        assertEquals(0, planificador.getTicksRecuperados());
+        assertEquals(0, planificador.getTicksAgrupados());
+        assertEquals(10, planificador.getEjecuciones());
+        assertEquals(1, planificador.getDesbordes());
+        assertEquals(10, planificador.getRetrasoInicio().getTotal());
+        assertEquals(150, millis(planificador.getRetrasoInicio().getMaximo()));
+        assertEquals(10, planificador.getDuracion().getTotal());
+        assertEquals(250, millis(planificador.getDuracion().getMaximo()));
+    }
+
+    @Test
+    void recuperarNoPasaDeLaRafagaMaxima() {
+        PlanificadorSpawns planificador = planificador(PlanificadorSpawns.PoliticaRetraso.RECUPERAR, 2);
+        programar(planificador, 450);
+
+        simulador.avanzar(1, TimeUnit.SECONDS);
+
+        // Se deben 100, 200, 300 y 400 ms: los dos primeros se recuperan
+        // seguidos (450 y 460 ms), la ráfaga se agota en 470 ms y el resto se
+        // salta para volver al ritmo en 500 ms.
+        assertEquals(List.of(0L, 450L, 460L, 470L, 500L, 600L, 700L, 800L, 900L, 1000L), inicios);
+        assertEquals(List.of(1, 1, 1, 1, 1, 1, 1, 1, 1, 1), ticks);
+        assertEquals(2, planificador.getTicksRecuperados());
+        assertEquals(1, planificador.getTicksSaltados());
+        assertEquals(0, planificador.getTicksAgrupados());
+        assertEquals(1, planificador.getDesbordes());
+        assertEquals(350, millis(planificador.getRetrasoInicio().getMaximo()));
+        assertEquals(450, millis(planificador.getDuracion().getMaximo()));
+    }
+
+    @Test
+    void agruparJuntaLosTicksPerdidosEnUnaOleada() {
+        PlanificadorSpawns planificador = planificador(PlanificadorSpawns.PoliticaRetraso.AGRUPAR, 3);
+        programar(planificador, 350);
+
+        simulador.avanzar(1, TimeUnit.SECONDS);
+
+        // Los ticks de 100, 200 y 300 ms salen juntos en 350 ms.
+        assertEquals(List.of(0L, 350L, 400L, 500L, 600L, 700L, 800L, 900L, 1000L), inicios);
+        assertEquals(List.of(1, 3, 1, 1, 1, 1, 1, 1, 1), ticks);
+        assertEquals(11, ticks.stream().mapToInt(Integer::intValue).sum(), "no se pierde ningún tick");
+        assertEquals(2, planificador.getTicksAgrupados());
+        assertEquals(0, planificador.getTicksSaltados());
+        assertEquals(0, planificador.getTicksRecuperados());
+        assertEquals(9, planificador.getEjecuciones());
+        assertEquals(1, planificador.getDesbordes());
+        assertEquals(250, millis(planificador.getRetrasoInicio().getMaximo()));
+        assertEquals(350, millis(planificador.getDuracion().getMaximo()));
+    }
+}
@@ -0,0 +1,114 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class RegistroAsincronoTest {
+
+    private static long lineas(StringWriter salida) {
+        return salida.toString().lines().count();
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void escribeTodoLoPublicadoEnOrdenPorProductor() throws InterruptedException {
+        StringWriter salida = new StringWriter();
+        int hilos = 4;
+        int mensajes = 20_000;
+        try (RegistroAsincrono registro = new RegistroAsincrono(64, RegistroAsincrono.PoliticaLleno.BLOQUEAR,
+                salida)) {
+            List<Thread> productores = new ArrayList<>();
+            for (int h = 0; h < hilos; h++) {
+                String nombre = "p" + h;
+                Thread hilo = new Thread(() -> {
+                    for (int i = 0; i < mensajes; i++) {
+                        registro.publicar((destino, e) -> destino.append(e.texto).append(' ').append(e.a), nombre,
+                                null, i, 0);
+                    }
+                });
+                productores.add(hilo);
+                hilo.start();
+            }
+            for (Thread hilo : productores) {
+                hilo.join();
+            }
+            registro.vaciar();
+            assertEquals(0, registro.getDescartados());
+        }
+
+        long[] siguiente = new long[hilos];
+        salida.toString().lines().forEach(linea -> {
+            String[] partes = linea.split(" ");
+            int productor = Integer.parseInt(partes[0].substring(1));
+            assertEquals(siguiente[productor]++, Long.parseLong(partes[1]), "orden del productor " + productor);
+        });
+        for (long escritos : siguiente) {
+            assertEquals(mensajes, escritos);
+        }
+    }
+
+    /**
+     * Se cierra mientras varios hilos siguen publicando: cada
+     * {@code publicar} que devuelve {@code true} tiene que acabar escrito.
+     */
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void noPierdeEventosAceptadosDuranteElCierre() throws InterruptedException {
+        for (RegistroAsincrono.PoliticaLleno politica : RegistroAsincrono.PoliticaLleno.values()) {
+            for (int ronda = 0; ronda < 200; ronda++) {
+                StringWriter salida = new StringWriter();
+                RegistroAsincrono registro = new RegistroAsincrono(256, politica, salida);
+                LongAdder aceptados = new LongAdder();
+                CountDownLatch salidaProductores = new CountDownLatch(1);
+                List<Thread> productores = new ArrayList<>();
+                for (int h = 0; h < 3; h++) {
+                    Thread hilo = new Thread(() -> {
+                        try {
+                            salidaProductores.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        for (int i = 0; i < 2_000; i++) {
+                            if (registro.publicar(RegistroAsincrono.TEXTO, "x")) {
+                                aceptados.increment();
+                            }
+                        }
+                    });
+                    productores.add(hilo);
+                    hilo.start();
+                }
+                salidaProductores.countDown();
+                Thread.yield();
+                registro.close();
+                for (Thread hilo : productores) {
+                    hilo.join();
+                }
+
+                assertEquals(aceptados.sum(), lineas(salida), politica + ", ronda " + ronda);
+                assertEquals(3 * 2_000L, aceptados.sum() + registro.getDescartados(), politica + ", ronda " + ronda);
+            }
+        }
+    }
+
+    @Test
+    void descartaCuandoEstaCerrado() {
+        StringWriter salida = new StringWriter();
+        RegistroAsincrono registro = new RegistroAsincrono(8, RegistroAsincrono.PoliticaLleno.DESCARTAR, salida);
+        registro.accept("antes");
+        registro.close();
+
+        assertFalse(registro.publicar(RegistroAsincrono.TEXTO, "después"));
+        assertEquals(1, registro.getDescartados());
+        assertEquals("antes", salida.toString().strip());
+    }
+}
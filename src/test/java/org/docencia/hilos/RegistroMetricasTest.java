@@ -0,0 +1,36 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+class RegistroMetricasTest {
+
+    @Test
+    void unMedidorNoSustituyeAOtraMetricaConElMismoNombre() {
+        try (RegistroMetricas registro = new RegistroMetricas()) {
+            LongAdder golpes = registro.contador("golpes");
+            golpes.add(3);
+
+            assertThrows(IllegalArgumentException.class, () -> registro.medidor("golpes", () -> 99));
+
+            assertSame(golpes, registro.contador("golpes"));
+            assertEquals(3L, registro.valores().get("golpes"));
+        }
+    }
+
+    @Test
+    void unMedidorSustituyeAlMedidorAnterior() {
+        try (RegistroMetricas registro = new RegistroMetricas()) {
+            registro.medidor("poblacion", () -> 1);
+            registro.medidor("poblacion", () -> 2);
+
+            assertEquals(2L, registro.valores().get("poblacion"));
+            assertThrows(IllegalArgumentException.class, () -> registro.contador("poblacion"));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class RelevoTurnoTest {
+
+    private static final int CORREDORES = 3;
+    private static final int PASOS = 600;
+
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void soloUnCorredorTieneElTurnoYLasVariantesEstrictasAlternan() throws Exception {
+        for (RelevoTurno.Tipo tipo : RelevoTurno.Tipo.values()) {
+            RelevoTurno relevo = RelevoTurno.crear(tipo, CORREDORES);
+            AtomicInteger enTurno = new AtomicInteger();
+            AtomicInteger pasos = new AtomicInteger();
+            AtomicBoolean solapado = new AtomicBoolean();
+            AtomicBoolean desordenado = new AtomicBoolean();
+            int[] ultimo = {CORREDORES - 1};
+
+            List<Thread> hilos = new ArrayList<>();
+            for (int c = 0; c < CORREDORES; c++) {
+                int corredor = c;
+                hilos.add(Thread.ofPlatform().start(() -> {
+                    try {
+                        while (relevo.esperarTurno(corredor)) {
+                            if (enTurno.incrementAndGet() != 1) {
+                                solapado.set(true);
+                            }
+                            // Lo escrito con el turno lo ve quien lo recibe.
+                            if (ultimo[0] != (corredor + CORREDORES - 1) % CORREDORES) {
+                                desordenado.set(true);
+                            }
+                            ultimo[0] = corredor;
+                            enTurno.decrementAndGet();
+                            if (pasos.incrementAndGet() >= PASOS) {
+                                relevo.detener();
+                                return;
+                            }
+                            relevo.cederTurno(corredor);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+            for (Thread hilo : hilos) {
+                hilo.join();
+            }
+
+            assertEquals(PASOS, pasos.get(), tipo.name());
+            assertFalse(solapado.get(), tipo + ": dos corredores con el turno a la vez");
+            if (tipo.garantizaAlternancia()) {
+                assertFalse(desordenado.get(), tipo + ": el turno no siguió el orden 0, 1, 2");
+            }
+        }
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void detenerDespiertaAQuienEsperaTurno() throws Exception {
+        for (RelevoTurno.Tipo tipo : RelevoTurno.Tipo.values()) {
+            RelevoTurno relevo = RelevoTurno.crear(tipo, 2);
+            assertTrue(relevo.esperarTurno(0), tipo.name());
+            AtomicBoolean obtuvo = new AtomicBoolean(true);
+            Thread esperando = Thread.ofPlatform().start(() -> {
+                try {
+                    obtuvo.set(relevo.esperarTurno(1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            while (esperando.getState() == Thread.State.RUNNABLE || esperando.getState() == Thread.State.NEW) {
+                Thread.onSpinWait();
+            }
+
+            relevo.detener();
+            esperando.join();
+
+            assertFalse(obtuvo.get(), tipo + ": despertó con el turno");
+            assertFalse(relevo.esperarTurno(1), tipo + ": esperó tras detener");
+        }
+    }
+
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void detenerEnCarreraConEsperarOCederNoDejaHilosColgados() throws Exception {
+        for (RelevoTurno.Tipo tipo : RelevoTurno.Tipo.values()) {
+            for (int ronda = 0; ronda < 500; ronda++) {
+                RelevoTurno relevo = RelevoTurno.crear(tipo, 2);
+                Thread cede = Thread.ofPlatform().start(() -> {
+                    try {
+                        if (relevo.esperarTurno(0)) {
+                            // Nadie recoge el turno: solo detener lo suelta.
+                            relevo.cederTurno(0);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                Thread espera = Thread.ofPlatform().start(() -> {
+                    try {
+                        if (relevo.esperarTurno(1)) {
+                            relevo.cederTurno(1);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                if ((ronda & 1) == 0) {
+                    Thread.yield();
+                }
+                relevo.detener();
+
+                cede.join(5_000);
+                espera.join(5_000);
+                assertFalse(cede.isAlive() || espera.isAlive(), tipo + ": hilo colgado tras detener, ronda " + ronda);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class RuedaTemporizadoresTest {
+
+    @Test
+    @Timeout(value = 20, unit = TimeUnit.SECONDS)
+    void ningunTemporizadorVenceAntesDeSuRetardoAunqueBajeDeNivel() throws Exception {
+        RuedaTemporizadores rueda = new RuedaTemporizadores(1, TimeUnit.MILLISECONDS, 2);
+        try {
+            // Con 256 casillas de 1 ms, los retardos de más de 256 ms empiezan
+            // en la segunda rueda y tienen que bajar a la primera.
+            int temporizadores = 200;
+            CountDownLatch vencidos = new CountDownLatch(temporizadores);
+            AtomicInteger adelantados = new AtomicInteger();
+            SplittableRandom random = new SplittableRandom(11);
+            for (int i = 0; i < temporizadores; i++) {
+                long retardoNanos = TimeUnit.MILLISECONDS.toNanos(random.nextInt(700));
+                long programado = System.nanoTime();
+                rueda.schedule(() -> {
+                    if (System.nanoTime() - programado < retardoNanos) {
+                        adelantados.incrementAndGet();
+                    }
+                    vencidos.countDown();
+                }, retardoNanos, TimeUnit.NANOSECONDS);
+            }
+
+            assertTrue(vencidos.await(10, TimeUnit.SECONDS), "no vencieron todos los temporizadores");
+            assertEquals(0, adelantados.get());
+        } finally {
+            rueda.shutdownNow();
+        }
+    }
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void unTemporizadorCanceladoNoSeEjecuta() throws Exception {
+        RuedaTemporizadores rueda = new RuedaTemporizadores(1, TimeUnit.MILLISECONDS, 1);
+        try {
+            AtomicBoolean ejecutado = new AtomicBoolean();
+            ScheduledFuture<?> cancelado = rueda.schedule(() -> ejecutado.set(true), 100, TimeUnit.MILLISECONDS);
+            CountDownLatch testigo = new CountDownLatch(1);
+            rueda.schedule(testigo::countDown, 300, TimeUnit.MILLISECONDS);
+
+            assertTrue(cancelado.cancel(false));
+            assertTrue(testigo.await(5, TimeUnit.SECONDS));
+
+            assertFalse(ejecutado.get());
+            assertTrue(cancelado.isCancelled());
+        } finally {
+            rueda.shutdownNow();
+        }
+    }
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void unaTareaPeriodicaSeRepiteHastaCancelarla() throws Exception {
+        RuedaTemporizadores rueda = new RuedaTemporizadores(1, TimeUnit.MILLISECONDS, 1);
+        try {
+            AtomicInteger ejecuciones = new AtomicInteger();
+            CountDownLatch cinco = new CountDownLatch(5);
+            ScheduledFuture<?> periodica = rueda.scheduleAtFixedRate(() -> {
+                ejecuciones.incrementAndGet();
+                cinco.countDown();
+            }, 0, 10, TimeUnit.MILLISECONDS);
+
+            assertTrue(cinco.await(5, TimeUnit.SECONDS));
+            periodica.cancel(false);
+            Thread.sleep(50);
+            int tras = ejecuciones.get();
+            Thread.sleep(100);
+
+            assertEquals(tras, ejecuciones.get());
+        } finally {
+            rueda.shutdownNow();
+        }
+    }
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void apagarDescartaLoPendienteYRechazaLoNuevo() throws Exception {
+        RuedaTemporizadores rueda = new RuedaTemporizadores(1, TimeUnit.MILLISECONDS, 1);
+        ScheduledFuture<?> lejano = rueda.schedule(() -> { }, 1, TimeUnit.HOURS);
+
+        rueda.shutdown();
+
+        assertTrue(rueda.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(lejano.isCancelled());
+        assertEquals(0, rueda.getProgramados());
+        assertThrows(RejectedExecutionException.class, () -> rueda.schedule(() -> { }, 1, TimeUnit.SECONDS));
+    }
+}
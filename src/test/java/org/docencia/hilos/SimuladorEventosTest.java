@@ -0,0 +1,87 @@
+package org.docencia.hilos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class SimuladorEventosTest {
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void elRelojVirtualDaSiempreLaMismaSecuencia() {
+        List<String> primera = simular();
+        List<String> segunda = simular();
+
+        assertEquals(primera, segunda);
+        // A igual vencimiento manda el orden de programación.
+        assertEquals(List.of("0:a", "0:b", "1000:tasa", "1000:retardo", "1500:c"), primera.subList(0, 5));
+    }
+
+    /** Un día de eventos mezclados; devuelve cada ejecución como "ms:nombre". */
+    private static List<String> simular() {
+        SimuladorEventos simulador = new SimuladorEventos();
+        List<String> traza = new ArrayList<>();
+        simulador.execute(() -> traza.add(TimeUnit.NANOSECONDS.toMillis(simulador.nanoTime()) + ":a"));
+        simulador.schedule(() -> traza.add(TimeUnit.NANOSECONDS.toMillis(simulador.nanoTime()) + ":b"), 0,
+                TimeUnit.MILLISECONDS);
+        simulador.scheduleAtFixedRate(() -> traza.add(TimeUnit.NANOSECONDS.toMillis(simulador.nanoTime())
+                + ":tasa"), 1, 7, TimeUnit.SECONDS);
+        simulador.scheduleWithFixedDelay(() -> traza.add(TimeUnit.NANOSECONDS.toMillis(simulador.nanoTime())
+                + ":retardo"), 1, 11, TimeUnit.SECONDS);
+        simulador.schedule(() -> traza.add(TimeUnit.NANOSECONDS.toMillis(simulador.nanoTime()) + ":c"), 1_500,
+                TimeUnit.MILLISECONDS);
+
+        long ejecutados = simulador.avanzar(1, TimeUnit.DAYS);
+
+        assertEquals(TimeUnit.DAYS.toNanos(1), simulador.nanoTime());
+        assertEquals(traza.size(), ejecutados);
+        return traza;
+    }
+
+    @Test
+    void apagarConservaLosEventosUnicosYCancelaLosPeriodicos() {
+        SimuladorEventos simulador = new SimuladorEventos();
+        List<String> traza = new ArrayList<>();
+        ScheduledFuture<?> unico = simulador.schedule(() -> traza.add("unico"), 10, TimeUnit.SECONDS);
+        ScheduledFuture<?> periodico = simulador.scheduleAtFixedRate(() -> traza.add("periodico"), 1, 1,
+                TimeUnit.SECONDS);
+
+        simulador.shutdown();
+
+        assertTrue(simulador.isShutdown());
+        assertTrue(periodico.isCancelled());
+        assertFalse(simulador.isTerminated());
+        assertThrows(RejectedExecutionException.class, () -> simulador.execute(() -> { }));
+
+        simulador.avanzar(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of("unico"), traza);
+        assertTrue(unico.isDone());
+        assertTrue(simulador.isTerminated());
+    }
+
+    @Test
+    void apagarYaDevuelveLoPendienteSinEjecutarlo() {
+        SimuladorEventos simulador = new SimuladorEventos();
+        List<String> traza = new ArrayList<>();
+        simulador.schedule(() -> traza.add("uno"), 1, TimeUnit.SECONDS);
+        simulador.schedule(() -> traza.add("dos"), 2, TimeUnit.SECONDS).cancel(false);
+
+        List<Runnable> pendientes = simulador.shutdownNow();
+        simulador.avanzar(5, TimeUnit.SECONDS);
+
+        assertEquals(1, pendientes.size());
+        assertTrue(traza.isEmpty());
+        assertTrue(simulador.isTerminated());
+    }
+}